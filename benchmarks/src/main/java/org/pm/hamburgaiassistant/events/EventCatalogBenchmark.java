@@ -0,0 +1,81 @@
+package org.pm.hamburgaiassistant.events;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.pm.hamburgaiassistant.tools.HamburgEventsTool;
+
+import java.time.Clock;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * "What's on this weekend" against a catalog of a month of events: the raw index lookup, filtered by
+ * category, and the full tool answer including formatting.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class EventCatalogBenchmark {
+
+    private static final ZoneId HAMBURG = ZoneId.of("Europe/Berlin");
+    private static final String[] CATEGORIES = {"Music", "Performing & Visual Arts", "Food & Drink",
+            "Community & Culture", "Film, Media & Entertainment", "Sports & Fitness"};
+    private static final LocalDate WEDNESDAY = LocalDate.of(2026, 10, 21);
+
+    private EventCatalog catalog;
+    private HamburgEventsTool tool;
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(7);
+        List<Event> events = new ArrayList<>();
+        for (int i = 0; i < 5000; i++) {
+            LocalDateTime start = WEDNESDAY.atTime(10, 0).plusMinutes(random.nextInt(60 * 24 * 30));
+            events.add(new Event(String.valueOf(i), "Event " + i, CATEGORIES[random.nextInt(CATEGORIES.length)],
+                    "Venue " + random.nextInt(200), start, start.plusMinutes(60 + random.nextInt(240)), null));
+        }
+        EventSource source = new EventSource() {
+            @Override
+            public String name() {
+                return "generated";
+            }
+
+            @Override
+            public List<Event> fetch(LocalDate from, LocalDate to) {
+                return events;
+            }
+        };
+        Clock clock = Clock.fixed(WEDNESDAY.atTime(10, 0).atZone(HAMBURG).toInstant(), HAMBURG);
+        catalog = new EventCatalog(source, new SimpleMeterRegistry(), clock, 30);
+        catalog.refresh();
+        tool = new HamburgEventsTool(catalog, null);
+    }
+
+    @Benchmark
+    public List<Event> weekendMusicLookup() {
+        return catalog.find(LocalDateTime.of(2026, 10, 23, 17, 0), LocalDateTime.of(2026, 10, 25, 23, 59),
+                "Music", null, 10);
+    }
+
+    @Benchmark
+    public String weekendConcertsAnswer() {
+        return tool.findHamburgEvents("this weekend", "concerts", "");
+    }
+}
@@ -0,0 +1,74 @@
+package org.pm.hamburgaiassistant.session;
+
+import dev.langchain4j.agent.tool.ToolExecutionRequest;
+import dev.langchain4j.data.message.AiMessage;
+import dev.langchain4j.data.message.ChatMessage;
+import dev.langchain4j.data.message.ToolExecutionResultMessage;
+import dev.langchain4j.data.message.UserMessage;
+import dev.langchain4j.model.openai.OpenAiTokenizer;
+import dev.langchain4j.model.output.Response;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.pm.hamburgaiassistant.service.LlmAdmissionController;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Appending a turn to a session's memory and reading it back for a model call. Appends run against a
+ * full window, so they include token counting and the periodic trim into a (stubbed, instant) summary.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ChatMemoryBenchmark {
+
+    private final ToolExecutionRequest search = ToolExecutionRequest.builder()
+            .id("call_1").name("searchPlaces").arguments("{\"query\":\"cafes near the Alster\"}").build();
+    private final UserMessage question = UserMessage.from("Where can I get good coffee near the Alster?");
+    private final AiMessage toolCall = AiMessage.from(search);
+    private final ToolExecutionResultMessage toolResult = ToolExecutionResultMessage.from(search,
+            "Found 5 places: " + "Cafe Alster, Jungfernstieg 1, rating 4.5, open now. ".repeat(5));
+    private final AiMessage answer = AiMessage.from(
+            "Try Cafe Alster on the Jungfernstieg: it has a terrace right on the water and opens at 8.");
+
+    private TokenBudgetChatMemory memory;
+
+    @Setup
+    public void setUp() {
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        ConversationSummarizer summarizer = new ConversationSummarizer(
+                messages -> Response.from(AiMessage.from("The visitor wants coffee near the Alster.")),
+                new LlmAdmissionController(meterRegistry, 4, 1, 8, 2.0, 10, 1000, 60, 10, 4), meterRegistry, 120, 1, 1000);
+        memory = new TokenBudgetChatMemory("bench", new OpenAiTokenizer(), 2000, summarizer);
+        while (memory.tokenCount() < 1500) {
+            appendTurn();
+        }
+    }
+
+    @Benchmark
+    public int appendTurn() {
+        memory.add(question);
+        memory.add(toolCall);
+        memory.add(toolResult);
+        memory.add(answer);
+        return memory.tokenCount();
+    }
+
+    @Benchmark
+    public List<ChatMessage> readForModelCall() {
+        return memory.messages();
+    }
+}
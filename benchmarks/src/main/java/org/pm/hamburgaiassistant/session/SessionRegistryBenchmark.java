@@ -0,0 +1,75 @@
+package org.pm.hamburgaiassistant.session;
+
+import dev.langchain4j.data.message.AiMessage;
+import dev.langchain4j.model.openai.OpenAiTokenizer;
+import dev.langchain4j.model.output.Response;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.pm.hamburgaiassistant.service.LlmAdmissionController;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Session lookup and creation as every chat turn does it, against a registry held at its capacity.
+ * The contended variant shows what the registry's single lock costs under concurrent turns.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SessionRegistryBenchmark {
+
+    private static final int SESSIONS = 10_000;
+
+    private final AtomicLong newSessions = new AtomicLong();
+    private SessionRegistry sessionRegistry;
+    private String[] sessionIds;
+
+    @Setup
+    public void setUp() {
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        ConversationSummarizer summarizer = new ConversationSummarizer(
+                messages -> Response.from(AiMessage.from("summary")),
+                new LlmAdmissionController(meterRegistry, 4, 1, 8, 2.0, 10, 1000, 60, 10, 4), meterRegistry, 120, 1, 10);
+        sessionRegistry = new SessionRegistry(meterRegistry, new OpenAiTokenizer(), summarizer);
+        ReflectionTestUtils.setField(sessionRegistry, "maxSessions", SESSIONS);
+        ReflectionTestUtils.setField(sessionRegistry, "memoryMaxTokens", 2000);
+        sessionIds = new String[SESSIONS];
+        for (int i = 0; i < SESSIONS; i++) {
+            sessionIds[i] = "session-" + i;
+            sessionRegistry.getOrCreate(sessionIds[i]);
+        }
+    }
+
+    @Benchmark
+    public ChatSession lookupExisting() {
+        return sessionRegistry.getOrCreate(sessionIds[ThreadLocalRandom.current().nextInt(SESSIONS)]);
+    }
+
+    @Benchmark
+    @Threads(8)
+    public ChatSession lookupExistingContended() {
+        return sessionRegistry.getOrCreate(sessionIds[ThreadLocalRandom.current().nextInt(SESSIONS)]);
+    }
+
+    // Each new session evicts the least recently used one
+    @Benchmark
+    public ChatSession createAtCapacity() {
+        return sessionRegistry.getOrCreate("new-" + newSessions.incrementAndGet());
+    }
+}
@@ -0,0 +1,60 @@
+package org.pm.hamburgaiassistant.tools;
+
+import com.google.gson.JsonParser;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Parsing of Google Places Text Search and Directions responses, on full-size payloads in the shape the
+ * APIs return (twenty results with photos and viewports; a transit route with polylines and sub-steps).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ToolResponseParsingBenchmark {
+
+    private String placesPayload;
+    private String directionsPayload;
+
+    @Setup
+    public void loadPayloads() throws IOException {
+        placesPayload = payload("places-textsearch.json");
+        directionsPayload = payload("directions-transit.json");
+    }
+
+    @Benchmark
+    public List<PlaceResult> placesTextSearch() {
+        return GooglePlacesTool.parsePlaces(placesPayload);
+    }
+
+    @Benchmark
+    public DirectionsRoute directionsTransit() {
+        return GoogleDirectionsTool.parseRoute(JsonParser.parseString(directionsPayload).getAsJsonObject(), "transit");
+    }
+
+    private static String payload(String name) throws IOException {
+        try (InputStream in = ToolResponseParsingBenchmark.class.getResourceAsStream("/payloads/" + name)) {
+            if (in == null) {
+                throw new IOException("Missing payload " + name);
+            }
+            return new String(in.readAllBytes(), StandardCharsets.UTF_8);
+        }
+    }
+}
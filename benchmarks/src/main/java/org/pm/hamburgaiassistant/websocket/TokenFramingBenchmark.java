@@ -0,0 +1,84 @@
+package org.pm.hamburgaiassistant.websocket;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonObject;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Turning one streamed answer into WebSocket frames: the Gson envelope per token the handler used to
+ * build, the batcher sending every token on its own, and the batcher coalescing by size.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TokenFramingBenchmark {
+
+    private static final String ANSWER = """
+            Moin! For a classic "Fischbrötchen" head to the Landungsbrücken: Brücke 10 is the local favourite \
+            (4.6 ★, open now), and the stalls at the Fischmarkt open early on Sundays.
+            From there it's a 10-minute walk along the Elbe to the Elbphilharmonie – take the escalator \
+            up to the Plaza for a free view over the harbour. If it rains, the U3 from Landungsbrücken \
+            to Baumwall takes 3 minutes.\tEnjoy your day in Hamburg!""";
+
+    private final Gson gson = new Gson();
+    private List<String> tokens;
+    private TokenBatcher tokenBatcher;
+
+    @Setup
+    public void setUp() {
+        // Roughly what the model streams: words with their leading space, punctuation split off
+        tokens = List.of(ANSWER.split("(?=[ \\n\\t,.!:()])"));
+        tokenBatcher = new TokenBatcher(new SimpleMeterRegistry(), 30, 250, 256);
+    }
+
+    @TearDown
+    public void tearDown() {
+        tokenBatcher.shutdown();
+    }
+
+    @Benchmark
+    public void gsonEnvelopePerToken(Blackhole blackhole) {
+        for (String token : tokens) {
+            JsonObject frame = new JsonObject();
+            frame.addProperty("type", "token");
+            frame.addProperty("content", token);
+            blackhole.consume(gson.toJson(frame));
+        }
+    }
+
+    @Benchmark
+    public void batcherFramePerToken(Blackhole blackhole) {
+        TokenBatcher.Batch batch = tokenBatcher.open(0L, blackhole::consume);
+        for (String token : tokens) {
+            batch.add(token);
+        }
+        batch.finish();
+    }
+
+    @Benchmark
+    public void batcherCoalesced(Blackhole blackhole) {
+        TokenBatcher.Batch batch = tokenBatcher.open(null, blackhole::consume);
+        for (String token : tokens) {
+            batch.add(token);
+        }
+        batch.finish();
+    }
+}
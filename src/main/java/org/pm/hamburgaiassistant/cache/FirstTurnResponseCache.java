@@ -0,0 +1,174 @@
+package org.pm.hamburgaiassistant.cache;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.pm.hamburgaiassistant.tools.LandmarkAliases;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.Collection;
+import java.util.Optional;
+import java.util.Set;
+
+/**
+ * Caches answers to the first message of a session. Without prior history the answer depends only on
+ * the question, so equivalent questions (case, whitespace, punctuation, umlaut spelling) share an entry.
+ * Entries are kept apart per language and expire according to how quickly their answer goes stale.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class FirstTurnResponseCache {
+
+    /**
+     * How fast an answer goes stale: live data (weather, "open now", today's events), place listings,
+     * or evergreen guide knowledge.
+     */
+    public enum AnswerClass { LIVE, LISTING, STATIC }
+
+    private static final Set<String> LIVE_TOOLS = Set.of("getCurrentWeather", "getDirections", "getTravelTime",
+            "findHamburgEvents");
+    private static final Set<String> LISTING_TOOLS = Set.of("searchPlaces", "getPlaceDetails", "getHamburgVenues");
+
+    private static final Set<String> LIVE_WORDS = Set.of(
+            "weather", "rain", "raining", "sunny", "temperature", "forecast", "today", "tonight", "now",
+            "currently", "open", "tomorrow", "weekend", "event", "events", "wetter", "regen", "heute", "jetzt", "morgen",
+            "geoeffnet", "offen", "wochenende", "veranstaltungen");
+    private static final Set<String> LISTING_WORDS = Set.of(
+            "restaurant", "restaurants", "hotel", "hotels", "cafe", "cafes", "bar", "bars", "club", "clubs",
+            "shop", "shops", "near", "nearby", "where", "wo", "kneipe", "essen");
+
+    // Common German function words; a quarter of the words matching is enough to tell the two apart
+    private static final Set<String> GERMAN_WORDS = Set.of(
+            "der", "die", "das", "und", "ist", "was", "wie", "wo", "ich", "ein", "eine", "nicht", "mit",
+            "fuer", "gibt", "es", "kann", "man", "welche", "sind", "im", "zum", "zur", "ueber", "heute",
+            "sehen", "bitte", "wetter", "den", "dem", "auf");
+
+    @Value("${chat.response-cache.enabled:true}")
+    private boolean enabled;
+
+    @Value("${chat.response-cache.max-entries:10000}")
+    private long maxEntries;
+
+    @Value("${chat.response-cache.live-ttl-minutes:10}")
+    private long liveTtlMinutes;
+
+    @Value("${chat.response-cache.listing-ttl-hours:6}")
+    private long listingTtlHours;
+
+    @Value("${chat.response-cache.static-ttl-hours:24}")
+    private long staticTtlHours;
+
+    private final MeterRegistry meterRegistry;
+
+    private Cache<Key, CachedAnswer> cache;
+
+    record Key(String language, String question) {
+    }
+
+    record CachedAnswer(String text, AnswerClass answerClass) {
+    }
+
+    @PostConstruct
+    void initCache() {
+        cache = Caffeine.newBuilder()
+                .maximumSize(maxEntries)
+                .expireAfter(Expiry.<Key, CachedAnswer>creating((key, answer) -> ttl(answer.answerClass())))
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, "first-turn-responses");
+    }
+
+    /**
+     * Looks up a cached answer for the opening message of a session. {@code path} tags the hit-rate
+     * metric (rest or stream).
+     */
+    public Optional<String> lookup(String path, String question) {
+        if (!enabled) {
+            count(path, "disabled");
+            return Optional.empty();
+        }
+        CachedAnswer answer = cache.getIfPresent(key(question));
+        count(path, answer != null ? "hit" : "miss");
+        if (answer != null) {
+            log.debug("Serving cached first-turn answer ({}) for: {}", answer.answerClass(), question);
+        }
+        return Optional.ofNullable(answer).map(CachedAnswer::text);
+    }
+
+    /**
+     * Records a turn that could not use the cache because the session already has history, so hit rate
+     * can be read against all turns.
+     */
+    public void bypass(String path) {
+        count(path, "bypass");
+    }
+
+    /**
+     * Remembers the answer to a first turn. {@code toolsUsed} decides how long it stays valid.
+     */
+    public void store(String question, String answer, Collection<String> toolsUsed) {
+        if (!enabled || answer == null || answer.isBlank()) {
+            return;
+        }
+        cache.put(key(question), new CachedAnswer(answer, classify(question, toolsUsed)));
+    }
+
+    static Key key(String question) {
+        return new Key(detectLanguage(question), normalize(question));
+    }
+
+    static String normalize(String question) {
+        return LandmarkAliases.normalize(question);
+    }
+
+    static String detectLanguage(String question) {
+        int german = 0;
+        String[] words = normalize(question).split(" ");
+        for (String word : words) {
+            if (GERMAN_WORDS.contains(word)) {
+                german++;
+            }
+        }
+        return german * 4 >= words.length ? "de" : "en";
+    }
+
+    static AnswerClass classify(String question, Collection<String> toolsUsed) {
+        if (toolsUsed.stream().anyMatch(LIVE_TOOLS::contains)) {
+            return AnswerClass.LIVE;
+        }
+        boolean listing = toolsUsed.stream().anyMatch(LISTING_TOOLS::contains);
+        for (String word : normalize(question).split(" ")) {
+            if (LIVE_WORDS.contains(word)) {
+                return AnswerClass.LIVE;
+            }
+            listing |= LISTING_WORDS.contains(word);
+        }
+        return listing ? AnswerClass.LISTING : AnswerClass.STATIC;
+    }
+
+    private Duration ttl(AnswerClass answerClass) {
+        return switch (answerClass) {
+            case LIVE -> Duration.ofMinutes(liveTtlMinutes);
+            case LISTING -> Duration.ofHours(listingTtlHours);
+            case STATIC -> Duration.ofHours(staticTtlHours);
+        };
+    }
+
+    private void count(String path, String result) {
+        Counter.builder("chat.response.cache")
+                .description("Chat turns by response cache outcome: hit, miss, bypass (not a first turn)")
+                .tag("path", path)
+                .tag("result", result)
+                .register(meterRegistry)
+                .increment();
+    }
+}
@@ -0,0 +1,49 @@
+package org.pm.hamburgaiassistant.config;
+
+import org.pm.hamburgaiassistant.events.EventSource;
+import org.pm.hamburgaiassistant.events.EventbriteEventSource;
+import org.pm.hamburgaiassistant.events.JsonFileEventSource;
+import org.pm.hamburgaiassistant.http.UpstreamHttpClients;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.io.ResourceLoader;
+
+import java.util.List;
+
+@Configuration
+public class EventsConfig {
+
+    @Value("${events.source:eventbrite}")
+    private String source;
+
+    @Value("${events.file:}")
+    private String file;
+
+    @Value("${eventbrite.api.url}")
+    private String eventbriteUrl;
+
+    @Value("${eventbrite.api.key}")
+    private String eventbriteKey;
+
+    @Value("${events.eventbrite.organization-ids:}")
+    private List<String> organizationIds;
+
+    /**
+     * The event catalog's source: "eventbrite", or "file" for a local JSON file.
+     */
+    @Bean
+    public EventSource eventSource(UpstreamHttpClients httpClients, ResourceLoader resourceLoader) {
+        return switch (source) {
+            case "file" -> {
+                if (file.isBlank()) {
+                    throw new IllegalStateException("events.source=file needs events.file");
+                }
+                yield new JsonFileEventSource(resourceLoader.getResource(file));
+            }
+            case "eventbrite" -> new EventbriteEventSource(httpClients, eventbriteUrl, eventbriteKey,
+                    organizationIds.stream().filter(id -> !id.isBlank()).toList());
+            default -> throw new IllegalStateException("Unknown events.source: " + source);
+        };
+    }
+}
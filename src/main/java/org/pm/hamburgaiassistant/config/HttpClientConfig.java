@@ -0,0 +1,59 @@
+package org.pm.hamburgaiassistant.config;
+
+import okhttp3.ConnectionPool;
+import okhttp3.Dispatcher;
+import okhttp3.OkHttpClient;
+import okhttp3.Protocol;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+@Configuration
+public class HttpClientConfig {
+
+    @Value("${http.pool.max-idle-connections:32}")
+    private int maxIdleConnections;
+
+    @Value("${http.pool.keep-alive-seconds:300}")
+    private long keepAliveSeconds;
+
+    @Value("${http.dispatcher.max-requests:256}")
+    private int maxRequests;
+
+    @Value("${http.dispatcher.max-requests-per-host:64}")
+    private int maxRequestsPerHost;
+
+    @Value("${http.connect-timeout-ms:5000}")
+    private long connectTimeoutMs;
+
+    @Value("${spring.threads.virtual.enabled:false}")
+    private boolean virtualThreads;
+
+    /**
+     * The one connection pool and dispatcher every outbound call goes through.
+     * Per-upstream clients are derived from it with newBuilder(), which shares both.
+     */
+    @Bean
+    public OkHttpClient sharedHttpClient() {
+        // Async calls (the DeepSeek stream) hold their thread while reading; virtual threads make that free
+        Dispatcher dispatcher = virtualThreads && VirtualThreads.available()
+                ? new Dispatcher(VirtualThreads.newThreadPerTaskExecutor("okhttp-"))
+                : new Dispatcher();
+        dispatcher.setMaxRequests(maxRequests);
+        dispatcher.setMaxRequestsPerHost(maxRequestsPerHost);
+
+        return new OkHttpClient.Builder()
+                .connectionPool(new ConnectionPool(maxIdleConnections, keepAliveSeconds, TimeUnit.SECONDS))
+                .dispatcher(dispatcher)
+                .protocols(List.of(Protocol.HTTP_2, Protocol.HTTP_1_1))
+                .connectTimeout(Duration.ofMillis(connectTimeoutMs))
+                // Detects half-dead HTTP/2 connections before a request is multiplexed onto them
+                .pingInterval(Duration.ofSeconds(30))
+                .retryOnConnectionFailure(true)
+                .build();
+    }
+}
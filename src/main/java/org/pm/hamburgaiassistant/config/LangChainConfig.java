@@ -1,16 +1,17 @@
 package org.pm.hamburgaiassistant.config;
 
-import dev.langchain4j.memory.ChatMemory;
-import dev.langchain4j.memory.chat.MessageWindowChatMemory;
+import dev.langchain4j.model.Tokenizer;
 import dev.langchain4j.model.chat.ChatLanguageModel;
 import dev.langchain4j.model.openai.OpenAiChatModel;
+import dev.langchain4j.model.openai.OpenAiTokenizer;
+import org.pm.hamburgaiassistant.http.Upstream;
+import org.pm.hamburgaiassistant.http.UpstreamHttpClients;
+import org.pm.hamburgaiassistant.service.DeepSeekStreamingChatModel;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 
 import java.time.Duration;
-import java.util.Map;
-import java.util.concurrent.ConcurrentHashMap;
 
 @Configuration
 public class LangChainConfig {
@@ -34,8 +35,21 @@ public class LangChainConfig {
                 .build();
     }
 
+    // Built once and shared by every WebSocket stream; it rides on the shared DeepSeek HTTP client
     @Bean
-    public Map<Object, ChatMemory> chatMemoryStore() {
-        return new ConcurrentHashMap<>();
+    public DeepSeekStreamingChatModel streamingChatLanguageModel(UpstreamHttpClients httpClients) {
+        return new DeepSeekStreamingChatModel(
+                httpClients.forUpstream(Upstream.DEEPSEEK),
+                apiUrl + "/v1",
+                apiKey,
+                "deepseek-chat",
+                0.7
+        );
     }
-}
\ No newline at end of file
+
+    // Local cl100k estimate; DeepSeek's own tokenizer differs slightly, which is fine for budgeting
+    @Bean
+    public Tokenizer tokenizer() {
+        return new OpenAiTokenizer();
+    }
+}
@@ -0,0 +1,58 @@
+package org.pm.hamburgaiassistant.config;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Virtual-thread executors for the opt-in Java 21 mode. The default build still targets Java 17, so the
+ * Java 21 API is reached reflectively; on older runtimes {@link #available()} is false and callers keep
+ * their platform-thread pools.
+ */
+public final class VirtualThreads {
+
+    private static final Method OF_VIRTUAL;
+    private static final Method NAME;
+    private static final Method FACTORY;
+    private static final Method THREAD_PER_TASK;
+
+    static {
+        Method ofVirtual = null, name = null, factory = null, perTask = null;
+        try {
+            Class<?> builder = Class.forName("java.lang.Thread$Builder");
+            ofVirtual = Thread.class.getMethod("ofVirtual");
+            name = builder.getMethod("name", String.class, long.class);
+            factory = builder.getMethod("factory");
+            perTask = Executors.class.getMethod("newThreadPerTaskExecutor", ThreadFactory.class);
+        } catch (ReflectiveOperationException e) {
+            // Java 17: no virtual threads
+        }
+        OF_VIRTUAL = ofVirtual;
+        NAME = name;
+        FACTORY = factory;
+        THREAD_PER_TASK = perTask;
+    }
+
+    private VirtualThreads() {
+    }
+
+    public static boolean available() {
+        return THREAD_PER_TASK != null;
+    }
+
+    /**
+     * An executor that starts one virtual thread per task, named {@code prefix0}, {@code prefix1}, ...
+     */
+    public static ExecutorService newThreadPerTaskExecutor(String prefix) {
+        if (!available()) {
+            throw new IllegalStateException("Virtual threads need Java 21, running on " + Runtime.version());
+        }
+        try {
+            Object builder = NAME.invoke(OF_VIRTUAL.invoke(null), prefix, 0L);
+            return (ExecutorService) THREAD_PER_TASK.invoke(null, FACTORY.invoke(builder));
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("Could not create a virtual thread executor", e);
+        }
+    }
+}
@@ -1,24 +1,108 @@
 package org.pm.hamburgaiassistant.controller;
 
+import com.google.gson.Gson;
+import com.google.gson.JsonObject;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.extern.slf4j.Slf4j;
+import org.pm.hamburgaiassistant.service.ChatConcurrencyLimiter;
 import org.pm.hamburgaiassistant.service.ChatService;
+import org.pm.hamburgaiassistant.service.SessionMailboxes;
+import org.pm.hamburgaiassistant.service.StreamingChatService;
 import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.MediaType;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
+import java.io.IOException;
+import java.util.concurrent.CompletableFuture;
+
+@Slf4j
 @RestController
 @RequestMapping("/api/chat")
 @RequiredArgsConstructor
 public class ChatController {
 
     private final ChatService chatService;
+    private final ChatConcurrencyLimiter concurrencyLimiter;
+    private final StreamingChatService streamingChatService;
+    private final SessionMailboxes mailboxes;
+    private final Gson gson = new Gson();
+
+    @Value("${chat.sse.timeout-ms:120000}")
+    private long sseTimeoutMs;
 
+    /**
+     * Answers in one blocking response. Unlike the streaming endpoints, the turn is not cancelled when the
+     * client disconnects: the servlet container only notices the closed connection when the answer is
+     * written. A client that gives up can DELETE the session, which cancels its running turns.
+     */
     @PostMapping
     public ChatResponse chat(@RequestBody ChatRequest request) {
         // Use sessionId from request, or default to "default-session"
         String sessionId = request.sessionId() != null ? request.sessionId() : "default-session";
-        String response = chatService.chat(sessionId, request.message());
+        // Turns of one session run in order; only a turn that is actually starting takes a concurrency slot
+        String response = SessionMailboxes.await(mailboxes.submit(sessionId, request.message(),
+                text -> CompletableFuture.completedFuture(concurrencyLimiter.call(() -> chatService.chat(sessionId, text)))));
         return new ChatResponse(response, sessionId);
     }
 
+    /**
+     * Streams the answer as Server-Sent Events for clients that can't keep a WebSocket open: "token"
+     * events carry {"content": ...} like the WebSocket frames, then one "complete" event.
+     */
+    @PostMapping(path = "/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter stream(@RequestBody ChatRequest request, HttpServletResponse response) {
+        return stream(request.message(), request.sessionId(), response);
+    }
+
+    // EventSource can only issue GET requests
+    @GetMapping(path = "/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter stream(@RequestParam String message,
+                             @RequestParam(required = false) String sessionId,
+                             HttpServletResponse response) {
+        String session = sessionId != null ? sessionId : "default-session";
+        // Stops nginx-style proxies from buffering the stream into one late response
+        response.setHeader("X-Accel-Buffering", "no");
+        response.setHeader("Cache-Control", "no-cache");
+
+        // The request thread returns right away; tokens are written from the upstream stream's callbacks
+        SseEmitter emitter = new SseEmitter(sseTimeoutMs);
+        StreamingChatService.StreamHandle handle = streamingChatService.submit("sse", session, message,
+                token -> {
+                    JsonObject data = new JsonObject();
+                    data.addProperty("content", token);
+                    send(emitter, SseEmitter.event().name("token").data(gson.toJson(data), MediaType.APPLICATION_JSON));
+                },
+                () -> {
+                    JsonObject data = new JsonObject();
+                    data.addProperty("sessionId", session);
+                    send(emitter, SseEmitter.event().name("complete").data(gson.toJson(data), MediaType.APPLICATION_JSON));
+                    emitter.complete();
+                },
+                rejected -> {
+                    // The stream is already open, so the 429 becomes an "error" event
+                    JsonObject data = new JsonObject();
+                    data.addProperty("message", rejected.getMessage());
+                    send(emitter, SseEmitter.event().name("error").data(gson.toJson(data), MediaType.APPLICATION_JSON));
+                    emitter.complete();
+                });
+        // A dropped connection surfaces as an error or timeout; after a normal completion cancel is a no-op
+        emitter.onError(error -> handle.stop("disconnect"));
+        emitter.onTimeout(() -> handle.stop("timeout"));
+        emitter.onCompletion(() -> handle.stop("disconnect"));
+        return emitter;
+    }
+
+    private static void send(SseEmitter emitter, SseEmitter.SseEventBuilder event) {
+        try {
+            emitter.send(event);
+        } catch (IOException | IllegalStateException e) {
+            // Client went away or the emitter timed out; the rest of the stream has nowhere to go
+            log.debug("Dropping SSE event: {}", e.getMessage());
+        }
+    }
+
     @DeleteMapping("/session/{sessionId}")
     public void clearSession(@PathVariable String sessionId) {
         chatService.clearSession(sessionId);
@@ -27,4 +111,4 @@ public class ChatController {
     // Inner classes for request/response
     public record ChatRequest(String message, String sessionId) {}
     public record ChatResponse(String response, String sessionId) {}
-}
\ No newline at end of file
+}
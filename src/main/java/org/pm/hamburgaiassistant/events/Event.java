@@ -0,0 +1,11 @@
+package org.pm.hamburgaiassistant.events;
+
+import java.time.LocalDateTime;
+
+/**
+ * One listed event, in Hamburg local time. {@code end} is never before {@code start}; sources that
+ * give no end time use the start.
+ */
+public record Event(String id, String name, String category, String venue, LocalDateTime start,
+                    LocalDateTime end, String url) {
+}
@@ -0,0 +1,99 @@
+package org.pm.hamburgaiassistant.events;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.Clock;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Upcoming Hamburg events, pulled from the configured {@link EventSource} in the background and served
+ * from an in-memory {@link EventIndex}. Questions never wait for the source: a refresh builds a new
+ * index and swaps it in, and a failed refresh keeps serving the previous one.
+ */
+@Slf4j
+@Component
+public class EventCatalog {
+
+    private static final ZoneId HAMBURG = ZoneId.of("Europe/Berlin");
+
+    private final EventSource source;
+    private final MeterRegistry meterRegistry;
+    private final Clock clock;
+    private final int horizonDays;
+
+    private volatile EventIndex index = EventIndex.EMPTY;
+
+    @Autowired
+    public EventCatalog(EventSource source, MeterRegistry meterRegistry,
+                        @Value("${events.horizon-days:30}") int horizonDays) {
+        this(source, meterRegistry, Clock.system(HAMBURG), horizonDays);
+    }
+
+    EventCatalog(EventSource source, MeterRegistry meterRegistry, Clock clock, int horizonDays) {
+        this.source = source;
+        this.meterRegistry = meterRegistry;
+        this.clock = clock;
+        this.horizonDays = horizonDays;
+        meterRegistry.gauge("events.catalog.size", this, catalog -> catalog.index.size());
+    }
+
+    @Scheduled(initialDelayString = "${events.initial-delay-ms:0}",
+            fixedDelayString = "${events.refresh-interval-ms:3600000}")
+    public void refresh() {
+        long start = System.nanoTime();
+        LocalDate today = LocalDate.now(clock);
+        String outcome = "success";
+        try {
+            LocalDateTime now = now();
+            LocalDateTime horizon = today.plusDays(horizonDays + 1L).atStartOfDay();
+            List<Event> upcoming = source.fetch(today, today.plusDays(horizonDays)).stream()
+                    .filter(event -> !event.end().isBefore(now) && event.start().isBefore(horizon))
+                    .toList();
+            index = new EventIndex(upcoming);
+            log.info("Loaded {} upcoming events from {}", upcoming.size(), source.name());
+        } catch (Exception e) {
+            outcome = "failure";
+            log.warn("Refreshing events from {} failed, keeping {} known events: {}",
+                    source.name(), index.size(), e.getMessage());
+        } finally {
+            Timer.builder("events.catalog.refresh")
+                    .description("Event catalog refreshes from the configured source")
+                    .tag("source", source.name())
+                    .tag("outcome", outcome)
+                    .register(meterRegistry)
+                    .record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    /**
+     * Events overlapping [from, to] in start order, at most {@code limit}. Null category or venue
+     * means any.
+     */
+    public List<Event> find(LocalDateTime from, LocalDateTime to, String category, String venue, int limit) {
+        List<Event> events = index.find(from, to, category, venue);
+        return events.size() > limit ? events.subList(0, limit) : events;
+    }
+
+    public Set<String> categories() {
+        return index.categories();
+    }
+
+    public boolean isEmpty() {
+        return index.size() == 0;
+    }
+
+    public LocalDateTime now() {
+        return LocalDateTime.now(clock);
+    }
+}
@@ -0,0 +1,70 @@
+package org.pm.hamburgaiassistant.events;
+
+import org.pm.hamburgaiassistant.tools.LandmarkAliases;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * Events indexed by time, with one interval tree over all of them and one per category and per venue,
+ * so a filtered query only walks the events that can match.
+ */
+final class EventIndex {
+
+    static final EventIndex EMPTY = new EventIndex(List.of());
+
+    private final EventIntervalTree all;
+    private final Map<String, EventIntervalTree> byCategory;
+    private final Map<String, EventIntervalTree> byVenue;
+
+    EventIndex(List<Event> events) {
+        this.all = new EventIntervalTree(events);
+        this.byCategory = events.stream().filter(event -> event.category() != null)
+                .collect(Collectors.groupingBy(event -> key(event.category()), Collectors.collectingAndThen(
+                        Collectors.toList(), EventIntervalTree::new)));
+        this.byVenue = events.stream().filter(event -> event.venue() != null)
+                .collect(Collectors.groupingBy(event -> LandmarkAliases.key(event.venue()),
+                        Collectors.collectingAndThen(Collectors.toList(), EventIntervalTree::new)));
+    }
+
+    int size() {
+        return all.size();
+    }
+
+    Set<String> categories() {
+        return byCategory.keySet();
+    }
+
+    /**
+     * Events overlapping [from, to] in start order. A null category or venue means any; an unknown one
+     * matches nothing.
+     */
+    List<Event> find(LocalDateTime from, LocalDateTime to, String category, String venue) {
+        String venueKey = venue != null ? LandmarkAliases.key(venue) : null;
+        EventIntervalTree tree;
+        if (category != null) {
+            tree = byCategory.get(key(category));
+        } else if (venueKey != null) {
+            tree = byVenue.get(venueKey);
+        } else {
+            tree = all;
+        }
+        if (tree == null) {
+            return List.of();
+        }
+        List<Event> events = tree.overlapping(from, to);
+        if (category != null && venueKey != null) {
+            events = events.stream()
+                    .filter(event -> event.venue() != null && LandmarkAliases.key(event.venue()).equals(venueKey))
+                    .toList();
+        }
+        return events;
+    }
+
+    static String key(String category) {
+        return LandmarkAliases.normalize(category);
+    }
+}
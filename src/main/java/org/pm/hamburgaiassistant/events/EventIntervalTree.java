@@ -0,0 +1,75 @@
+package org.pm.hamburgaiassistant.events;
+
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Immutable interval tree over event times: a balanced search tree ordered by start, each node also
+ * holding the latest end in its subtree, so an overlap query skips every subtree that ends before the
+ * range and stops at the first start after it. Results come back in start order.
+ */
+final class EventIntervalTree {
+
+    private final Node root;
+    private final int size;
+
+    private record Node(Event event, long start, long end, long maxEnd, Node left, Node right) {
+    }
+
+    EventIntervalTree(List<Event> events) {
+        List<Event> sorted = new ArrayList<>(events);
+        sorted.sort(Comparator.comparing(Event::start).thenComparing(Event::end));
+        this.root = build(sorted, 0, sorted.size() - 1);
+        this.size = sorted.size();
+    }
+
+    int size() {
+        return size;
+    }
+
+    /**
+     * Events overlapping [from, to], both inclusive, in start order.
+     */
+    List<Event> overlapping(LocalDateTime from, LocalDateTime to) {
+        List<Event> result = new ArrayList<>();
+        collect(root, seconds(from), seconds(to), result);
+        return result;
+    }
+
+    private static void collect(Node node, long from, long to, List<Event> result) {
+        if (node == null || node.maxEnd() < from) {
+            return;
+        }
+        collect(node.left(), from, to, result);
+        if (node.start() > to) {
+            // Everything to the right starts even later
+            return;
+        }
+        if (node.end() >= from) {
+            result.add(node.event());
+        }
+        collect(node.right(), from, to, result);
+    }
+
+    private static Node build(List<Event> sorted, int low, int high) {
+        if (low > high) {
+            return null;
+        }
+        int mid = (low + high) >>> 1;
+        Node left = build(sorted, low, mid - 1);
+        Node right = build(sorted, mid + 1, high);
+        Event event = sorted.get(mid);
+        long end = seconds(event.end());
+        long maxEnd = Math.max(end, Math.max(left != null ? left.maxEnd() : Long.MIN_VALUE,
+                right != null ? right.maxEnd() : Long.MIN_VALUE));
+        return new Node(event, seconds(event.start()), end, maxEnd, left, right);
+    }
+
+    // Local times only need a consistent order, not a real instant
+    private static long seconds(LocalDateTime time) {
+        return time.toEpochSecond(ZoneOffset.UTC);
+    }
+}
@@ -0,0 +1,16 @@
+package org.pm.hamburgaiassistant.events;
+
+import java.io.IOException;
+import java.time.LocalDate;
+import java.util.List;
+
+/**
+ * Where the {@link EventCatalog} gets its events from. Implementations may return events outside the
+ * requested range; the catalog drops them.
+ */
+public interface EventSource {
+
+    String name();
+
+    List<Event> fetch(LocalDate from, LocalDate to) throws IOException;
+}
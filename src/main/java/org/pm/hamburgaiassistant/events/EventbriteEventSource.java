@@ -0,0 +1,124 @@
+package org.pm.hamburgaiassistant.events;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import lombok.extern.slf4j.Slf4j;
+import okhttp3.HttpUrl;
+import okhttp3.Request;
+import okhttp3.Response;
+import org.pm.hamburgaiassistant.http.Upstream;
+import org.pm.hamburgaiassistant.http.UpstreamHttpClients;
+
+import java.io.IOException;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Events of the configured Eventbrite organizers (Hamburg venues and promoters). Eventbrite no longer
+ * offers a public search, so events are listed per organization, following the continuation token.
+ */
+@Slf4j
+public class EventbriteEventSource implements EventSource {
+
+    // 200 events per page; a bound in case the continuation never ends
+    private static final int MAX_PAGES = 10;
+
+    private final UpstreamHttpClients httpClients;
+    private final String apiUrl;
+    private final String apiKey;
+    private final List<String> organizationIds;
+
+    public EventbriteEventSource(UpstreamHttpClients httpClients, String apiUrl, String apiKey,
+                                 List<String> organizationIds) {
+        this.httpClients = httpClients;
+        this.apiUrl = apiUrl;
+        this.apiKey = apiKey;
+        this.organizationIds = organizationIds;
+        if (organizationIds.isEmpty()) {
+            log.warn("No Eventbrite organizations configured (events.eventbrite.organization-ids); "
+                    + "the event catalog stays empty");
+        }
+    }
+
+    @Override
+    public String name() {
+        return "eventbrite";
+    }
+
+    @Override
+    public List<Event> fetch(LocalDate from, LocalDate to) throws IOException {
+        List<Event> events = new ArrayList<>();
+        for (String organizationId : organizationIds) {
+            String continuation = null;
+            for (int page = 0; page < MAX_PAGES; page++) {
+                JsonObject json = fetchPage(organizationId, continuation);
+                events.addAll(parseEvents(json));
+                JsonObject pagination = json.getAsJsonObject("pagination");
+                if (pagination == null || !pagination.has("has_more_items")
+                        || !pagination.get("has_more_items").getAsBoolean()) {
+                    break;
+                }
+                continuation = pagination.get("continuation").getAsString();
+            }
+        }
+        return events;
+    }
+
+    private JsonObject fetchPage(String organizationId, String continuation) throws IOException {
+        HttpUrl.Builder url = HttpUrl.get(apiUrl).newBuilder()
+                .addPathSegments("organizations/" + organizationId + "/events/")
+                .addQueryParameter("status", "live")
+                .addQueryParameter("time_filter", "current_future")
+                .addQueryParameter("expand", "venue,category")
+                .addQueryParameter("page_size", "200");
+        if (continuation != null) {
+            url.addQueryParameter("continuation", continuation);
+        }
+        Request request = new Request.Builder()
+                .url(url.build())
+                .header("Authorization", "Bearer " + apiKey)
+                .build();
+        try (Response response = httpClients.execute(Upstream.EVENTBRITE, request)) {
+            if (!response.isSuccessful()) {
+                throw new IOException("HTTP " + response.code());
+            }
+            return JsonParser.parseString(response.body().string()).getAsJsonObject();
+        }
+    }
+
+    static List<Event> parseEvents(JsonObject page) {
+        List<Event> events = new ArrayList<>();
+        JsonArray array = page.getAsJsonArray("events");
+        if (array == null) {
+            return events;
+        }
+        for (JsonElement element : array) {
+            JsonObject event = element.getAsJsonObject();
+            LocalDateTime start = LocalDateTime.parse(event.getAsJsonObject("start").get("local").getAsString());
+            LocalDateTime end = event.has("end") && !event.get("end").isJsonNull()
+                    ? LocalDateTime.parse(event.getAsJsonObject("end").get("local").getAsString())
+                    : start;
+            events.add(new Event(
+                    event.get("id").getAsString(),
+                    event.getAsJsonObject("name").get("text").getAsString(),
+                    nested(event, "category", "name"),
+                    nested(event, "venue", "name"),
+                    start,
+                    end.isBefore(start) ? start : end,
+                    event.has("url") ? event.get("url").getAsString() : null));
+        }
+        return events;
+    }
+
+    private static String nested(JsonObject object, String field, String name) {
+        JsonElement value = object.get(field);
+        if (value == null || !value.isJsonObject() || !value.getAsJsonObject().has(name)) {
+            return null;
+        }
+        return value.getAsJsonObject().get(name).getAsString();
+    }
+}
@@ -0,0 +1,55 @@
+package org.pm.hamburgaiassistant.events;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import org.springframework.core.io.Resource;
+
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Events from a local JSON file: an array of objects with id, name, category, venue, start, end and
+ * url, times in ISO local format. Used for tests and for running without an Eventbrite token.
+ */
+public class JsonFileEventSource implements EventSource {
+
+    private final Resource resource;
+
+    public JsonFileEventSource(Resource resource) {
+        this.resource = resource;
+    }
+
+    @Override
+    public String name() {
+        return "file";
+    }
+
+    @Override
+    public List<Event> fetch(LocalDate from, LocalDate to) throws IOException {
+        try (Reader reader = new InputStreamReader(resource.getInputStream(), StandardCharsets.UTF_8)) {
+            JsonArray array = JsonParser.parseReader(reader).getAsJsonArray();
+            List<Event> events = new ArrayList<>(array.size());
+            for (JsonElement element : array) {
+                JsonObject object = element.getAsJsonObject();
+                LocalDateTime start = LocalDateTime.parse(object.get("start").getAsString());
+                LocalDateTime end = object.has("end") ? LocalDateTime.parse(object.get("end").getAsString()) : start;
+                events.add(new Event(text(object, "id"), text(object, "name"), text(object, "category"),
+                        text(object, "venue"), start, end.isBefore(start) ? start : end, text(object, "url")));
+            }
+            return events;
+        }
+    }
+
+    private static String text(JsonObject object, String name) {
+        JsonElement value = object.get(name);
+        return value == null || value.isJsonNull() ? null : value.getAsString();
+    }
+}
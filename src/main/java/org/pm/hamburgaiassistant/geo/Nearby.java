@@ -0,0 +1,7 @@
+package org.pm.hamburgaiassistant.geo;
+
+/**
+ * A point of interest and its distance from the query point.
+ */
+public record Nearby(Poi poi, double distanceMeters) {
+}
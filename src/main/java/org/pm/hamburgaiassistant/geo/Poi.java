@@ -0,0 +1,20 @@
+package org.pm.hamburgaiassistant.geo;
+
+import java.time.Instant;
+
+/**
+ * A point of interest in the {@link PoiIndex}. Landmarks from the guide have no {@code seenAt} and
+ * never go stale; places learned from Places searches carry the time they were last returned.
+ */
+public record Poi(
+        String id,
+        String name,
+        String category,
+        String address,
+        double lat,
+        double lng,
+        Double rating,
+        Integer userRatingsTotal,
+        Instant seenAt
+) {
+}
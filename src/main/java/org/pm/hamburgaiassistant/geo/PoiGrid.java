@@ -0,0 +1,154 @@
+package org.pm.hamburgaiassistant.geo;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Predicate;
+
+/**
+ * Points of interest bucketed into a fixed grid the size of 6-character geohash cells (about
+ * 610 m by 730 m in Hamburg). A radius query only looks at the cells overlapping the circle's bounding
+ * box; a nearest-k query scans rings of cells outwards and stops once no unscanned cell can hold a
+ * closer point. Not thread-safe; {@link PoiIndex} guards it.
+ */
+final class PoiGrid {
+
+    // 15 bits per axis, as in a 30-bit (6-character) geohash
+    private static final double LAT_STEP = 180.0 / (1 << 15);
+    private static final double LNG_STEP = 360.0 / (1 << 15);
+    private static final double EARTH_RADIUS_METERS = 6_371_008.8;
+    private static final double METERS_PER_DEGREE = Math.PI * EARTH_RADIUS_METERS / 180;
+
+    private static final Comparator<Nearby> BY_DISTANCE = Comparator.comparingDouble(Nearby::distanceMeters);
+
+    private final Map<Long, List<Poi>> cells = new HashMap<>();
+    private final Map<String, Poi> byId = new HashMap<>();
+
+    int size() {
+        return byId.size();
+    }
+
+    Poi get(String id) {
+        return byId.get(id);
+    }
+
+    /**
+     * Adds a point, replacing the one with the same id.
+     */
+    void put(Poi poi) {
+        Poi previous = byId.put(poi.id(), poi);
+        if (previous != null) {
+            removeFromCell(previous);
+        }
+        cells.computeIfAbsent(cell(row(poi.lat()), col(poi.lng())), key -> new ArrayList<>()).add(poi);
+    }
+
+    int removeIf(Predicate<Poi> filter) {
+        List<Poi> removed = byId.values().stream().filter(filter).toList();
+        for (Poi poi : removed) {
+            byId.remove(poi.id());
+            removeFromCell(poi);
+        }
+        return removed.size();
+    }
+
+    /**
+     * Matching points within {@code radiusMeters}, nearest first.
+     */
+    List<Nearby> within(double lat, double lng, double radiusMeters, Predicate<Poi> filter) {
+        double latRadius = radiusMeters / METERS_PER_DEGREE;
+        double lngRadius = radiusMeters / (METERS_PER_DEGREE * Math.cos(Math.toRadians(lat)));
+        List<Nearby> result = new ArrayList<>();
+        for (int row = row(lat - latRadius); row <= row(lat + latRadius); row++) {
+            for (int col = col(lng - lngRadius); col <= col(lng + lngRadius); col++) {
+                collect(row, col, lat, lng, radiusMeters, filter, result);
+            }
+        }
+        result.sort(BY_DISTANCE);
+        return result;
+    }
+
+    /**
+     * The {@code k} matching points nearest to the query point, at most {@code maxMeters} away, nearest
+     * first. {@code maxMeters} bounds the scan and must be finite.
+     */
+    List<Nearby> nearest(double lat, double lng, int k, double maxMeters, Predicate<Poi> filter) {
+        if (!Double.isFinite(maxMeters)) {
+            throw new IllegalArgumentException("maxMeters must be finite");
+        }
+        // Every point outside ring r is at least r cells (of the narrower side) away
+        double cellMeters = Math.min(LAT_STEP * METERS_PER_DEGREE,
+                LNG_STEP * METERS_PER_DEGREE * Math.cos(Math.toRadians(lat)));
+        int centerRow = row(lat);
+        int centerCol = col(lng);
+        List<Nearby> found = new ArrayList<>();
+        for (int ring = 0; ; ring++) {
+            for (int row = centerRow - ring; row <= centerRow + ring; row++) {
+                boolean edgeRow = row == centerRow - ring || row == centerRow + ring;
+                for (int col = centerCol - ring; col <= centerCol + ring; col += edgeRow || ring == 0 ? 1 : 2 * ring) {
+                    collect(row, col, lat, lng, maxMeters, filter, found);
+                }
+            }
+            double covered = ring * cellMeters;
+            if (covered >= maxMeters) {
+                break;
+            }
+            if (found.size() >= k) {
+                found.sort(BY_DISTANCE);
+                if (found.get(k - 1).distanceMeters() <= covered) {
+                    break;
+                }
+            }
+        }
+        found.sort(BY_DISTANCE);
+        return found.size() > k ? new ArrayList<>(found.subList(0, k)) : found;
+    }
+
+    /**
+     * Great-circle distance in meters.
+     */
+    static double distanceMeters(double lat1, double lng1, double lat2, double lng2) {
+        double dLat = Math.toRadians(lat2 - lat1);
+        double dLng = Math.toRadians(lng2 - lng1);
+        double a = Math.sin(dLat / 2) * Math.sin(dLat / 2)
+                + Math.cos(Math.toRadians(lat1)) * Math.cos(Math.toRadians(lat2)) * Math.sin(dLng / 2) * Math.sin(dLng / 2);
+        return 2 * EARTH_RADIUS_METERS * Math.asin(Math.min(1, Math.sqrt(a)));
+    }
+
+    private void collect(int row, int col, double lat, double lng, double maxMeters,
+                         Predicate<Poi> filter, List<Nearby> result) {
+        List<Poi> cell = cells.get(cell(row, col));
+        if (cell == null) {
+            return;
+        }
+        for (Poi poi : cell) {
+            double meters = distanceMeters(lat, lng, poi.lat(), poi.lng());
+            if (meters <= maxMeters && filter.test(poi)) {
+                result.add(new Nearby(poi, meters));
+            }
+        }
+    }
+
+    private void removeFromCell(Poi poi) {
+        long key = cell(row(poi.lat()), col(poi.lng()));
+        List<Poi> cell = cells.get(key);
+        cell.remove(poi);
+        if (cell.isEmpty()) {
+            cells.remove(key);
+        }
+    }
+
+    private static int row(double lat) {
+        return (int) Math.floor((lat + 90) / LAT_STEP);
+    }
+
+    private static int col(double lng) {
+        return (int) Math.floor((lng + 180) / LNG_STEP);
+    }
+
+    private static long cell(int row, int col) {
+        return ((long) row << 32) | (col & 0xffffffffL);
+    }
+}
@@ -0,0 +1,259 @@
+package org.pm.hamburgaiassistant.geo;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.pm.hamburgaiassistant.tools.LandmarkAliases;
+import org.pm.hamburgaiassistant.tools.PlaceResult;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * In-process spatial index of Hamburg points of interest, so "museums near the Speicherstadt" can be
+ * answered without a Places text search. It is seeded with the landmarks, restaurants, venues and
+ * hotels named in the tourism guide and learns every place a Places search returns.
+ * <p>
+ * A question is answered locally only when it asks for a plain category ("cafes", "hotels"), the place
+ * it is near is a known landmark or an earlier search result, and enough fresh matches lie within the
+ * radius. Anything more specific ("vegan cafes with wifi") still goes to Google.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class PoiIndex {
+
+    private static final Pattern NEAR = Pattern.compile(
+            "(?i)^(.+?)\\s+(?:near|around|close to|next to|nahe|in der (?:nähe|naehe) (?:von|vom|der|des))"
+                    + "\\s+(?:the\\s+|dem\\s+|der\\s+)?(.+)$");
+    private static final Pattern LEADING_NEAR = Pattern.compile(
+            "(?i)^(?:(?:near|around|close to|next to)\\s+)?(?:the\\s+)?");
+
+    // Whole (normalized) queries that name a category, and the category they name
+    private static final Map<String, String> CATEGORIES = new HashMap<>();
+
+    static {
+        register("restaurant", "restaurant", "restaurants", "places to eat", "food", "lokal");
+        register("cafe", "cafe", "cafes", "coffee", "coffee shop", "coffee shops");
+        register("bar", "bar", "bars", "pub", "pubs", "kneipe", "kneipen", "club", "clubs", "nightlife");
+        register("hotel", "hotel", "hotels", "accommodation", "hostel", "hostels", "unterkunft");
+        register("museum", "museum", "museums", "museen");
+        register("landmark", "attractions", "sights", "sightseeing", "landmarks", "things to see",
+                "sehenswuerdigkeiten");
+        register("theater", "theater", "theaters", "theatre", "theatres");
+        register("park", "park", "parks");
+        register("shopping", "shops", "shopping", "stores", "geschaefte");
+        register("venue", "concert hall", "concert halls", "music venues", "live music");
+    }
+
+    @Value("${places.local.enabled:true}")
+    private boolean enabled;
+
+    @Value("${places.local.landmarks:geo/hamburg-landmarks.json}")
+    private String landmarks;
+
+    @Value("${places.local.radius-meters:1000}")
+    private double radiusMeters;
+
+    @Value("${places.local.min-results:3}")
+    private int minResults;
+
+    @Value("${places.local.max-results:5}")
+    private int maxResults;
+
+    @Value("${places.local.max-age-hours:168}")
+    private long maxAgeHours;
+
+    private final MeterRegistry meterRegistry;
+
+    private final PoiGrid grid = new PoiGrid();
+    // Places a question can be "near", by LandmarkAliases key
+    private final Map<String, Poi> anchors = new HashMap<>();
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    private static void register(String category, String... queries) {
+        for (String query : queries) {
+            CATEGORIES.put(query, category);
+        }
+    }
+
+    @PostConstruct
+    void seed() {
+        if (!enabled) {
+            return;
+        }
+        try (Reader reader = new InputStreamReader(new ClassPathResource(landmarks).getInputStream(),
+                StandardCharsets.UTF_8)) {
+            JsonArray array = JsonParser.parseReader(reader).getAsJsonArray();
+            for (JsonElement element : array) {
+                JsonObject object = element.getAsJsonObject();
+                String name = object.get("name").getAsString();
+                String address = object.has("address") ? object.get("address").getAsString() : null;
+                put(new Poi("guide:" + LandmarkAliases.key(name), name, object.get("category").getAsString(),
+                        address, object.get("lat").getAsDouble(), object.get("lng").getAsDouble(),
+                        null, null, null));
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not read landmarks " + landmarks, e);
+        }
+        meterRegistry.gauge("places.local.size", this, PoiIndex::size);
+        log.info("Seeded local place index with {} landmarks from {}", grid.size(), landmarks);
+    }
+
+    /**
+     * Learns the places of a Places search. Their category comes from the search query.
+     */
+    public void record(String query, List<PlaceResult> places, Instant fetchedAt) {
+        if (!enabled) {
+            return;
+        }
+        String category = categoryOf(query);
+        lock.writeLock().lock();
+        try {
+            for (PlaceResult place : places) {
+                if (place.placeId() == null || place.lat() == null || place.lng() == null) {
+                    continue;
+                }
+                Poi known = grid.get(place.placeId());
+                if (known != null && known.seenAt().isAfter(fetchedAt)) {
+                    continue;
+                }
+                put(new Poi(place.placeId(), place.name(),
+                        category != null || known == null ? category : known.category(), place.address(),
+                        place.lat(), place.lng(), place.rating(), place.userRatingsTotal(), fetchedAt));
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Places of the queried category nearest to the queried location, or empty when the question has to
+     * go to Google: no plain category, an unknown location, or fewer than the minimum fresh matches.
+     */
+    public Optional<List<Nearby>> near(String query, String location) {
+        if (!enabled) {
+            return Optional.empty();
+        }
+        String what = query != null ? query : "";
+        String where = location != null ? location : "";
+        Matcher near = NEAR.matcher(query != null ? query.trim() : "");
+        if (near.matches()) {
+            what = near.group(1);
+            where = near.group(2);
+        }
+        String category = CATEGORIES.get(LandmarkAliases.normalize(what));
+        if (category == null) {
+            count("uncategorized");
+            return Optional.empty();
+        }
+
+        List<Nearby> result;
+        lock.readLock().lock();
+        try {
+            Poi anchor = anchors.get(LandmarkAliases.key(LEADING_NEAR.matcher(where.trim()).replaceFirst("")));
+            if (anchor == null) {
+                count("no-anchor");
+                return Optional.empty();
+            }
+            Instant cutoff = Instant.now().minus(Duration.ofHours(maxAgeHours));
+            // Ask for extra so a guide entry and its Places twin still leave enough distinct places
+            List<Nearby> candidates = grid.nearest(anchor.lat(), anchor.lng(), maxResults * 2, radiusMeters,
+                    poi -> category.equals(poi.category()) && !poi.id().equals(anchor.id())
+                            && (poi.seenAt() == null || poi.seenAt().isAfter(cutoff)));
+            result = distinct(candidates, LandmarkAliases.key(anchor.name()));
+        } finally {
+            lock.readLock().unlock();
+        }
+        if (result.size() < minResults) {
+            count("too-few");
+            return Optional.empty();
+        }
+        count("hit");
+        return Optional.of(result);
+    }
+
+    @Scheduled(fixedDelayString = "${places.local.prune-interval-ms:3600000}",
+            initialDelayString = "${places.local.prune-interval-ms:3600000}")
+    void pruneStale() {
+        Instant cutoff = Instant.now().minus(Duration.ofHours(maxAgeHours));
+        lock.writeLock().lock();
+        try {
+            int removed = grid.removeIf(poi -> poi.seenAt() != null && poi.seenAt().isBefore(cutoff));
+            anchors.values().removeIf(poi -> poi.seenAt() != null && poi.seenAt().isBefore(cutoff));
+            if (removed > 0) {
+                log.debug("Pruned {} stale places from the local index", removed);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return grid.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // Caller holds the write lock, or is still seeding
+    private void put(Poi poi) {
+        grid.put(poi);
+        // Guide landmarks stay the anchor for their name; learned places only fill in names the guide lacks
+        anchors.merge(LandmarkAliases.key(poi.name()), poi,
+                (known, learned) -> known.seenAt() == null ? known : learned);
+    }
+
+    private List<Nearby> distinct(List<Nearby> candidates, String anchorName) {
+        Set<String> names = new HashSet<>(Set.of(anchorName));
+        List<Nearby> result = new ArrayList<>();
+        for (Nearby nearby : candidates) {
+            if (result.size() < maxResults && names.add(LandmarkAliases.key(nearby.poi().name()))) {
+                result.add(nearby);
+            }
+        }
+        return result;
+    }
+
+    // Same rule as near(): only a plain category counts, "italian restaurants" are not all restaurants
+    private static String categoryOf(String query) {
+        Matcher near = NEAR.matcher(query != null ? query.trim() : "");
+        return CATEGORIES.get(LandmarkAliases.normalize(near.matches() ? near.group(1) : query));
+    }
+
+    private void count(String result) {
+        Counter.builder("places.local.lookups")
+                .description("Place searches answered from the local index (hit) or sent to Google, by reason")
+                .tag("result", result)
+                .register(meterRegistry)
+                .increment();
+    }
+}
@@ -0,0 +1,128 @@
+package org.pm.hamburgaiassistant.http;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/**
+ * Cancellation signal for one generation: the upstream stream, running tool calls and the HTTP requests
+ * they make all register here, so one {@link #cancel} stops everything still in flight. Code running on
+ * behalf of a generation makes it {@link #current()} with {@link #callWith}, which is how upstream HTTP
+ * calls find it without every tool signature having to carry it.
+ */
+public final class Cancellation {
+
+    private static final ThreadLocal<Cancellation> CURRENT = new ThreadLocal<>();
+
+    private final String sessionId;
+    private final Consumer<Cancellation> onCancelled;
+    private final AtomicInteger streamedTokens = new AtomicInteger();
+
+    // Guarded by this
+    private final List<Runnable> callbacks = new ArrayList<>();
+    private boolean finished;
+    private volatile String reason;
+
+    public Cancellation(String sessionId, Consumer<Cancellation> onCancelled) {
+        this.sessionId = sessionId;
+        this.onCancelled = onCancelled;
+    }
+
+    public static Cancellation current() {
+        return CURRENT.get();
+    }
+
+    /**
+     * Runs {@code work} with {@code cancellation} as the current one on this thread.
+     */
+    public static <T> T callWith(Cancellation cancellation, Supplier<T> work) {
+        Cancellation previous = CURRENT.get();
+        CURRENT.set(cancellation);
+        try {
+            return work.get();
+        } finally {
+            if (previous != null) {
+                CURRENT.set(previous);
+            } else {
+                CURRENT.remove();
+            }
+        }
+    }
+
+    public String sessionId() {
+        return sessionId;
+    }
+
+    public boolean isCancelled() {
+        return reason != null;
+    }
+
+    public String reason() {
+        return reason;
+    }
+
+    /**
+     * Registers work to run on cancellation; runs it right away if already cancelled.
+     */
+    public void onCancel(Runnable callback) {
+        synchronized (this) {
+            if (finished) {
+                return;
+            }
+            if (reason == null) {
+                callbacks.add(callback);
+                return;
+            }
+        }
+        callback.run();
+    }
+
+    /**
+     * Cancels once; returns false and does nothing if already cancelled or finished.
+     */
+    public boolean cancel(String reason) {
+        List<Runnable> toRun;
+        synchronized (this) {
+            if (finished || this.reason != null) {
+                return false;
+            }
+            this.reason = reason;
+            toRun = new ArrayList<>(callbacks);
+            callbacks.clear();
+        }
+        for (Runnable callback : toRun) {
+            try {
+                callback.run();
+            } catch (RuntimeException e) {
+                // One failing callback must not keep the others from releasing their resources
+            }
+        }
+        onCancelled.accept(this);
+        return true;
+    }
+
+    /**
+     * Marks the generation as done; from now on {@link #cancel} is a no-op and callbacks are released.
+     */
+    public synchronized void finish() {
+        finished = true;
+        callbacks.clear();
+    }
+
+    public void throwIfCancelled() {
+        if (reason != null) {
+            throw new CancellationException("Generation for session " + sessionId + " cancelled: " + reason);
+        }
+    }
+
+    public void tokenStreamed() {
+        streamedTokens.incrementAndGet();
+    }
+
+    public int streamedTokens() {
+        return streamedTokens.get();
+    }
+}
@@ -0,0 +1,124 @@
+package org.pm.hamburgaiassistant.http;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.time.Duration;
+import java.util.Arrays;
+
+/**
+ * Count-based circuit breaker for one upstream. Opens when the failure rate over the last calls
+ * reaches the threshold, fails calls fast while open, and once the open period is over lets a single
+ * probe through: its outcome closes the circuit again or re-opens it.
+ */
+@Slf4j
+final class CircuitBreaker {
+
+    enum State { CLOSED, HALF_OPEN, OPEN }
+
+    private final String name;
+    private final int minCalls;
+    private final int failureRatePercent;
+    private final long openNanos;
+
+    // Guarded by this: outcomes of the last calls, true for a failure
+    private final boolean[] window;
+    private int next;
+    private int calls;
+    private int failures;
+    private State state = State.CLOSED;
+    private long openedAt;
+    private boolean probing;
+
+    CircuitBreaker(String name, int windowSize, int minCalls, int failureRatePercent, Duration openDuration) {
+        this.name = name;
+        this.window = new boolean[windowSize];
+        this.minCalls = Math.min(minCalls, windowSize);
+        this.failureRatePercent = failureRatePercent;
+        this.openNanos = openDuration.toNanos();
+    }
+
+    /**
+     * False when the call must fail fast. A true answer has to be followed by exactly one of
+     * {@link #onSuccess}, {@link #onFailure} or {@link #onIgnored}.
+     */
+    synchronized boolean tryAcquire() {
+        if (state == State.OPEN) {
+            if (System.nanoTime() - openedAt < openNanos) {
+                return false;
+            }
+            state = State.HALF_OPEN;
+            probing = false;
+        }
+        if (state == State.HALF_OPEN) {
+            if (probing) {
+                return false;
+            }
+            probing = true;
+        }
+        return true;
+    }
+
+    /**
+     * True when the next call, if it gets through, is the probe that decides whether the circuit closes.
+     */
+    synchronized boolean probeDue() {
+        return state == State.OPEN ? System.nanoTime() - openedAt >= openNanos
+                : state == State.HALF_OPEN && !probing;
+    }
+
+    synchronized void onSuccess() {
+        if (state == State.HALF_OPEN) {
+            log.info("Circuit for {} closed again", name);
+            state = State.CLOSED;
+            Arrays.fill(window, false);
+            next = calls = failures = 0;
+            return;
+        }
+        record(false);
+    }
+
+    synchronized void onFailure() {
+        if (state == State.HALF_OPEN) {
+            open();
+            return;
+        }
+        if (state == State.OPEN) {
+            return;
+        }
+        record(true);
+        if (calls >= minCalls && failures * 100 >= failureRatePercent * calls) {
+            open();
+        }
+    }
+
+    /**
+     * The call ended without telling anything about the upstream (cancelled, or rejected locally).
+     */
+    synchronized void onIgnored() {
+        if (state == State.HALF_OPEN) {
+            probing = false;
+        }
+    }
+
+    synchronized State state() {
+        return state;
+    }
+
+    private void record(boolean failed) {
+        if (calls == window.length) {
+            failures -= window[next] ? 1 : 0;
+        } else {
+            calls++;
+        }
+        window[next] = failed;
+        failures += failed ? 1 : 0;
+        next = (next + 1) % window.length;
+    }
+
+    private void open() {
+        log.warn("Circuit for {} opened ({} of the last {} calls failed); failing fast for {} ms",
+                name, failures, calls, Duration.ofNanos(openNanos).toMillis());
+        state = State.OPEN;
+        openedAt = System.nanoTime();
+    }
+}
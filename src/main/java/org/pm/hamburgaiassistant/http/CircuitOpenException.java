@@ -0,0 +1,14 @@
+package org.pm.hamburgaiassistant.http;
+
+import java.io.IOException;
+
+/**
+ * Thrown instead of calling an upstream whose circuit is open. Tools answer it with a degraded result
+ * right away rather than an error after a timeout.
+ */
+public class CircuitOpenException extends IOException {
+
+    public CircuitOpenException(Upstream upstream) {
+        super("Circuit open for " + upstream.id());
+    }
+}
@@ -0,0 +1,64 @@
+package org.pm.hamburgaiassistant.http;
+
+import java.util.Arrays;
+
+/**
+ * Recent response latencies of one upstream, for timeouts and hedge delays that follow what the
+ * upstream actually does. Percentiles are recomputed every few samples rather than on every read.
+ */
+final class LatencyTracker {
+
+    private static final int REFRESH_EVERY = 16;
+
+    private final long[] samples;
+    private final int minSamples;
+
+    // Guarded by this
+    private int next;
+    private int count;
+    private int sinceRefresh;
+
+    private volatile long p95Nanos = -1;
+    private volatile long p99Nanos = -1;
+
+    LatencyTracker(int windowSize, int minSamples) {
+        this.samples = new long[windowSize];
+        this.minSamples = Math.min(minSamples, windowSize);
+    }
+
+    synchronized void record(long nanos) {
+        samples[next] = nanos;
+        next = (next + 1) % samples.length;
+        count = Math.min(count + 1, samples.length);
+        if (++sinceRefresh >= REFRESH_EVERY && count >= minSamples) {
+            sinceRefresh = 0;
+            long[] sorted = Arrays.copyOf(samples, count);
+            Arrays.sort(sorted);
+            p95Nanos = sorted[(int) Math.ceil(0.95 * count) - 1];
+            p99Nanos = sorted[(int) Math.ceil(0.99 * count) - 1];
+        }
+    }
+
+    /**
+     * Records a call given up after {@code nanos}: it took at least that long. Percentiles are refreshed
+     * right away, so a deadline the upstream keeps missing grows before the circuit breaker opens.
+     */
+    synchronized void recordCensored(long nanos) {
+        sinceRefresh = REFRESH_EVERY - 1;
+        record(nanos);
+    }
+
+    /**
+     * The 95th percentile, or -1 until enough samples were seen.
+     */
+    long p95Nanos() {
+        return p95Nanos;
+    }
+
+    /**
+     * The 99th percentile, or -1 until enough samples were seen.
+     */
+    long p99Nanos() {
+        return p99Nanos;
+    }
+}
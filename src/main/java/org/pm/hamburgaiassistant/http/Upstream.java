@@ -0,0 +1,37 @@
+package org.pm.hamburgaiassistant.http;
+
+import java.time.Duration;
+
+/**
+ * External services we call, with the defaults used when http.upstream.&lt;name&gt;.* is not set.
+ */
+public enum Upstream {
+
+    WEATHER("weather", Duration.ofSeconds(3), 32),
+    PLACES("places", Duration.ofSeconds(5), 32),
+    DIRECTIONS("directions", Duration.ofSeconds(5), 32),
+    EVENTBRITE("eventbrite", Duration.ofSeconds(10), 4),
+    DEEPSEEK("deepseek", Duration.ofSeconds(60), 64);
+
+    private final String id;
+    private final Duration defaultTimeout;
+    private final int defaultMaxConcurrency;
+
+    Upstream(String id, Duration defaultTimeout, int defaultMaxConcurrency) {
+        this.id = id;
+        this.defaultTimeout = defaultTimeout;
+        this.defaultMaxConcurrency = defaultMaxConcurrency;
+    }
+
+    public String id() {
+        return id;
+    }
+
+    Duration defaultTimeout() {
+        return defaultTimeout;
+    }
+
+    int defaultMaxConcurrency() {
+        return defaultMaxConcurrency;
+    }
+}
@@ -0,0 +1,391 @@
+package org.pm.hamburgaiassistant.http;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import okhttp3.Call;
+import okhttp3.Callback;
+import okhttp3.Interceptor;
+import okhttp3.MediaType;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.Response;
+import okhttp3.ResponseBody;
+import okio.BufferedSource;
+import okio.ForwardingSource;
+import okio.Okio;
+import org.springframework.core.env.Environment;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.time.Duration;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Hands out one OkHttpClient per upstream, all sharing the pool and dispatcher of the
+ * shared client bean. Each upstream gets its own timeouts, a concurrency cap, a circuit breaker and
+ * latency metrics.
+ * <p>
+ * Tool calls go through {@link #execute}, which adds what matters for tail latency: a deadline that
+ * follows the upstream's observed p99 (capped by the configured timeout) and, for GETs, a hedged second
+ * request once the first has taken longer than the upstream's p95. Whichever answers first wins and the
+ * other is cancelled. A missed deadline counts as a sample at the deadline, so the deadline grows with an
+ * upstream that slows down for good, and the probe of an open circuit runs with the configured timeout.
+ */
+@Component
+public class UpstreamHttpClients {
+
+    private final OkHttpClient shared;
+    private final Map<Upstream, OkHttpClient> clients = new EnumMap<>(Upstream.class);
+    private final Map<Upstream, Policy> policies = new EnumMap<>(Upstream.class);
+
+    /**
+     * Per-upstream resilience settings and state.
+     */
+    private record Policy(Upstream upstream, CircuitBreaker breaker, LatencyTracker latencies, long timeoutMs,
+                          long minTimeoutMs, double timeoutMultiplier, boolean hedge, long minHedgeDelayMs,
+                          Counter hedges, Counter hedgeWins, Counter deadlines) {
+
+        // Until enough samples are in, the configured timeout applies
+        long deadlineMs() {
+            long p99 = latencies.p99Nanos();
+            if (p99 < 0) {
+                return timeoutMs;
+            }
+            long adaptive = (long) (TimeUnit.NANOSECONDS.toMillis(p99) * timeoutMultiplier);
+            return Math.max(minTimeoutMs, Math.min(timeoutMs, adaptive));
+        }
+
+        // -1 when no hedge should be sent
+        long hedgeDelayMs(Request request) {
+            long p95 = latencies.p95Nanos();
+            if (!hedge || p95 < 0 || !request.method().equals("GET")) {
+                return -1;
+            }
+            return Math.max(minHedgeDelayMs, TimeUnit.NANOSECONDS.toMillis(p95));
+        }
+    }
+
+    public UpstreamHttpClients(OkHttpClient sharedHttpClient, Environment environment, MeterRegistry meterRegistry) {
+        this.shared = sharedHttpClient;
+        for (Upstream upstream : Upstream.values()) {
+            String prefix = "http.upstream." + upstream.id() + ".";
+            Duration timeout = Duration.ofMillis(environment.getProperty(prefix + "timeout-ms", Long.class,
+                    upstream.defaultTimeout().toMillis()));
+            int maxConcurrency = environment.getProperty(prefix + "max-concurrency", Integer.class,
+                    upstream.defaultMaxConcurrency());
+            long queueTimeoutMs = environment.getProperty(prefix + "queue-timeout-ms", Long.class, 1000L);
+            CircuitBreaker breaker = new CircuitBreaker(upstream.id(),
+                    environment.getProperty(prefix + "circuit.window", Integer.class, 20),
+                    environment.getProperty(prefix + "circuit.min-calls", Integer.class, 10),
+                    environment.getProperty(prefix + "circuit.failure-rate-percent", Integer.class, 50),
+                    Duration.ofMillis(environment.getProperty(prefix + "circuit.open-ms", Long.class, 15000L)));
+            LatencyTracker latencies = new LatencyTracker(
+                    environment.getProperty(prefix + "latency.window", Integer.class, 256),
+                    environment.getProperty(prefix + "latency.min-samples", Integer.class, 32));
+            Policy policy = new Policy(upstream, breaker, latencies, timeout.toMillis(),
+                    environment.getProperty(prefix + "min-timeout-ms", Long.class, 500L),
+                    environment.getProperty(prefix + "timeout-p99-multiplier", Double.class, 2.0),
+                    environment.getProperty(prefix + "hedge.enabled", Boolean.class, upstream != Upstream.DEEPSEEK),
+                    environment.getProperty(prefix + "hedge.min-delay-ms", Long.class, 50L),
+                    hedgeCounter(meterRegistry, upstream, "sent"),
+                    hedgeCounter(meterRegistry, upstream, "won"),
+                    Counter.builder("http.client.upstream.deadlines")
+                            .description("Calls abandoned at the adaptive deadline")
+                            .tag("upstream", upstream.id())
+                            .register(meterRegistry));
+            policies.put(upstream, policy);
+            meterRegistry.gauge("http.client.upstream.circuit.state", Tags.of("upstream", upstream.id()),
+                    breaker, b -> b.state().ordinal());
+            meterRegistry.gauge("http.client.upstream.deadline", Tags.of("upstream", upstream.id()),
+                    policy, Policy::deadlineMs);
+
+            OkHttpClient.Builder builder = sharedHttpClient.newBuilder()
+                    .readTimeout(timeout)
+                    .writeTimeout(timeout)
+                    .addInterceptor(new UpstreamInterceptor(upstream, maxConcurrency, queueTimeoutMs, breaker,
+                            latencies, meterRegistry));
+            // Streaming responses may legitimately run longer than the timeout; only the gaps between bytes are bounded
+            if (upstream != Upstream.DEEPSEEK) {
+                builder.callTimeout(timeout);
+            }
+            clients.put(upstream, builder.build());
+        }
+    }
+
+    public OkHttpClient forUpstream(Upstream upstream) {
+        return clients.get(upstream);
+    }
+
+    /**
+     * Executes a request against the upstream within its adaptive deadline, hedging idempotent GETs that
+     * run past the upstream's p95. Fails fast with {@link CircuitOpenException} while the circuit is open
+     * and with an {@link InterruptedIOException} at the deadline. Cancelled with the current
+     * {@link Cancellation}, if any.
+     */
+    public Response execute(Upstream upstream, Request request) throws IOException {
+        Policy policy = policies.get(upstream);
+        OkHttpClient client = clients.get(upstream);
+        // The probe gets the configured timeout: held to a deadline the upstream already misses it could
+        // never close the circuit again
+        boolean probe = policy.breaker().probeDue();
+        long deadlineMs = probe ? policy.timeoutMs() : policy.deadlineMs();
+        long hedgeDelayMs = probe ? -1 : policy.hedgeDelayMs(request);
+
+        AtomicReference<Call> winner = new AtomicReference<>();
+        CompletableFuture<Response> response = new CompletableFuture<>();
+        AtomicInteger running = new AtomicInteger();
+        List<Call> calls = new CopyOnWriteArrayList<>();
+        Cancellation cancellation = Cancellation.current();
+        if (cancellation != null) {
+            cancellation.onCancel(() -> calls.forEach(Call::cancel));
+            if (cancellation.isCancelled()) {
+                throw new IOException("Canceled: " + cancellation.reason());
+            }
+        }
+
+        long start = System.nanoTime();
+        try {
+            enqueue(client, request, calls, running, winner, response);
+            if (hedgeDelayMs >= 0 && hedgeDelayMs < deadlineMs) {
+                try {
+                    return response.get(hedgeDelayMs, TimeUnit.MILLISECONDS);
+                } catch (TimeoutException e) {
+                    policy.hedges().increment();
+                    enqueue(client, request, calls, running, winner, response);
+                }
+            }
+            long remaining = TimeUnit.MILLISECONDS.toNanos(deadlineMs) - (System.nanoTime() - start);
+            Response result = response.get(Math.max(0, remaining), TimeUnit.NANOSECONDS);
+            if (calls.size() > 1 && winner.get() == calls.get(1)) {
+                policy.hedgeWins().increment();
+            }
+            return result;
+        } catch (TimeoutException e) {
+            InterruptedIOException timeout = new InterruptedIOException(
+                    upstream.id() + " did not answer within " + deadlineMs + " ms");
+            abandon(response, timeout);
+            policy.deadlines().increment();
+            // Abandoned calls never report their latency; without this sample p99 and the deadline stay put
+            policy.latencies().recordCensored(TimeUnit.MILLISECONDS.toNanos(deadlineMs));
+            // The cancelled calls don't count against the circuit; the missed deadline does
+            policy.breaker().onFailure();
+            throw timeout;
+        } catch (ExecutionException e) {
+            throw e.getCause() instanceof IOException io ? io : new IOException(e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            InterruptedIOException interrupted = new InterruptedIOException("Interrupted waiting for " + upstream.id());
+            abandon(response, interrupted);
+            throw interrupted;
+        } finally {
+            for (Call call : calls) {
+                if (call != winner.get()) {
+                    call.cancel();
+                }
+            }
+        }
+    }
+
+    /**
+     * Gives up on a call nobody will read: a response arriving from now on is closed by the callback, and
+     * one that completed the future just before is closed here, so neither holds a connection or a permit.
+     */
+    private static void abandon(CompletableFuture<Response> response, IOException reason) {
+        response.completeExceptionally(reason);
+        response.thenAccept(Response::close);
+    }
+
+    // The first response completes the future; later ones are closed, and failures only count once all calls failed
+    private static void enqueue(OkHttpClient client, Request request, List<Call> calls, AtomicInteger running,
+                                AtomicReference<Call> winner, CompletableFuture<Response> response) {
+        Call call = client.newCall(request);
+        calls.add(call);
+        running.incrementAndGet();
+        call.enqueue(new Callback() {
+            @Override
+            public void onResponse(Call call, Response result) {
+                if (winner.compareAndSet(null, call) && response.complete(result)) {
+                    return;
+                }
+                result.close();
+            }
+
+            @Override
+            public void onFailure(Call call, IOException e) {
+                if (running.decrementAndGet() == 0) {
+                    response.completeExceptionally(e);
+                }
+            }
+        });
+    }
+
+    private static Counter hedgeCounter(MeterRegistry meterRegistry, Upstream upstream, String result) {
+        return Counter.builder("http.client.upstream.hedges")
+                .description("Hedged second requests sent, and how many of them answered first")
+                .tag("upstream", upstream.id())
+                .tag("result", result)
+                .register(meterRegistry);
+    }
+
+    @PreDestroy
+    void shutdown() {
+        shared.dispatcher().executorService().shutdown();
+        shared.connectionPool().evictAll();
+    }
+
+    /**
+     * Caps in-flight calls per upstream, ties calls to the current {@link Cancellation}, guards the upstream
+     * with its circuit breaker and records latency and outcome once the response body is closed.
+     */
+    private static class UpstreamInterceptor implements Interceptor {
+
+        private final Upstream upstream;
+        private final Semaphore permits;
+        private final long queueTimeoutMs;
+        private final CircuitBreaker breaker;
+        private final LatencyTracker latencies;
+        private final MeterRegistry meterRegistry;
+
+        UpstreamInterceptor(Upstream upstream, int maxConcurrency, long queueTimeoutMs, CircuitBreaker breaker,
+                            LatencyTracker latencies, MeterRegistry meterRegistry) {
+            this.upstream = upstream;
+            this.permits = new Semaphore(maxConcurrency);
+            this.queueTimeoutMs = queueTimeoutMs;
+            this.breaker = breaker;
+            this.latencies = latencies;
+            this.meterRegistry = meterRegistry;
+            meterRegistry.gauge("http.client.upstream.in-flight",
+                    Tags.of("upstream", upstream.id()),
+                    permits, p -> maxConcurrency - p.availablePermits());
+        }
+
+        @Override
+        public Response intercept(Chain chain) throws IOException {
+            long start = System.nanoTime();
+            // Calls made on behalf of a generation die with it
+            Cancellation cancellation = Cancellation.current();
+            if (cancellation != null) {
+                cancellation.onCancel(chain.call()::cancel);
+                if (cancellation.isCancelled()) {
+                    throw new IOException("Canceled: " + cancellation.reason());
+                }
+            }
+            if (!breaker.tryAcquire()) {
+                record(start, "CIRCUIT_OPEN", "none");
+                throw new CircuitOpenException(upstream);
+            }
+            try {
+                if (!permits.tryAcquire(queueTimeoutMs, TimeUnit.MILLISECONDS)) {
+                    breaker.onIgnored();
+                    record(start, "REJECTED", "none");
+                    throw new IOException("Too many concurrent " + upstream.id() + " requests");
+                }
+            } catch (InterruptedException e) {
+                breaker.onIgnored();
+                Thread.currentThread().interrupt();
+                throw new IOException("Interrupted waiting for " + upstream.id() + " capacity", e);
+            }
+
+            Response response;
+            try {
+                response = chain.proceed(chain.request());
+            } catch (IOException | RuntimeException e) {
+                permits.release();
+                // A hedge loser or a cancelled generation says nothing about the upstream's health
+                if (chain.call().isCanceled()) {
+                    breaker.onIgnored();
+                } else {
+                    breaker.onFailure();
+                }
+                record(start, "IO_ERROR", "none");
+                throw e;
+            }
+
+            String outcome = response.isSuccessful() ? "SUCCESS"
+                    : response.code() >= 500 ? "SERVER_ERROR" : "CLIENT_ERROR";
+            String status = String.valueOf(response.code());
+            if (response.code() >= 500 || response.code() == 429) {
+                breaker.onFailure();
+            } else {
+                breaker.onSuccess();
+                // Time to response headers, which is what the deadline and the hedge delay are set against
+                latencies.record(System.nanoTime() - start);
+            }
+            Runnable finish = () -> {
+                permits.release();
+                record(start, outcome, status);
+            };
+
+            ResponseBody body = response.body();
+            if (body == null) {
+                finish.run();
+                return response;
+            }
+            return response.newBuilder().body(new CompletionTrackingBody(body, finish)).build();
+        }
+
+        private void record(long start, String outcome, String status) {
+            Timer.builder("http.client.upstream")
+                    .description("Outbound calls per upstream, until the response body is closed")
+                    .tag("upstream", upstream.id())
+                    .tag("outcome", outcome)
+                    .tag("status", status)
+                    .publishPercentileHistogram()
+                    .register(meterRegistry)
+                    .record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    private static class CompletionTrackingBody extends ResponseBody {
+
+        private final ResponseBody delegate;
+        private final BufferedSource source;
+
+        CompletionTrackingBody(ResponseBody delegate, Runnable onClose) {
+            this.delegate = delegate;
+            AtomicBoolean closed = new AtomicBoolean();
+            this.source = Okio.buffer(new ForwardingSource(delegate.source()) {
+                @Override
+                public void close() throws IOException {
+                    try {
+                        super.close();
+                    } finally {
+                        if (closed.compareAndSet(false, true)) {
+                            onClose.run();
+                        }
+                    }
+                }
+            });
+        }
+
+        @Override
+        public MediaType contentType() {
+            return delegate.contentType();
+        }
+
+        @Override
+        public long contentLength() {
+            return delegate.contentLength();
+        }
+
+        @Override
+        public BufferedSource source() {
+            return source;
+        }
+    }
+}
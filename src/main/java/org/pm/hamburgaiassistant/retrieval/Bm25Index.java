@@ -0,0 +1,140 @@
+package org.pm.hamburgaiassistant.retrieval;
+
+import org.pm.hamburgaiassistant.tools.LandmarkAliases;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+
+/**
+ * Immutable in-memory BM25 index. Postings are stored as parallel int arrays per term, so a query
+ * touches only the documents that contain one of its terms.
+ */
+final class Bm25Index {
+
+    private static final double K1 = 1.2;
+    private static final double B = 0.75;
+
+    private static final Set<String> STOP_WORDS = Set.of(
+            "a", "about", "an", "and", "any", "are", "as", "at", "awesome", "be", "bye", "by", "can", "cool",
+            "could", "do", "does", "for", "from", "get", "good", "great", "hello", "hey", "hi", "how", "i", "in",
+            "is", "it", "its", "like", "lot", "me", "much", "my", "nice", "now", "of", "ok", "okay", "on", "or",
+            "please", "recommend", "right", "should", "some", "sure", "tell", "thank", "thanks", "that", "the",
+            "there", "this", "to", "was", "we", "what", "whats", "when", "where", "which", "who", "why", "with",
+            "would", "yes", "you", "your", "hamburg", "hamburgs");
+
+    // Visitors and the guide don't always use the same word
+    private static final Map<String, String> SYNONYMS = Map.of(
+            "kid", "children",
+            "child", "children",
+            "family", "children",
+            "cheap", "budget",
+            "club", "nightlife",
+            "bar", "nightlife",
+            "dish", "cuisine",
+            "food", "cuisine");
+
+    private final Map<String, Postings> postings;
+    private final int[] docLengths;
+    private final double avgDocLength;
+
+    record Hit(int doc, double score) {
+    }
+
+    private record Postings(int[] docs, int[] freqs, double idf) {
+    }
+
+    Bm25Index(List<String> documents) {
+        docLengths = new int[documents.size()];
+        Map<String, Map<Integer, Integer>> termDocFreqs = new HashMap<>();
+        long totalLength = 0;
+        for (int doc = 0; doc < documents.size(); doc++) {
+            List<String> terms = tokenize(documents.get(doc));
+            docLengths[doc] = terms.size();
+            totalLength += terms.size();
+            for (String term : terms) {
+                termDocFreqs.computeIfAbsent(term, t -> new HashMap<>()).merge(doc, 1, Integer::sum);
+            }
+        }
+        avgDocLength = documents.isEmpty() ? 0 : (double) totalLength / documents.size();
+
+        int n = documents.size();
+        postings = new HashMap<>(termDocFreqs.size() * 2);
+        termDocFreqs.forEach((term, freqsByDoc) -> {
+            int[] docs = freqsByDoc.keySet().stream().mapToInt(Integer::intValue).sorted().toArray();
+            int[] freqs = Arrays.stream(docs).map(freqsByDoc::get).toArray();
+            double idf = Math.log(1 + (n - docs.length + 0.5) / (docs.length + 0.5));
+            postings.put(term, new Postings(docs, freqs, idf));
+        });
+    }
+
+    List<Hit> search(String query, int topK) {
+        double[] scores = new double[docLengths.length];
+        // Repeated query words count once
+        for (String term : new LinkedHashSet<>(tokenize(query))) {
+            Postings p = postings.get(term);
+            if (p == null) {
+                continue;
+            }
+            for (int i = 0; i < p.docs().length; i++) {
+                int doc = p.docs()[i];
+                double tf = p.freqs()[i];
+                double norm = K1 * (1 - B + B * docLengths[doc] / avgDocLength);
+                scores[doc] += p.idf() * tf * (K1 + 1) / (tf + norm);
+            }
+        }
+
+        PriorityQueue<Hit> top = new PriorityQueue<>((a, b) -> Double.compare(a.score(), b.score()));
+        for (int doc = 0; doc < scores.length; doc++) {
+            if (scores[doc] <= 0) {
+                continue;
+            }
+            top.add(new Hit(doc, scores[doc]));
+            if (top.size() > topK) {
+                top.poll();
+            }
+        }
+        List<Hit> hits = new ArrayList<>(top);
+        hits.sort((a, b) -> Double.compare(b.score(), a.score()));
+        return hits;
+    }
+
+    int size() {
+        return docLengths.length;
+    }
+
+    static List<String> tokenize(String text) {
+        List<String> terms = new ArrayList<>();
+        for (String word : LandmarkAliases.normalize(text).split(" ")) {
+            if (word.isEmpty() || STOP_WORDS.contains(word)) {
+                continue;
+            }
+            String term = stem(word);
+            terms.add(term);
+            String synonym = SYNONYMS.get(term);
+            if (synonym != null) {
+                terms.add(synonym);
+            }
+        }
+        return terms;
+    }
+
+    // Plural folding is enough for a short English guide: museums -> museum, churches -> church
+    private static String stem(String word) {
+        if (word.length() > 4 && word.endsWith("ies")) {
+            return word.substring(0, word.length() - 3) + "y";
+        }
+        if (word.length() > 4 && (word.endsWith("ches") || word.endsWith("shes") || word.endsWith("xes"))) {
+            return word.substring(0, word.length() - 2);
+        }
+        if (word.length() > 3 && word.endsWith("s") && !word.endsWith("ss") && !word.endsWith("us")) {
+            return word.substring(0, word.length() - 1);
+        }
+        return word;
+    }
+}
@@ -0,0 +1,86 @@
+package org.pm.hamburgaiassistant.retrieval;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.regex.Pattern;
+
+/**
+ * Splits the plain-text guide into passages. Sections are underlined with dashes, numbered entries
+ * ("3. HAFENCITY") start a new passage, and long runs of paragraphs are cut at paragraph boundaries.
+ */
+final class GuideChunker {
+
+    private static final Pattern UNDERLINE = Pattern.compile("^[-=]{3,}\\s*$");
+    private static final Pattern NUMBERED_ENTRY = Pattern.compile("^\\d+\\.\\s+\\S.*");
+
+    private GuideChunker() {
+    }
+
+    static List<GuidePassage> chunk(List<String> lines, int maxChars) {
+        List<GuidePassage> passages = new ArrayList<>();
+        String section = null;
+        String heading = null;
+        StringBuilder current = new StringBuilder();
+
+        for (int i = 0; i < lines.size(); i++) {
+            String line = lines.get(i).strip();
+            boolean underlined = i + 1 < lines.size() && UNDERLINE.matcher(lines.get(i + 1).strip()).matches();
+
+            if (underlined) {
+                flush(passages, section, heading, current, maxChars);
+                section = titleCase(line);
+                heading = null;
+                i++;
+            } else if (UNDERLINE.matcher(line).matches()) {
+                // stray rule, e.g. under the document title
+            } else if (isEntryHeading(line)) {
+                flush(passages, section, heading, current, maxChars);
+                heading = titleCase(line.replaceFirst("^\\d+\\.\\s+", ""));
+            } else if (line.isEmpty()) {
+                if (current.length() >= maxChars) {
+                    flush(passages, section, heading, current, maxChars);
+                } else if (!current.isEmpty()) {
+                    current.append('\n');
+                }
+            } else {
+                current.append(line).append('\n');
+            }
+        }
+        flush(passages, section, heading, current, maxChars);
+        return passages;
+    }
+
+    // "1. ELBPHILHARMONIE (ELPHI)" is an entry heading, "1. Labskaus: Hamburg's most famous dish" is content
+    private static boolean isEntryHeading(String line) {
+        return NUMBERED_ENTRY.matcher(line).matches() && line.equals(line.toUpperCase()) && line.length() < 80;
+    }
+
+    private static void flush(List<GuidePassage> passages, String section, String heading, StringBuilder current,
+                              int maxChars) {
+        String text = current.toString().strip();
+        current.setLength(0);
+        if (section == null || text.isEmpty()) {
+            return;
+        }
+        // A short tail such as "Location: ... Access: ..." belongs with the passage it follows
+        if (text.length() < maxChars / 3 && !passages.isEmpty()) {
+            GuidePassage last = passages.get(passages.size() - 1);
+            if (last.section().equals(section) && Objects.equals(last.heading(), heading)) {
+                passages.set(passages.size() - 1, new GuidePassage(section, heading, last.text() + "\n\n" + text));
+                return;
+            }
+        }
+        passages.add(new GuidePassage(section, heading, text));
+    }
+
+    private static String titleCase(String upper) {
+        StringBuilder out = new StringBuilder(upper.length());
+        boolean startOfWord = true;
+        for (char c : upper.toCharArray()) {
+            out.append(startOfWord ? Character.toUpperCase(c) : Character.toLowerCase(c));
+            startOfWord = !Character.isLetterOrDigit(c) && c != '\'';
+        }
+        return out.toString();
+    }
+}
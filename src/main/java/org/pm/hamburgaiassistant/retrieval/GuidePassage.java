@@ -0,0 +1,12 @@
+package org.pm.hamburgaiassistant.retrieval;
+
+/**
+ * One retrievable chunk of the tourism guide. {@code heading} is the numbered entry or sub-heading
+ * inside the section, or null for the section's own prose.
+ */
+public record GuidePassage(String section, String heading, String text) {
+
+    public String title() {
+        return heading == null ? section : section + " / " + heading;
+    }
+}
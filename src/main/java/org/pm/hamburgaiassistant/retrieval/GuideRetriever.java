@@ -0,0 +1,149 @@
+package org.pm.hamburgaiassistant.retrieval;
+
+import dev.langchain4j.data.message.ChatMessage;
+import dev.langchain4j.data.message.SystemMessage;
+import dev.langchain4j.rag.content.Content;
+import dev.langchain4j.rag.content.retriever.ContentRetriever;
+import dev.langchain4j.rag.query.Query;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.stereotype.Component;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Retrieves passages from the bundled Hamburg tourism guide with an in-memory BM25 index built at
+ * startup, so common visitor questions can be answered from curated text without a tool round trip.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class GuideRetriever implements ContentRetriever {
+
+    @Value("${retrieval.guide.enabled:true}")
+    private boolean enabled;
+
+    @Value("${retrieval.guide.resource:static/hamburg_tourism_guide.txt}")
+    private String resource;
+
+    @Value("${retrieval.guide.top-k:3}")
+    private int topK;
+
+    @Value("${retrieval.guide.min-score:2.0}")
+    private double minScore;
+
+    @Value("${retrieval.guide.max-passage-chars:900}")
+    private int maxPassageChars;
+
+    private final MeterRegistry meterRegistry;
+
+    private List<GuidePassage> passages = List.of();
+    private Bm25Index index = new Bm25Index(List.of());
+    private Timer searchTimer;
+
+    @PostConstruct
+    void buildIndex() {
+        searchTimer = Timer.builder("retrieval.guide.search")
+                .description("Time to score the tourism guide for one query")
+                .register(meterRegistry);
+        if (!enabled) {
+            return;
+        }
+        List<String> lines = new ArrayList<>();
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(
+                new ClassPathResource(resource).getInputStream(), StandardCharsets.UTF_8))) {
+            reader.lines().forEach(lines::add);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not read tourism guide " + resource, e);
+        }
+
+        long start = System.nanoTime();
+        passages = GuideChunker.chunk(lines, maxPassageChars);
+        List<String> documents = new ArrayList<>(passages.size());
+        for (GuidePassage passage : passages) {
+            // Headings count twice so "Speicherstadt" ranks the Speicherstadt entry above passing mentions
+            String title = passage.heading() != null ? passage.heading() : passage.section();
+            documents.add(title + "\n" + passage.title() + "\n" + passage.text());
+        }
+        index = new Bm25Index(documents);
+        log.info("Indexed {} guide passages from {} in {} ms",
+                passages.size(), resource, (System.nanoTime() - start) / 1_000_000);
+    }
+
+    public List<GuidePassage> search(String text) {
+        if (!enabled || text == null || text.isBlank()) {
+            return List.of();
+        }
+        List<GuidePassage> results = new ArrayList<>();
+        searchTimer.record(() -> {
+            List<Bm25Index.Hit> hits = index.search(text, topK);
+            // Weak runners-up mostly add prompt tokens, so they must be within half of the best score
+            double cutoff = hits.isEmpty() ? minScore : Math.max(minScore, hits.get(0).score() / 2);
+            for (Bm25Index.Hit hit : hits) {
+                if (hit.score() >= cutoff) {
+                    results.add(passages.get(hit.doc()));
+                }
+            }
+        });
+        Counter.builder("retrieval.guide.queries")
+                .tag("result", results.isEmpty() ? "miss" : "hit")
+                .register(meterRegistry)
+                .increment();
+        return results;
+    }
+
+    @Override
+    public List<Content> retrieve(Query query) {
+        List<Content> contents = new ArrayList<>();
+        for (GuidePassage passage : search(query.text())) {
+            contents.add(Content.from(passage.title() + "\n" + passage.text()));
+        }
+        return contents;
+    }
+
+    /**
+     * Returns the messages to send for this turn: the conversation, preceded by guide excerpts relevant
+     * to the user's message. The excerpts are not written to chat memory.
+     */
+    public List<ChatMessage> augment(List<ChatMessage> messages, String userMessage) {
+        return augment(messages, retrieve(Query.from(userMessage)));
+    }
+
+    /**
+     * Same as {@link #augment(List, String)} with excerpts retrieved earlier, for callers that make
+     * several model calls in one turn.
+     */
+    public List<ChatMessage> augment(List<ChatMessage> messages, List<Content> contents) {
+        if (contents.isEmpty()) {
+            return messages;
+        }
+        StringBuilder context = new StringBuilder(
+                "Excerpts from the curated Hamburg tourism guide that may answer the user's question. "
+                        + "Prefer them over tool calls when they are sufficient; use tools for live or "
+                        + "location-specific data.\n");
+        for (Content content : contents) {
+            context.append("\n---\n").append(content.textSegment().text()).append('\n');
+        }
+
+        List<ChatMessage> augmented = new ArrayList<>(messages.size() + 1);
+        int i = 0;
+        while (i < messages.size() && messages.get(i) instanceof SystemMessage) {
+            augmented.add(messages.get(i++));
+        }
+        augmented.add(SystemMessage.from(context.toString()));
+        augmented.addAll(messages.subList(i, messages.size()));
+        return augmented;
+    }
+}
@@ -0,0 +1,94 @@
+package org.pm.hamburgaiassistant.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.pm.hamburgaiassistant.http.Cancellation;
+import org.pm.hamburgaiassistant.session.SessionRegistry;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Generations currently running, per chat session, so that a closed connection, an explicit stop or
+ * the session going away can cancel them. Also estimates the completion tokens each cancellation saved:
+ * the running average answer length minus what had already been streamed.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class ActiveGenerations {
+
+    // Weight of the newest answer in the running average completion length
+    private static final double AVERAGE_WEIGHT = 0.05;
+
+    private final SessionRegistry sessionRegistry;
+    private final MeterRegistry meterRegistry;
+
+    private final Map<String, Set<Cancellation>> bySession = new ConcurrentHashMap<>();
+    private volatile double averageCompletionTokens;
+
+    @PostConstruct
+    void listenForEvictions() {
+        sessionRegistry.onEviction(session -> cancelSession(session.id(), "session-closed"));
+        meterRegistry.gauge("chat.generations.active", bySession,
+                all -> all.values().stream().mapToInt(Set::size).sum());
+    }
+
+    public Cancellation start(String sessionId) {
+        Cancellation cancellation = new Cancellation(sessionId, this::cancelled);
+        bySession.computeIfAbsent(sessionId, id -> ConcurrentHashMap.newKeySet()).add(cancellation);
+        return cancellation;
+    }
+
+    /**
+     * Marks a generation as done. {@code completionTokens} (null if unknown) feeds the average answer
+     * length used for the tokens-saved estimate.
+     */
+    public void finish(Cancellation cancellation, Integer completionTokens) {
+        cancellation.finish();
+        bySession.computeIfPresent(cancellation.sessionId(), (id, running) -> {
+            running.remove(cancellation);
+            return running.isEmpty() ? null : running;
+        });
+        if (!cancellation.isCancelled() && completionTokens != null && completionTokens > 0) {
+            double average = averageCompletionTokens;
+            averageCompletionTokens = average == 0 ? completionTokens
+                    : average + AVERAGE_WEIGHT * (completionTokens - average);
+        }
+    }
+
+    public int cancelSession(String sessionId, String reason) {
+        Set<Cancellation> running = bySession.remove(sessionId);
+        if (running == null) {
+            return 0;
+        }
+        int cancelled = 0;
+        for (Cancellation cancellation : running) {
+            if (cancellation.cancel(reason)) {
+                cancelled++;
+            }
+        }
+        return cancelled;
+    }
+
+    private void cancelled(Cancellation cancellation) {
+        finish(cancellation, null);
+        long saved = Math.max(0, Math.round(averageCompletionTokens) - cancellation.streamedTokens());
+        log.info("Cancelled generation for session {} ({}), about {} completion tokens saved",
+                cancellation.sessionId(), cancellation.reason(), saved);
+        Counter.builder("chat.generations.cancelled")
+                .description("Generations stopped before completion")
+                .tag("reason", cancellation.reason())
+                .register(meterRegistry)
+                .increment();
+        Counter.builder("chat.generations.tokens-saved")
+                .description("Estimated completion tokens not generated because of cancellation")
+                .register(meterRegistry)
+                .increment(saved);
+    }
+}
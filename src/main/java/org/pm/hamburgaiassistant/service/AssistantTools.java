@@ -0,0 +1,70 @@
+package org.pm.hamburgaiassistant.service;
+
+import dev.langchain4j.agent.tool.Tool;
+import dev.langchain4j.agent.tool.ToolExecutionRequest;
+import dev.langchain4j.agent.tool.ToolSpecification;
+import dev.langchain4j.agent.tool.ToolSpecifications;
+import dev.langchain4j.service.tool.DefaultToolExecutor;
+import dev.langchain4j.service.tool.ToolExecutor;
+import lombok.extern.slf4j.Slf4j;
+import org.pm.hamburgaiassistant.tools.GoogleDirectionsTool;
+import org.pm.hamburgaiassistant.tools.GooglePlacesTool;
+import org.pm.hamburgaiassistant.tools.HamburgEventsTool;
+import org.pm.hamburgaiassistant.tools.ToolOutcome;
+import org.pm.hamburgaiassistant.tools.WeatherTool;
+import org.springframework.aop.support.AopUtils;
+import org.springframework.stereotype.Component;
+
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Tool specifications and executors for every assistant tool, reflected once at startup and shared
+ * by all sessions.
+ */
+@Slf4j
+@Component
+public class AssistantTools {
+
+    private final List<ToolSpecification> specifications;
+    private final Map<String, ToolExecutor> executors;
+
+    public AssistantTools(WeatherTool weatherTool,
+                          GooglePlacesTool googlePlacesTool,
+                          GoogleDirectionsTool googleDirectionsTool,
+                          HamburgEventsTool hamburgEventsTool) {
+        List<ToolSpecification> specs = new ArrayList<>();
+        Map<String, ToolExecutor> toolExecutors = new LinkedHashMap<>();
+        for (Object tool : List.of(weatherTool, googlePlacesTool, googleDirectionsTool, hamburgEventsTool)) {
+            for (Method method : AopUtils.getTargetClass(tool).getDeclaredMethods()) {
+                if (!method.isAnnotationPresent(Tool.class)) {
+                    continue;
+                }
+                ToolSpecification spec = ToolSpecifications.toolSpecificationFrom(method);
+                if (toolExecutors.putIfAbsent(spec.name(), new DefaultToolExecutor(tool, method)) != null) {
+                    throw new IllegalStateException("Duplicate tool name: " + spec.name());
+                }
+                specs.add(spec);
+            }
+        }
+        this.specifications = List.copyOf(specs);
+        this.executors = Map.copyOf(toolExecutors);
+        log.info("Registered {} assistant tools: {}", specifications.size(), toolExecutors.keySet());
+    }
+
+    public List<ToolSpecification> specifications() {
+        return specifications;
+    }
+
+    public String execute(ToolExecutionRequest request, Object memoryId) {
+        ToolExecutor executor = executors.get(request.name());
+        if (executor == null) {
+            ToolOutcome.markDegraded();
+            return "There is no tool called " + request.name();
+        }
+        return executor.execute(request, memoryId);
+    }
+}
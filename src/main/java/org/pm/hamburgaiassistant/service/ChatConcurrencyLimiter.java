@@ -0,0 +1,65 @@
+package org.pm.hamburgaiassistant.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Global cap on conversations in flight on the blocking chat path. With platform threads Tomcat's pool
+ * size was the implicit limit; with virtual threads that limit disappears, so this is what keeps a
+ * burst from opening thousands of model calls at once.
+ */
+@Slf4j
+@Component
+public class ChatConcurrencyLimiter {
+
+    private final int maxInFlight;
+    private final long queueTimeoutMs;
+    private final Semaphore permits;
+    private final Counter rejected;
+
+    public ChatConcurrencyLimiter(MeterRegistry meterRegistry,
+                                  @Value("${chat.concurrency.max-in-flight:200}") int maxInFlight,
+                                  @Value("${chat.concurrency.queue-timeout-ms:2000}") long queueTimeoutMs) {
+        this.maxInFlight = maxInFlight;
+        this.queueTimeoutMs = queueTimeoutMs;
+        this.permits = new Semaphore(maxInFlight, true);
+        meterRegistry.gauge("chat.in-flight", permits, p -> maxInFlight - p.availablePermits());
+        this.rejected = Counter.builder("chat.rejected")
+                .description("Chat requests turned away because the in-flight cap stayed full")
+                .register(meterRegistry);
+    }
+
+    public <T> T call(Supplier<T> chat) {
+        try {
+            if (!permits.tryAcquire(queueTimeoutMs, TimeUnit.MILLISECONDS)) {
+                rejected.increment();
+                log.warn("Rejecting chat request: {} conversations already in flight", maxInFlight);
+                throw new CapacityExceededException("Too many conversations in flight, try again shortly");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new CapacityExceededException("Interrupted waiting for chat capacity");
+        }
+        try {
+            return chat.get();
+        } finally {
+            permits.release();
+        }
+    }
+
+    @ResponseStatus(HttpStatus.SERVICE_UNAVAILABLE)
+    public static class CapacityExceededException extends RuntimeException {
+        public CapacityExceededException(String message) {
+            super(message);
+        }
+    }
+}
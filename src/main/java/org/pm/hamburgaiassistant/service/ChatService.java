@@ -1,85 +1,215 @@
 package org.pm.hamburgaiassistant.service;
 
+import dev.langchain4j.agent.tool.ToolExecutionRequest;
+import dev.langchain4j.data.message.AiMessage;
+import dev.langchain4j.data.message.ToolExecutionResultMessage;
+import dev.langchain4j.data.message.UserMessage;
 import dev.langchain4j.memory.ChatMemory;
-import dev.langchain4j.memory.chat.MessageWindowChatMemory;
 import dev.langchain4j.model.chat.ChatLanguageModel;
-import dev.langchain4j.service.AiServices;
+import dev.langchain4j.model.output.Response;
+import dev.langchain4j.model.output.TokenUsage;
+import dev.langchain4j.rag.content.Content;
+import dev.langchain4j.rag.query.Query;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.observation.Observation;
+import io.micrometer.observation.ObservationRegistry;
+import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
-import org.pm.hamburgaiassistant.tools.*;
+import org.pm.hamburgaiassistant.cache.FirstTurnResponseCache;
+import org.pm.hamburgaiassistant.http.Cancellation;
+import org.pm.hamburgaiassistant.retrieval.GuideRetriever;
+import org.pm.hamburgaiassistant.session.SessionRegistry;
 import org.springframework.stereotype.Service;
 
-import java.util.Arrays;
+import java.util.LinkedHashSet;
 import java.util.List;
-import java.util.Map;
-import java.util.concurrent.ConcurrentHashMap;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CancellationException;
 
+/**
+ * One assistant shared by all sessions: the tool specifications are built once by {@link AssistantTools}
+ * and each call only looks up the caller's memory in the {@link SessionRegistry}. The {@link IntentRouter}
+ * narrows them to the ones the message needs, and the {@link ToolPrefetcher} starts the calls the message
+ * makes obvious while the first model call runs. Tool calls requested in the same turn run concurrently
+ * through the {@link ToolExecutionEngine}. Every model call is admitted by the {@link LlmAdmissionController}
+ * first. Each turn is observed as a "chat.turn" span with its model calls and tool calls as children; the
+ * same observations feed the matching timers.
+ */
 @Slf4j
 @Service
+@RequiredArgsConstructor
 public class ChatService {
 
+    // Same bound AiServices applies, so a confused model can't loop on tools forever
+    private static final int MAX_SEQUENTIAL_TOOL_EXECUTIONS = 10;
+
     private final ChatLanguageModel chatModel;
-    private final WeatherTool weatherTool;
-    private final GooglePlacesTool googlePlacesTool;
-    private final GoogleDirectionsTool googleDirectionsTool;  // FIXED!
-    private final HamburgEventsTool eventbriteTool;
-    private final HamburgEventsTool hamburgEventsTool;
-
-    private final Map<String, ChatMemory> sessionMemories = new ConcurrentHashMap<>();
-    private final Map<String, Assistant> sessionAssistants = new ConcurrentHashMap<>();
-
-    public ChatService(
-            ChatLanguageModel chatModel,
-            WeatherTool weatherTool,
-            GooglePlacesTool googlePlacesTool,
-            GoogleDirectionsTool googleDirectionsTool,  // FIXED!
-            HamburgEventsTool eventbriteTool,
-            HamburgEventsTool hamburgEventsTool
-    ) {
-        this.chatModel = chatModel;
-        this.weatherTool = weatherTool;
-        this.googlePlacesTool = googlePlacesTool;
-        this.googleDirectionsTool = googleDirectionsTool;  // FIXED!
-        this.eventbriteTool = eventbriteTool;
-        this.hamburgEventsTool = hamburgEventsTool;
-    }
+    private final IntentRouter intentRouter;
+    private final ToolExecutionEngine toolExecutionEngine;
+    private final ToolPrefetcher toolPrefetcher;
+    private final SessionRegistry sessionRegistry;
+    private final GuideRetriever guideRetriever;
+    private final FirstTurnResponseCache responseCache;
+    private final ActiveGenerations activeGenerations;
+    private final LlmAdmissionController admission;
+    private final MeterRegistry meterRegistry;
+    private final ObservationRegistry observationRegistry;
 
     public String chat(String sessionId, String userMessage) {
+        // Every path sets the outcome, so the timer always has the same tag keys
+        Observation turn = Observation.createNotStarted("chat.turn", observationRegistry)
+                .contextualName("chat turn")
+                .lowCardinalityKeyValue("path", "rest")
+                .lowCardinalityKeyValue("outcome", "answered")
+                .highCardinalityKeyValue("session.id", sessionId)
+                .start();
+        try (Observation.Scope scope = turn.openScope()) {
+            return answer(sessionId, userMessage, turn);
+        } catch (RuntimeException e) {
+            turn.lowCardinalityKeyValue("outcome", outcome(e));
+            turn.error(e);
+            throw e;
+        } finally {
+            turn.stop();
+        }
+    }
+
+    static String outcome(Throwable error) {
+        if (error instanceof CancellationException) {
+            return "cancelled";
+        }
+        if (error instanceof LlmAdmissionController.AdmissionRejectedException) {
+            return "rejected";
+        }
+        return "error";
+    }
+
+    private String answer(String sessionId, String userMessage, Observation turn) {
         log.info("Processing message for session {}: {}", sessionId, userMessage);
 
-        Assistant assistant = sessionAssistants.computeIfAbsent(sessionId, id -> {
-            ChatMemory memory = MessageWindowChatMemory.withMaxMessages(10);
-            sessionMemories.put(id, memory);
+        ChatMemory memory = sessionRegistry.getOrCreate(sessionId).memory();
+        boolean firstTurn = memory.messages().isEmpty();
+        if (firstTurn) {
+            Optional<String> cached = responseCache.lookup("rest", userMessage);
+            if (cached.isPresent()) {
+                turn.lowCardinalityKeyValue("outcome", "cached");
+                memory.add(UserMessage.from(userMessage));
+                memory.add(AiMessage.from(cached.get()));
+                return cached.get();
+            }
+        } else {
+            responseCache.bypass("rest");
+        }
+
+        memory.add(UserMessage.from(userMessage));
+        List<Content> excerpts = guideRetriever.retrieve(Query.from(userMessage));
+        IntentRouter.Route route = intentRouter.route(userMessage);
 
-            List<Object> tools = Arrays.asList(
-                    weatherTool,
-                    googlePlacesTool,
-                    googleDirectionsTool,  // FIXED!
-                    eventbriteTool,
-                    hamburgEventsTool
-            );
+        // Cancelled when the session is cleared or evicted mid-turn; checked after every model call
+        Cancellation cancellation = activeGenerations.start(sessionId);
+        ToolPrefetcher.Prefetch prefetch = toolPrefetcher.start(userMessage, route, sessionId, cancellation);
+        Integer completionTokens = null;
+        try {
+            Response<AiMessage> generated = generate(sessionId, memory, excerpts, route, false);
+            cancellation.throwIfCancelled();
+            AiMessage aiMessage = generated.content();
+            memory.add(aiMessage);
 
-            return AiServices.builder(Assistant.class)
-                    .chatLanguageModel(chatModel)
-                    .chatMemory(memory)
-                    .tools(tools)
-                    .build();
-        });
+            Set<String> toolsUsed = new LinkedHashSet<>();
+            boolean toolFailed = false;
+            int executions = 0;
+            while (aiMessage.hasToolExecutionRequests()) {
+                if (++executions > MAX_SEQUENTIAL_TOOL_EXECUTIONS) {
+                    throw new IllegalStateException(
+                            "Exceeded " + MAX_SEQUENTIAL_TOOL_EXECUTIONS + " sequential tool executions");
+                }
+                List<ToolExecutionRequest> requests = aiMessage.toolExecutionRequests();
+                List<ToolResult> results = toolExecutionEngine.executeAll(requests, sessionId, cancellation, prefetch);
+                // Results are stored even when cancelled so every tool call in memory keeps its answer
+                for (int i = 0; i < requests.size(); i++) {
+                    toolsUsed.add(requests.get(i).name());
+                    toolFailed |= results.get(i).degraded();
+                    memory.add(ToolExecutionResultMessage.from(requests.get(i), results.get(i).text()));
+                }
+                cancellation.throwIfCancelled();
+                generated = generate(sessionId, memory, excerpts, route, true);
+                cancellation.throwIfCancelled();
+                aiMessage = generated.content();
+                memory.add(aiMessage);
+            }
+            if (generated.tokenUsage() != null) {
+                completionTokens = generated.tokenUsage().outputTokenCount();
+            }
 
-        String response = assistant.chat(userMessage);
-        log.info("Generated response for session {}: {}", sessionId, response);
+            String response = aiMessage.text();
+            log.info("Generated response for session {}: {}", sessionId, response);
+            // An answer built around a degraded tool call would keep serving the fallback after the upstream recovers
+            if (firstTurn && !toolFailed) {
+                responseCache.store(userMessage, response, toolsUsed);
+            }
+
+            return response;
+        } finally {
+            prefetch.finish();
+            activeGenerations.finish(cancellation, completionTokens);
+        }
+    }
 
+    // Guide excerpts ride along with every model call of this turn but are never stored in memory
+    private Response<AiMessage> generate(String sessionId, ChatMemory memory, List<Content> excerpts,
+                                         IntentRouter.Route route, boolean followUp) {
+        LlmAdmissionController.Permit permit = admission.acquire("rest", sessionId, followUp);
+        // Started after admission, so the span shows upstream time only; the wait has its own timer
+        Observation call = Observation.createNotStarted("chat.model.call", observationRegistry)
+                .contextualName("model call")
+                .lowCardinalityKeyValue("path", "rest")
+                .lowCardinalityKeyValue("follow-up", String.valueOf(followUp))
+                .start();
+        Response<AiMessage> response;
+        long started = System.nanoTime();
+        try {
+            response = chatModel.generate(guideRetriever.augment(memory.messages(), excerpts), route.tools());
+        } catch (RuntimeException e) {
+            permit.failed(e);
+            call.error(e);
+            throw e;
+        } finally {
+            call.stop();
+        }
+        permit.succeeded(response.tokenUsage() != null ? response.tokenUsage().outputTokenCount() : null);
+        recordTokenUsage(meterRegistry, "rest", response.tokenUsage());
+        intentRouter.recordModelCall(route, System.nanoTime() - started, response.tokenUsage());
         return response;
     }
 
-    interface Assistant {
-        String chat(String userMessage);
+    static void recordTokenUsage(MeterRegistry meterRegistry, String path, TokenUsage usage) {
+        if (usage == null) {
+            return;
+        }
+        if (usage.inputTokenCount() != null) {
+            DistributionSummary.builder("chat.prompt.tokens")
+                    .description("Prompt size per model call as reported by the upstream")
+                    .tag("path", path)
+                    .publishPercentileHistogram()
+                    .register(meterRegistry)
+                    .record(usage.inputTokenCount());
+        }
+        if (usage.outputTokenCount() != null) {
+            DistributionSummary.builder("chat.completion.tokens")
+                    .description("Completion size per model call as reported by the upstream")
+                    .tag("path", path)
+                    .publishPercentileHistogram()
+                    .register(meterRegistry)
+                    .record(usage.outputTokenCount());
+        }
     }
 
-    // New method: clear stored memory and assistant for a session
+    // Clear stored memory for a session
     public void clearSession(String sessionId) {
         if (sessionId == null) return;
-        sessionAssistants.remove(sessionId);
-        sessionMemories.remove(sessionId);
+        sessionRegistry.remove(sessionId);
         log.info("Cleared session {}", sessionId);
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,42 @@
+package org.pm.hamburgaiassistant.service;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Opens the DeepSeek connection (DNS, TCP, TLS, HTTP/2 setup) right after startup, so the first
+ * user's first token doesn't pay for the handshakes.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class DeepSeekConnectionWarmer {
+
+    private final DeepSeekStreamingChatModel streamingModel;
+
+    @Value("${deepseek.warmup.enabled:true}")
+    private boolean enabled;
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void warmUp() {
+        if (!enabled) {
+            return;
+        }
+        // Off the startup thread; a failed warm-up only costs the first request its handshake
+        CompletableFuture.runAsync(() -> {
+            long start = System.nanoTime();
+            try {
+                streamingModel.warmUp();
+                log.info("DeepSeek warm-up took {} ms", (System.nanoTime() - start) / 1_000_000);
+            } catch (Exception e) {
+                log.warn("DeepSeek warm-up failed: {}", e.getMessage());
+            }
+        });
+    }
+}
@@ -3,8 +3,11 @@ package org.pm.hamburgaiassistant.service;
 import com.google.gson.Gson;
 import com.google.gson.JsonArray;
 import com.google.gson.JsonObject;
+import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import okhttp3.*;
+import org.pm.hamburgaiassistant.http.Upstream;
+import org.pm.hamburgaiassistant.http.UpstreamHttpClients;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
@@ -12,6 +15,7 @@ import java.io.IOException;
 
 @Slf4j
 @Service
+@RequiredArgsConstructor
 public class DeepSeekService {
 
     @Value("${deepseek.api.key}")
@@ -20,11 +24,7 @@ public class DeepSeekService {
     @Value("${deepseek.api.url}")
     private String apiUrl;
 
-    private final OkHttpClient client = new OkHttpClient.Builder()
-            .connectTimeout(60, java.util.concurrent.TimeUnit.SECONDS)
-            .writeTimeout(60, java.util.concurrent.TimeUnit.SECONDS)
-            .readTimeout(60, java.util.concurrent.TimeUnit.SECONDS)
-            .build();
+    private final UpstreamHttpClients httpClients;
     private final Gson gson = new Gson();
 
     public String chat(String userMessage) {
@@ -56,7 +56,7 @@ public class DeepSeekService {
                     .build();
 
             // Execute request
-            try (Response response = client.newCall(request).execute()) {
+            try (Response response = httpClients.forUpstream(Upstream.DEEPSEEK).newCall(request).execute()) {
                 if (!response.isSuccessful()) {
                     log.error("API call failed: {}", response.code());
                     return "Error: Unable to get response from DeepSeek";
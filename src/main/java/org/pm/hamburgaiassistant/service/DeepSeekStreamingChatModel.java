@@ -0,0 +1,350 @@
+package org.pm.hamburgaiassistant.service;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import dev.langchain4j.agent.tool.ToolExecutionRequest;
+import dev.langchain4j.agent.tool.ToolParameters;
+import dev.langchain4j.agent.tool.ToolSpecification;
+import dev.langchain4j.data.message.AiMessage;
+import dev.langchain4j.data.message.ChatMessage;
+import dev.langchain4j.data.message.SystemMessage;
+import dev.langchain4j.data.message.ToolExecutionResultMessage;
+import dev.langchain4j.data.message.UserMessage;
+import dev.langchain4j.model.StreamingResponseHandler;
+import dev.langchain4j.model.chat.StreamingChatLanguageModel;
+import dev.langchain4j.model.output.FinishReason;
+import dev.langchain4j.model.output.Response;
+import dev.langchain4j.model.output.TokenUsage;
+import lombok.extern.slf4j.Slf4j;
+import okhttp3.MediaType;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.RequestBody;
+import okhttp3.sse.EventSource;
+import okhttp3.sse.EventSourceListener;
+import okhttp3.sse.EventSources;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Streaming chat against DeepSeek's OpenAI-compatible endpoint over our shared OkHttp client,
+ * so streams reuse the same warmed connections as every other DeepSeek call.
+ */
+@Slf4j
+public class DeepSeekStreamingChatModel implements StreamingChatLanguageModel {
+
+    private static final MediaType JSON = MediaType.get("application/json; charset=utf-8");
+
+    private final OkHttpClient client;
+    private final EventSource.Factory eventSources;
+    private final String baseUrl;
+    private final String apiKey;
+    private final String modelName;
+    private final double temperature;
+    private final Gson gson = new Gson();
+
+    public DeepSeekStreamingChatModel(OkHttpClient client, String baseUrl, String apiKey,
+                                      String modelName, double temperature) {
+        this.client = client;
+        this.eventSources = EventSources.createFactory(client);
+        this.baseUrl = baseUrl;
+        this.apiKey = apiKey;
+        this.modelName = modelName;
+        this.temperature = temperature;
+    }
+
+    @Override
+    public void generate(List<ChatMessage> messages, StreamingResponseHandler<AiMessage> handler) {
+        stream(messages, List.of(), handler);
+    }
+
+    @Override
+    public void generate(List<ChatMessage> messages, List<ToolSpecification> toolSpecifications,
+                         StreamingResponseHandler<AiMessage> handler) {
+        stream(messages, toolSpecifications, handler);
+    }
+
+    @Override
+    public void generate(List<ChatMessage> messages, ToolSpecification toolSpecification,
+                         StreamingResponseHandler<AiMessage> handler) {
+        stream(messages, List.of(toolSpecification), handler);
+    }
+
+    /**
+     * Opens the stream and returns its handle; cancelling the handle aborts the upstream HTTP call.
+     */
+    public EventSource stream(List<ChatMessage> messages, List<ToolSpecification> toolSpecifications,
+                              StreamingResponseHandler<AiMessage> handler) {
+        Request request = new Request.Builder()
+                .url(baseUrl + "/chat/completions")
+                .addHeader("Authorization", "Bearer " + apiKey)
+                .addHeader("Accept", "text/event-stream")
+                .post(RequestBody.create(requestBody(messages, toolSpecifications).toString(), JSON))
+                .build();
+
+        return eventSources.newEventSource(request, new StreamListener(handler));
+    }
+
+    /**
+     * Cheap authenticated GET that opens (or refreshes) a pooled connection to the API host without
+     * spending tokens.
+     */
+    public void warmUp() throws IOException {
+        Request request = new Request.Builder()
+                .url(baseUrl + "/models")
+                .addHeader("Authorization", "Bearer " + apiKey)
+                .build();
+        try (okhttp3.Response response = client.newCall(request).execute()) {
+            log.info("DeepSeek connection warmed via {} ({}, HTTP {})",
+                    request.url(), response.protocol(), response.code());
+        }
+    }
+
+    JsonObject requestBody(List<ChatMessage> messages, List<ToolSpecification> toolSpecifications) {
+        JsonObject body = new JsonObject();
+        body.addProperty("model", modelName);
+        body.addProperty("temperature", temperature);
+        body.addProperty("stream", true);
+
+        JsonObject streamOptions = new JsonObject();
+        streamOptions.addProperty("include_usage", true);
+        body.add("stream_options", streamOptions);
+
+        JsonArray jsonMessages = new JsonArray();
+        for (ChatMessage message : messages) {
+            jsonMessages.add(toJson(message));
+        }
+        body.add("messages", jsonMessages);
+
+        if (toolSpecifications != null && !toolSpecifications.isEmpty()) {
+            JsonArray tools = new JsonArray();
+            for (ToolSpecification specification : toolSpecifications) {
+                tools.add(toJson(specification));
+            }
+            body.add("tools", tools);
+        }
+        return body;
+    }
+
+    private JsonObject toJson(ChatMessage message) {
+        JsonObject json = new JsonObject();
+        if (message instanceof SystemMessage system) {
+            json.addProperty("role", "system");
+            json.addProperty("content", system.text());
+        } else if (message instanceof UserMessage user) {
+            json.addProperty("role", "user");
+            json.addProperty("content", user.singleText());
+        } else if (message instanceof AiMessage ai) {
+            json.addProperty("role", "assistant");
+            json.addProperty("content", ai.text());
+            if (ai.hasToolExecutionRequests()) {
+                JsonArray toolCalls = new JsonArray();
+                for (ToolExecutionRequest request : ai.toolExecutionRequests()) {
+                    JsonObject function = new JsonObject();
+                    function.addProperty("name", request.name());
+                    function.addProperty("arguments", request.arguments());
+
+                    JsonObject toolCall = new JsonObject();
+                    toolCall.addProperty("id", request.id());
+                    toolCall.addProperty("type", "function");
+                    toolCall.add("function", function);
+                    toolCalls.add(toolCall);
+                }
+                json.add("tool_calls", toolCalls);
+            }
+        } else if (message instanceof ToolExecutionResultMessage result) {
+            json.addProperty("role", "tool");
+            json.addProperty("tool_call_id", result.id());
+            json.addProperty("content", result.text());
+        } else {
+            throw new IllegalArgumentException("Unsupported message type: " + message.type());
+        }
+        return json;
+    }
+
+    private JsonObject toJson(ToolSpecification specification) {
+        JsonObject parameters = new JsonObject();
+        parameters.addProperty("type", "object");
+        ToolParameters toolParameters = specification.parameters();
+        parameters.add("properties", toolParameters != null
+                ? gson.toJsonTree(toolParameters.properties())
+                : new JsonObject());
+        if (toolParameters != null && toolParameters.required() != null) {
+            parameters.add("required", gson.toJsonTree(toolParameters.required()));
+        }
+
+        JsonObject function = new JsonObject();
+        function.addProperty("name", specification.name());
+        function.addProperty("description", specification.description());
+        function.add("parameters", parameters);
+
+        JsonObject tool = new JsonObject();
+        tool.addProperty("type", "function");
+        tool.add("function", function);
+        return tool;
+    }
+
+    /**
+     * Accumulates streamed deltas (text and tool-call fragments) into the final AiMessage.
+     */
+    private static class StreamListener extends EventSourceListener {
+
+        private final StreamingResponseHandler<AiMessage> handler;
+        private final StringBuilder text = new StringBuilder();
+        private final Map<Integer, ToolCallBuilder> toolCalls = new TreeMap<>();
+        private final AtomicBoolean finished = new AtomicBoolean();
+        private TokenUsage tokenUsage;
+        private FinishReason finishReason;
+
+        StreamListener(StreamingResponseHandler<AiMessage> handler) {
+            this.handler = handler;
+        }
+
+        @Override
+        public void onEvent(EventSource eventSource, String id, String type, String data) {
+            if ("[DONE]".equals(data)) {
+                complete();
+                return;
+            }
+            try {
+                JsonObject chunk = JsonParser.parseString(data).getAsJsonObject();
+                if (chunk.has("usage") && chunk.get("usage").isJsonObject()) {
+                    JsonObject usage = chunk.getAsJsonObject("usage");
+                    tokenUsage = new TokenUsage(
+                            usage.get("prompt_tokens").getAsInt(),
+                            usage.get("completion_tokens").getAsInt());
+                }
+
+                JsonArray choices = chunk.getAsJsonArray("choices");
+                if (choices == null || choices.isEmpty()) {
+                    return;
+                }
+                JsonObject choice = choices.get(0).getAsJsonObject();
+                if (choice.has("finish_reason") && !choice.get("finish_reason").isJsonNull()) {
+                    finishReason = finishReason(choice.get("finish_reason").getAsString());
+                }
+
+                JsonObject delta = choice.getAsJsonObject("delta");
+                if (delta == null) {
+                    return;
+                }
+                if (delta.has("tool_calls")) {
+                    for (JsonElement element : delta.getAsJsonArray("tool_calls")) {
+                        JsonObject call = element.getAsJsonObject();
+                        int index = call.has("index") ? call.get("index").getAsInt() : 0;
+                        toolCalls.computeIfAbsent(index, i -> new ToolCallBuilder()).append(call);
+                    }
+                }
+                if (delta.has("content") && !delta.get("content").isJsonNull()) {
+                    String token = delta.get("content").getAsString();
+                    if (!token.isEmpty()) {
+                        text.append(token);
+                        handler.onNext(token);
+                    }
+                }
+            } catch (RuntimeException e) {
+                eventSource.cancel();
+                fail(e);
+            }
+        }
+
+        @Override
+        public void onClosed(EventSource eventSource) {
+            // Some servers close without sending [DONE]
+            complete();
+        }
+
+        @Override
+        public void onFailure(EventSource eventSource, Throwable t, okhttp3.Response response) {
+            if (t == null && response != null) {
+                String detail;
+                try {
+                    detail = response.body() != null ? response.body().string() : "";
+                } catch (IOException e) {
+                    detail = e.getMessage();
+                }
+                t = new IOException("DeepSeek streaming call failed: HTTP " + response.code() + " " + detail);
+            }
+            fail(t != null ? t : new IOException("DeepSeek stream failed"));
+        }
+
+        private void complete() {
+            if (!finished.compareAndSet(false, true)) {
+                return;
+            }
+            AiMessage message;
+            try {
+                List<ToolExecutionRequest> requests = new ArrayList<>();
+                for (ToolCallBuilder builder : toolCalls.values()) {
+                    requests.add(builder.build());
+                }
+                // AiMessage rejects blank text alongside tool calls, which is the usual tool-call shape
+                if (requests.isEmpty()) {
+                    message = AiMessage.from(text.toString());
+                } else if (text.toString().isBlank()) {
+                    message = AiMessage.from(requests);
+                } else {
+                    message = AiMessage.from(text.toString(), requests);
+                }
+            } catch (RuntimeException e) {
+                handler.onError(e);
+                return;
+            }
+            handler.onComplete(Response.from(message, tokenUsage, finishReason));
+        }
+
+        private void fail(Throwable error) {
+            if (finished.compareAndSet(false, true)) {
+                handler.onError(error);
+            }
+        }
+
+        private static FinishReason finishReason(String reason) {
+            return switch (reason) {
+                case "stop" -> FinishReason.STOP;
+                case "length" -> FinishReason.LENGTH;
+                case "tool_calls", "function_call" -> FinishReason.TOOL_EXECUTION;
+                case "content_filter" -> FinishReason.CONTENT_FILTER;
+                default -> FinishReason.OTHER;
+            };
+        }
+    }
+
+    private static class ToolCallBuilder {
+
+        private String id;
+        private String name;
+        private final StringBuilder arguments = new StringBuilder();
+
+        void append(JsonObject call) {
+            if (call.has("id") && !call.get("id").isJsonNull()) {
+                id = call.get("id").getAsString();
+            }
+            JsonObject function = call.getAsJsonObject("function");
+            if (function != null) {
+                if (function.has("name") && !function.get("name").isJsonNull()) {
+                    name = function.get("name").getAsString();
+                }
+                if (function.has("arguments") && !function.get("arguments").isJsonNull()) {
+                    arguments.append(function.get("arguments").getAsString());
+                }
+            }
+        }
+
+        ToolExecutionRequest build() {
+            return ToolExecutionRequest.builder()
+                    .id(id)
+                    .name(name)
+                    .arguments(arguments.toString())
+                    .build();
+        }
+    }
+}
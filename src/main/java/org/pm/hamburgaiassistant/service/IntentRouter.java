@@ -0,0 +1,226 @@
+package org.pm.hamburgaiassistant.service;
+
+import dev.langchain4j.agent.tool.ToolSpecification;
+import dev.langchain4j.model.Tokenizer;
+import dev.langchain4j.model.output.TokenUsage;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.pm.hamburgaiassistant.tools.LandmarkAliases;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+
+/**
+ * Picks the tool specifications worth sending with a message. A keyword and phrase match (English and
+ * German) maps the message to one or two intents and only their tools go to the model; greetings and
+ * thanks get none. Anything the router is not confident about gets the full set, as before.
+ * <p>
+ * Routing is decided once per turn from the user's message and reused for the follow-up calls of that
+ * turn. With routing disabled messages are still classified, so the per-intent latency and prompt
+ * size of full-set calls can be compared against routed ones.
+ */
+@Slf4j
+@Component
+public class IntentRouter {
+
+    /**
+     * More matching intents than this and the subset would save little; the full set is sent instead.
+     */
+    private static final int MAX_INTENTS = 2;
+
+    // A message gets no tools only when it greets or thanks; a bare "ok" or "great" may accept an offer
+    private static final Set<String> GREETINGS_AND_THANKS = Set.of(
+            "hi", "hey", "hello", "hallo", "moin", "servus", "morning", "evening", "guten", "thanks", "thank",
+            "danke", "dankeschoen", "dank", "bye", "ciao", "tschuess");
+    // Words that may accompany them
+    private static final Set<String> SMALL_TALK = Set.of(
+            "good", "morgen", "tag", "abend", "you", "vielen", "ok", "okay", "cool", "great", "super", "toll",
+            "perfect", "perfekt", "nice", "a", "lot", "so", "much", "schoen");
+
+    enum Intent {
+        WEATHER(Set.of("getCurrentWeather"),
+                Set.of("weather", "rain", "raining", "rainy", "sunny", "sun", "temperature", "forecast", "cold",
+                        "warm", "hot", "wind", "windy", "umbrella", "snow", "degrees", "wetter", "regen", "regnet",
+                        "sonne", "sonnig", "temperatur", "kalt", "schnee", "grad", "regenschirm"),
+                "how (hot|cold|warm)|wie (warm|kalt)"),
+        PLACES(Set.of("searchPlaces", "getPlaceDetails"),
+                Set.of("restaurant", "restaurants", "cafe", "cafes", "coffee", "bar", "bars", "pub", "pubs",
+                        "hotel", "hotels", "shop", "shops", "shopping", "museum", "museums", "eat", "food",
+                        "breakfast", "lunch", "dinner", "brunch", "drink", "drinks", "beer", "fischbroetchen",
+                        "where", "recommend", "open", "opening", "hours", "address", "rating", "nearby",
+                        "kneipe", "essen", "fruehstueck", "mittagessen", "abendessen", "trinken", "bier",
+                        "wo", "empfehlen", "empfehlung", "geoeffnet", "offen", "oeffnungszeiten", "adresse"),
+                "near (me|here|the)|in der naehe"),
+        DIRECTIONS(Set.of("getDirections", "getTravelTime"),
+                Set.of("directions", "route", "walk", "walking", "drive", "driving", "bike", "cycling", "transit",
+                        "bus", "train", "ubahn", "sbahn", "ferry", "metro", "subway", "distance", "commute",
+                        "fahrrad", "zug", "faehre", "entfernung", "weg", "laufen", "fahren"),
+                "how (do|can|should) (i|we) get|how (long|far)|get (to|there|from)|wie (komme|kommen)|wie (weit|lange)"),
+        EVENTS(Set.of("findHamburgEvents", "getHamburgVenues"),
+                Set.of("event", "events", "concert", "concerts", "festival", "festivals", "theater", "theatre",
+                        "musical", "musicals", "show", "shows", "nightlife", "party", "club", "clubs",
+                        "exhibition", "gig", "venue", "venues", "veranstaltung", "veranstaltungen", "konzert",
+                        "konzerte", "ausstellung", "dom", "hafengeburtstag", "tonight", "weekend", "wochenende"),
+                "things to do|what to do|going on|was ist los|was kann man");
+
+        private final Set<String> toolNames;
+        private final Set<String> words;
+        private final Pattern phrases;
+
+        Intent(Set<String> toolNames, Set<String> words, String phrases) {
+            this.toolNames = toolNames;
+            this.words = words;
+            this.phrases = Pattern.compile("\\b(" + phrases + ")\\b");
+        }
+
+        boolean matches(String normalized, String[] tokens) {
+            for (String token : tokens) {
+                if (words.contains(token)) {
+                    return true;
+                }
+            }
+            return phrases.matcher(normalized).find();
+        }
+    }
+
+    /**
+     * The tools to offer for one turn. {@code routed} is false when the full set goes out, either as the
+     * fallback or because routing is disabled; {@code tokensSaved} estimates the omitted descriptions.
+     */
+    public record Route(String intent, List<ToolSpecification> tools, boolean routed, int tokensSaved) {
+    }
+
+    private final List<ToolSpecification> allTools;
+    private final Map<String, Integer> specTokens = new HashMap<>();
+    // One shared list per intent combination, like the full set
+    private final Map<Set<Intent>, List<ToolSpecification>> subsets = new ConcurrentHashMap<>();
+    private final MeterRegistry meterRegistry;
+    private final boolean enabled;
+
+    public IntentRouter(AssistantTools assistantTools,
+                        Tokenizer tokenizer,
+                        MeterRegistry meterRegistry,
+                        @Value("${chat.tools.routing.enabled:true}") boolean enabled) {
+        this.allTools = assistantTools.specifications();
+        this.meterRegistry = meterRegistry;
+        this.enabled = enabled;
+        Set<String> known = allTools.stream().map(ToolSpecification::name).collect(Collectors.toSet());
+        for (Intent intent : Intent.values()) {
+            if (!known.containsAll(intent.toolNames)) {
+                throw new IllegalStateException("Intent " + intent + " routes to unknown tools: " + intent.toolNames);
+            }
+        }
+        for (ToolSpecification spec : allTools) {
+            specTokens.put(spec.name(), tokenizer.estimateTokenCountInToolSpecifications(List.of(spec)));
+        }
+        log.info("Tool routing {}; full tool set is ~{} prompt tokens", enabled ? "enabled" : "disabled",
+                specTokens.values().stream().mapToInt(Integer::intValue).sum());
+    }
+
+    public Route route(String message) {
+        String normalized = LandmarkAliases.normalize(message);
+        String[] tokens = normalized.split(" ");
+        Set<Intent> intents = EnumSet.noneOf(Intent.class);
+        for (Intent intent : Intent.values()) {
+            if (intent.matches(normalized, tokens)) {
+                intents.add(intent);
+            }
+        }
+
+        Route route;
+        if (intents.isEmpty() && isGreetingOrThanks(tokens)) {
+            route = route("smalltalk", List.of());
+        } else if (intents.isEmpty()) {
+            route = fullSet("unknown");
+        } else if (intents.size() > MAX_INTENTS) {
+            route = fullSet("mixed");
+        } else {
+            route = route(label(intents), subsets.computeIfAbsent(intents, this::toolsFor));
+        }
+        Counter.builder("chat.tools.routing")
+                .description("Chat turns by routed intent, and whether a tool subset was sent")
+                .tag("intent", route.intent())
+                .tag("routed", String.valueOf(route.routed()))
+                .register(meterRegistry)
+                .increment();
+        log.debug("Routed message to {} ({} tools): {}", route.intent(), route.tools().size(), message);
+        return route;
+    }
+
+    /**
+     * Records one model call made with a route's tools: its upstream latency, the prompt size the upstream
+     * reported and the estimated prompt tokens the route left out.
+     */
+    public void recordModelCall(Route route, long durationNanos, TokenUsage usage) {
+        Timer.builder("chat.tools.routing.model-call")
+                .description("Model call latency per intent, with a tool subset (routed) or the full set")
+                .tag("intent", route.intent())
+                .tag("routed", String.valueOf(route.routed()))
+                .register(meterRegistry)
+                .record(durationNanos, TimeUnit.NANOSECONDS);
+        if (usage != null && usage.inputTokenCount() != null) {
+            DistributionSummary.builder("chat.tools.routing.prompt-tokens")
+                    .description("Prompt size per model call and intent, with a tool subset (routed) or the full set")
+                    .tag("intent", route.intent())
+                    .tag("routed", String.valueOf(route.routed()))
+                    .register(meterRegistry)
+                    .record(usage.inputTokenCount());
+        }
+        Counter.builder("chat.tools.routing.tokens-saved")
+                .description("Estimated prompt tokens of tool descriptions left out by routing")
+                .tag("intent", route.intent())
+                .register(meterRegistry)
+                .increment(route.tokensSaved());
+    }
+
+    private Route route(String intent, List<ToolSpecification> tools) {
+        if (!enabled) {
+            return fullSet(intent);
+        }
+        int saved = 0;
+        for (ToolSpecification spec : allTools) {
+            if (!tools.contains(spec)) {
+                saved += specTokens.get(spec.name());
+            }
+        }
+        return new Route(intent, tools, true, saved);
+    }
+
+    private Route fullSet(String intent) {
+        return new Route(intent, allTools, false, 0);
+    }
+
+    private List<ToolSpecification> toolsFor(Set<Intent> intents) {
+        return allTools.stream()
+                .filter(spec -> intents.stream().anyMatch(intent -> intent.toolNames.contains(spec.name())))
+                .toList();
+    }
+
+    private static boolean isGreetingOrThanks(String[] tokens) {
+        boolean greets = false;
+        for (String token : tokens) {
+            if (GREETINGS_AND_THANKS.contains(token)) {
+                greets = true;
+            } else if (!SMALL_TALK.contains(token)) {
+                return false;
+            }
+        }
+        return greets;
+    }
+
+    private static String label(Set<Intent> intents) {
+        return intents.stream().map(intent -> intent.name().toLowerCase()).collect(Collectors.joining("+"));
+    }
+}
@@ -0,0 +1,431 @@
+package org.pm.hamburgaiassistant.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import dev.ai4j.openai4j.OpenAiHttpException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+import java.io.InterruptedIOException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Admission control in front of every DeepSeek call. The number of calls in flight is capped by a limit
+ * that adapts AIMD-style: it grows by one per limit's worth of fast calls while it is saturated, shrinks
+ * by 10% when latency drifts well above its running baseline and halves on upstream 429s or timeouts.
+ * Calls over the limit wait in a weighted fair queue ordered by per-session virtual finish time, so a
+ * session that sends many messages only competes for its own share; follow-up calls of a turn that is
+ * already under way weigh more, finishing started work before new turns. Each session's new turns are
+ * also rate limited with a token bucket. A full queue, a wait past the queue timeout or an exhausted
+ * bucket fail fast with {@link AdmissionRejectedException} (HTTP 429).
+ * <p>
+ * Background calls (conversation summaries) queue with a small weight under one shared session, so
+ * together they only get a fraction of a chat session's share once calls have to wait.
+ * <p>
+ * The latency signal is kept per call kind (path, and first call or follow-up): time to first token where
+ * the caller reports it, otherwise the whole call divided by its output tokens, so a long answer does not
+ * read as a latency spike next to a short tool-call reply.
+ */
+@Slf4j
+@Component
+public class LlmAdmissionController {
+
+    private static final double LATENCY_BACKOFF = 0.9;
+    private static final double OVERLOAD_BACKOFF = 0.5;
+    private static final double BASELINE_ALPHA = 0.05;
+    // Below this many output tokens a call's time is mostly fixed overhead, so it is not divided further
+    private static final int MIN_NORMALIZING_TOKENS = 32;
+    private static final String BACKGROUND_SESSION = "(background)";
+    private static final double BACKGROUND_WEIGHT = 0.25;
+    // Concurrent calls failing together count as one overload signal
+    private static final long DECREASE_COOLDOWN_NANOS = TimeUnit.SECONDS.toNanos(1);
+
+    private final double minLimit;
+    private final double maxLimit;
+    private final double latencyTolerance;
+    private final int maxQueued;
+    private final long queueTimeoutMs;
+    private final double sessionCallsPerMinute;
+    private final int sessionBurst;
+    private final double followUpWeight;
+    private final MeterRegistry meterRegistry;
+    private final Timer queueWait;
+    private final Cache<String, TokenBucket> buckets = Caffeine.newBuilder()
+            .expireAfterAccess(Duration.ofMinutes(10))
+            .maximumSize(100_000)
+            .build();
+
+    // Guarded by this
+    private final PriorityQueue<Waiter> queue = new PriorityQueue<>(
+            Comparator.comparingDouble((Waiter w) -> w.finishTag).thenComparingLong(w -> w.sequence));
+    private final Map<String, Double> lastFinishTags = new HashMap<>();
+    private final Map<String, Double> latencyBaselines = new HashMap<>();
+    private double limit;
+    private int inFlight;
+    private double virtualTime;
+    private long sequence;
+    private long lastDecreaseNanos;
+
+    public LlmAdmissionController(MeterRegistry meterRegistry,
+                                  @Value("${chat.admission.initial-limit:16}") int initialLimit,
+                                  @Value("${chat.admission.min-limit:2}") int minLimit,
+                                  @Value("${chat.admission.max-limit:64}") int maxLimit,
+                                  @Value("${chat.admission.latency-tolerance:2.0}") double latencyTolerance,
+                                  @Value("${chat.admission.max-queued:100}") int maxQueued,
+                                  @Value("${chat.admission.queue-timeout-ms:5000}") long queueTimeoutMs,
+                                  @Value("${chat.admission.session-calls-per-minute:20}") double sessionCallsPerMinute,
+                                  @Value("${chat.admission.session-burst:5}") int sessionBurst,
+                                  @Value("${chat.admission.follow-up-weight:4}") double followUpWeight) {
+        this.meterRegistry = meterRegistry;
+        this.limit = initialLimit;
+        this.minLimit = minLimit;
+        this.maxLimit = maxLimit;
+        this.latencyTolerance = latencyTolerance;
+        this.maxQueued = maxQueued;
+        this.queueTimeoutMs = queueTimeoutMs;
+        this.sessionCallsPerMinute = sessionCallsPerMinute;
+        this.sessionBurst = sessionBurst;
+        this.followUpWeight = followUpWeight;
+        this.queueWait = Timer.builder("chat.admission.wait")
+                .description("Time model calls waited for admission")
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+        meterRegistry.gauge("chat.admission.limit", this, LlmAdmissionController::limit);
+        meterRegistry.gauge("chat.admission.in-flight", this, LlmAdmissionController::inFlight);
+        meterRegistry.gauge("chat.admission.queued", this, LlmAdmissionController::queued);
+    }
+
+    /**
+     * Waits for admission on a blocking thread. {@code path} (rest or stream) keeps separate latency
+     * baselines; {@code followUp} marks a call made after tool results within a turn.
+     *
+     * @throws AdmissionRejectedException when the call is rate limited, the queue is full or the wait times out
+     */
+    public Permit acquire(String path, String sessionId, boolean followUp) {
+        return join(acquireAsync(path, sessionId, followUp));
+    }
+
+    /**
+     * Waits for admission of a background call, which is not rate limited but queues behind chat turns.
+     *
+     * @throws AdmissionRejectedException when the queue is full or the wait times out
+     */
+    public Permit acquireBackground(String path) {
+        return join(enqueue(path, BACKGROUND_SESSION, false, BACKGROUND_WEIGHT));
+    }
+
+    private static Permit join(CompletableFuture<Permit> admission) {
+        try {
+            return admission.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Non-blocking variant for the streaming path; the future fails with {@link AdmissionRejectedException}.
+     * Cancelling it before it completes gives up the place in the queue.
+     */
+    public CompletableFuture<Permit> acquireAsync(String path, String sessionId, boolean followUp) {
+        // Only new turns are rate limited; a turn that was admitted gets to finish its tool round trips
+        if (!followUp && !buckets.get(sessionId, id -> new TokenBucket()).tryTake()) {
+            return rejected("rate", "Too many messages for session " + sessionId + ", slow down");
+        }
+        return enqueue(path, sessionId, followUp, followUp ? followUpWeight : 1);
+    }
+
+    private CompletableFuture<Permit> enqueue(String path, String sessionId, boolean followUp, double weight) {
+        long enqueued = System.nanoTime();
+        Waiter waiter;
+        synchronized (this) {
+            if (queue.isEmpty() && inFlight < effectiveLimit()) {
+                inFlight++;
+                queueWait.record(0, TimeUnit.NANOSECONDS);
+                return CompletableFuture.completedFuture(new Permit(path, followUp));
+            }
+            if (queue.size() >= maxQueued) {
+                waiter = null;
+            } else {
+                double start = Math.max(virtualTime, lastFinishTags.getOrDefault(sessionId, 0.0));
+                waiter = new Waiter(path, followUp, sessionId, start, start + 1 / weight, sequence++, enqueued);
+                lastFinishTags.put(sessionId, waiter.finishTag);
+                queue.add(waiter);
+            }
+        }
+        if (waiter == null) {
+            return rejected("queue", "The assistant is busy, try again shortly");
+        }
+        CompletableFuture.delayedExecutor(queueTimeoutMs, TimeUnit.MILLISECONDS).execute(() -> {
+            if (waiter.future.completeExceptionally(
+                    new AdmissionRejectedException("The assistant is busy, try again shortly"))) {
+                count("timeout");
+                log.warn("Model call for session {} waited {} ms for admission", sessionId, queueTimeoutMs);
+            }
+        });
+        // Timed out or cancelled by the caller: give up the place in the queue
+        waiter.future.whenComplete((permit, error) -> {
+            if (error != null) {
+                dequeue(waiter);
+            }
+        });
+        return waiter.future;
+    }
+
+    synchronized double limit() {
+        return limit;
+    }
+
+    synchronized int inFlight() {
+        return inFlight;
+    }
+
+    synchronized int queued() {
+        return queue.size();
+    }
+
+    private synchronized void dequeue(Waiter waiter) {
+        queue.remove(waiter);
+        forgetFinishTag(waiter);
+    }
+
+    // Once a session has nothing else queued its finish tag no longer matters
+    private void forgetFinishTag(Waiter waiter) {
+        Double last = lastFinishTags.get(waiter.sessionId);
+        if (last != null && last == waiter.finishTag) {
+            lastFinishTags.remove(waiter.sessionId);
+        }
+    }
+
+    private int effectiveLimit() {
+        return Math.max(1, (int) limit);
+    }
+
+    private CompletableFuture<Permit> rejected(String reason, String message) {
+        count(reason);
+        return CompletableFuture.failedFuture(new AdmissionRejectedException(message));
+    }
+
+    private void count(String reason) {
+        Counter.builder("chat.admission.rejected")
+                .description("Model calls turned away by admission control")
+                .tag("reason", reason)
+                .register(meterRegistry)
+                .increment();
+    }
+
+    private void released(Permit permit, Outcome outcome) {
+        long now = System.nanoTime();
+        List<Waiter> granted = new ArrayList<>();
+        synchronized (this) {
+            boolean saturated = inFlight >= effectiveLimit();
+            inFlight--;
+            adjust(permit, outcome, saturated, now);
+            Waiter next;
+            while (inFlight < effectiveLimit() && (next = queue.poll()) != null) {
+                virtualTime = Math.max(virtualTime, next.startTag);
+                forgetFinishTag(next);
+                inFlight++;
+                granted.add(next);
+            }
+        }
+        // Completed outside the lock: a streaming caller starts its upstream call from this callback
+        for (Waiter waiter : granted) {
+            Permit next = new Permit(waiter.path, waiter.followUp);
+            if (waiter.future.complete(next)) {
+                queueWait.record(now - waiter.enqueuedNanos, TimeUnit.NANOSECONDS);
+            } else {
+                // Timed out or cancelled in the meantime; pass the slot on
+                released(next, Outcome.ABANDONED);
+            }
+        }
+    }
+
+    // Guarded by this
+    private void adjust(Permit permit, Outcome outcome, boolean saturated, long now) {
+        if (outcome == Outcome.OVERLOAD) {
+            decrease(OVERLOAD_BACKOFF, now);
+            return;
+        }
+        if (outcome != Outcome.SUCCESS) {
+            return;
+        }
+        double latency = permit.latencyNanos(now);
+        double baseline = latencyBaselines.getOrDefault(permit.kind, latency);
+        latencyBaselines.put(permit.kind, baseline + BASELINE_ALPHA * (latency - baseline));
+        if (latency > latencyTolerance * baseline) {
+            decrease(LATENCY_BACKOFF, now);
+        } else if (saturated) {
+            // Additive increase: about +1 per limit's worth of successful calls
+            limit = Math.min(maxLimit, limit + 1 / limit);
+        }
+    }
+
+    private void decrease(double factor, long now) {
+        if (now - lastDecreaseNanos < DECREASE_COOLDOWN_NANOS) {
+            return;
+        }
+        lastDecreaseNanos = now;
+        double previous = limit;
+        limit = Math.max(minLimit, limit * factor);
+        log.info("Lowered model call limit from {} to {}", (int) previous, (int) limit);
+    }
+
+    /**
+     * Whether a failed call tells us the upstream is overloaded (rate limited or too slow to answer).
+     */
+    static boolean isOverload(Throwable error) {
+        for (Throwable t = error; t != null; t = t.getCause()) {
+            if (t instanceof OpenAiHttpException http && (http.code() == 429 || http.code() == 503)) {
+                return true;
+            }
+            if (t instanceof InterruptedIOException) {
+                return true;
+            }
+            String message = t.getMessage();
+            // Our streaming model reports the status in the message
+            if (message != null && (message.contains("HTTP 429") || message.contains("HTTP 503"))) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private enum Outcome { SUCCESS, OVERLOAD, ABANDONED }
+
+    /**
+     * One admitted model call. Exactly one of {@link #succeeded}, {@link #failed} or {@link #abandoned}
+     * counts; later calls are ignored.
+     */
+    public final class Permit {
+
+        private final String path;
+        private final String kind;
+        private final long grantedNanos = System.nanoTime();
+        private final AtomicBoolean released = new AtomicBoolean();
+        private volatile long respondedNanos;
+        private volatile int outputTokens;
+
+        private Permit(String path, boolean followUp) {
+            this.path = path;
+            this.kind = path + (followUp ? " follow-up" : " first");
+        }
+
+        /**
+         * Marks the first response byte (first streamed token), which is the latency that counts for
+         * streams; without it the whole call counts.
+         */
+        public void responded() {
+            if (respondedNanos == 0) {
+                respondedNanos = System.nanoTime();
+            }
+        }
+
+        public void succeeded() {
+            release(Outcome.SUCCESS);
+        }
+
+        /**
+         * Success of a call that reports no first byte; the output size normalizes its latency.
+         */
+        public void succeeded(Integer outputTokens) {
+            if (outputTokens != null) {
+                this.outputTokens = outputTokens;
+            }
+            release(Outcome.SUCCESS);
+        }
+
+        public void failed(Throwable error) {
+            release(isOverload(error) ? Outcome.OVERLOAD : Outcome.ABANDONED);
+        }
+
+        /**
+         * Gives the slot back without judging the upstream, e.g. when the user stopped the stream.
+         */
+        public void abandoned() {
+            release(Outcome.ABANDONED);
+        }
+
+        private void release(Outcome outcome) {
+            if (released.compareAndSet(false, true)) {
+                released(this, outcome);
+            }
+        }
+
+        private double latencyNanos(long now) {
+            long responded = respondedNanos;
+            if (responded != 0) {
+                return responded - grantedNanos;
+            }
+            int tokens = outputTokens;
+            return tokens > 0 ? (double) (now - grantedNanos) / Math.max(MIN_NORMALIZING_TOKENS, tokens)
+                    : now - grantedNanos;
+        }
+    }
+
+    private static final class Waiter {
+
+        private final String path;
+        private final boolean followUp;
+        private final String sessionId;
+        private final double startTag;
+        private final double finishTag;
+        private final long sequence;
+        private final long enqueuedNanos;
+        private final CompletableFuture<Permit> future = new CompletableFuture<>();
+
+        Waiter(String path, boolean followUp, String sessionId, double startTag, double finishTag, long sequence,
+               long enqueuedNanos) {
+            this.path = path;
+            this.followUp = followUp;
+            this.sessionId = sessionId;
+            this.startTag = startTag;
+            this.finishTag = finishTag;
+            this.sequence = sequence;
+            this.enqueuedNanos = enqueuedNanos;
+        }
+    }
+
+    private final class TokenBucket {
+
+        // Guarded by this
+        private double tokens = sessionBurst;
+        private long refilledNanos = System.nanoTime();
+
+        synchronized boolean tryTake() {
+            long now = System.nanoTime();
+            tokens = Math.min(sessionBurst, tokens + (now - refilledNanos) * sessionCallsPerMinute / 60e9);
+            refilledNanos = now;
+            if (tokens < 1) {
+                return false;
+            }
+            tokens--;
+            return true;
+        }
+    }
+
+    @ResponseStatus(HttpStatus.TOO_MANY_REQUESTS)
+    public static class AdmissionRejectedException extends RuntimeException {
+        public AdmissionRejectedException(String message) {
+            super(message);
+        }
+    }
+}
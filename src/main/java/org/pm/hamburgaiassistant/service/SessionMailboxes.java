@@ -0,0 +1,224 @@
+package org.pm.hamburgaiassistant.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.pm.hamburgaiassistant.config.VirtualThreads;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+/**
+ * One mailbox per chat session: turns of the same session run strictly one after another, in arrival
+ * order, while different sessions never wait on each other. A turn is a function from the message text
+ * to a future that completes when the turn is over, so streamed turns keep their session busy until the
+ * last token rather than until the call returns. An idle session's first turn runs on the caller's
+ * thread; queued turns are started on a small pool when their predecessor finishes.
+ */
+@Slf4j
+@Component
+public class SessionMailboxes {
+
+    private final int maxQueued;
+    private final boolean mergeQueued;
+    private final ExecutorService dispatcher;
+    private final MeterRegistry meterRegistry;
+    private final Map<String, Mailbox> mailboxes = new ConcurrentHashMap<>();
+
+    public SessionMailboxes(MeterRegistry meterRegistry,
+                            @Value("${chat.mailbox.max-queued:5}") int maxQueued,
+                            @Value("${chat.mailbox.merge-queued:false}") boolean mergeQueued,
+                            @Value("${chat.mailbox.dispatcher-threads:64}") int dispatcherThreads,
+                            @Value("${spring.threads.virtual.enabled:false}") boolean virtualThreads) {
+        this.meterRegistry = meterRegistry;
+        this.maxQueued = maxQueued;
+        this.mergeQueued = mergeQueued;
+        if (virtualThreads && VirtualThreads.available()) {
+            this.dispatcher = VirtualThreads.newThreadPerTaskExecutor("mailbox-");
+        } else {
+            AtomicInteger threadCount = new AtomicInteger();
+            // When every dispatcher thread is busy the finishing turn's thread starts the next one itself
+            this.dispatcher = new ThreadPoolExecutor(0, dispatcherThreads, 60, TimeUnit.SECONDS,
+                    new SynchronousQueue<>(), runnable -> {
+                        Thread thread = new Thread(runnable, "mailbox-" + threadCount.incrementAndGet());
+                        thread.setDaemon(true);
+                        return thread;
+                    }, new ThreadPoolExecutor.CallerRunsPolicy());
+        }
+        meterRegistry.gauge("chat.mailbox.queued", mailboxes,
+                all -> all.values().stream().mapToInt(Mailbox::queued).sum());
+    }
+
+    /**
+     * Queues a turn for the session. The returned future completes with the turn's result; cancelling it
+     * before the turn starts removes the turn from the queue. With merging enabled, messages that queued
+     * up behind a running turn are joined into one turn whose result completes all of their futures.
+     *
+     * @throws MailboxFullException (through the future) when the session already has the maximum queued
+     */
+    public <T> CompletableFuture<T> submit(String sessionId, String message,
+                                           Function<String, CompletableFuture<T>> turn) {
+        Mail<T> mail = new Mail<>(message, turn);
+        while (true) {
+            Mailbox mailbox = mailboxes.computeIfAbsent(sessionId, Mailbox::new);
+            synchronized (mailbox) {
+                if (mailbox.retired) {
+                    continue;
+                }
+                if (mailbox.running) {
+                    if (mailbox.queue.size() >= maxQueued) {
+                        count("rejected");
+                        return CompletableFuture.failedFuture(new MailboxFullException(
+                                "Session " + sessionId + " already has " + maxQueued + " messages waiting"));
+                    }
+                    mailbox.queue.add(mail);
+                    count("queued");
+                    return mail.result;
+                }
+                mailbox.running = true;
+            }
+            count("direct");
+            mailbox.run(List.of(mail));
+            return mail.result;
+        }
+    }
+
+    /**
+     * Waits for a turn on a blocking request thread, rethrowing the turn's own exception.
+     */
+    public static <T> T await(CompletableFuture<T> future) {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw e;
+        }
+    }
+
+    private void count(String result) {
+        Counter.builder("chat.mailbox.messages")
+                .description("Chat messages by how the session mailbox handled them")
+                .tag("result", result)
+                .register(meterRegistry)
+                .increment();
+    }
+
+    private final class Mailbox {
+
+        private final String sessionId;
+        // Guarded by this
+        private final ArrayDeque<Mail<?>> queue = new ArrayDeque<>();
+        private boolean running;
+        private boolean retired;
+
+        Mailbox(String sessionId) {
+            this.sessionId = sessionId;
+        }
+
+        synchronized int queued() {
+            return queue.size();
+        }
+
+        @SuppressWarnings({"unchecked", "rawtypes"})
+        private void run(List<Mail<?>> batch) {
+            Mail lead = batch.get(0);
+            String text = lead.message;
+            if (batch.size() > 1) {
+                StringBuilder merged = new StringBuilder();
+                for (Mail<?> mail : batch) {
+                    merged.append(merged.isEmpty() ? "" : "\n").append(mail.message);
+                }
+                text = merged.toString();
+                count("merged");
+            }
+            CompletableFuture<?> done;
+            try {
+                done = (CompletableFuture<?>) lead.turn.apply(text);
+            } catch (RuntimeException e) {
+                done = CompletableFuture.failedFuture(e);
+            }
+            done.whenComplete((result, error) -> {
+                for (Mail mail : batch) {
+                    if (error != null) {
+                        mail.result.completeExceptionally(error);
+                    } else {
+                        mail.result.complete(result);
+                    }
+                }
+                next();
+            });
+        }
+
+        private void next() {
+            List<Mail<?>> batch = new ArrayList<>();
+            synchronized (this) {
+                Mail<?> mail;
+                while ((mail = queue.poll()) != null) {
+                    // Cancelled while waiting (stop or disconnect)
+                    if (mail.result.isDone()) {
+                        continue;
+                    }
+                    batch.add(mail);
+                    if (!mergeQueued) {
+                        break;
+                    }
+                }
+                if (batch.isEmpty()) {
+                    running = false;
+                    retired = true;
+                    mailboxes.remove(sessionId, this);
+                    return;
+                }
+            }
+            try {
+                dispatcher.execute(() -> run(batch));
+            } catch (RuntimeException e) {
+                log.error("Could not dispatch the next turn for session {}", sessionId, e);
+                batch.forEach(mail -> mail.result.completeExceptionally(e));
+                next();
+            }
+        }
+    }
+
+    private static final class Mail<T> {
+
+        private final String message;
+        private final Function<String, CompletableFuture<T>> turn;
+        private final CompletableFuture<T> result = new CompletableFuture<>();
+
+        Mail(String message, Function<String, CompletableFuture<T>> turn) {
+            this.message = message;
+            this.turn = turn;
+        }
+    }
+
+    @ResponseStatus(HttpStatus.TOO_MANY_REQUESTS)
+    public static class MailboxFullException extends RuntimeException {
+        public MailboxFullException(String message) {
+            super(message);
+        }
+    }
+
+    @PreDestroy
+    void shutdown() {
+        dispatcher.shutdownNow();
+    }
+}
@@ -1,84 +1,394 @@
 package org.pm.hamburgaiassistant.service;
 
 import dev.langchain4j.data.message.AiMessage;
+import dev.langchain4j.data.message.ChatMessage;
 import dev.langchain4j.data.message.UserMessage;
 import dev.langchain4j.memory.ChatMemory;
-import dev.langchain4j.memory.chat.MessageWindowChatMemory;
 import dev.langchain4j.model.StreamingResponseHandler;
 import dev.langchain4j.model.chat.StreamingChatLanguageModel;
-import dev.langchain4j.model.openai.OpenAiStreamingChatModel;
 import dev.langchain4j.model.output.Response;
-import lombok.RequiredArgsConstructor;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.observation.Observation;
+import io.micrometer.observation.ObservationRegistry;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.beans.factory.annotation.Value;
+import org.pm.hamburgaiassistant.cache.FirstTurnResponseCache;
+import org.pm.hamburgaiassistant.http.Cancellation;
+import org.pm.hamburgaiassistant.retrieval.GuideRetriever;
+import org.pm.hamburgaiassistant.session.SessionRegistry;
 import org.springframework.stereotype.Service;
 
-import java.time.Duration;
-import java.util.Map;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.function.Consumer;
 
 @Slf4j
 @Service
-@RequiredArgsConstructor
 public class StreamingChatService {
 
-    @Value("${deepseek.api.key}")
-    private String apiKey;
+    private final StreamingChatLanguageModel streamingModel;
+    private final SessionRegistry sessionRegistry;
+    private final GuideRetriever guideRetriever;
+    private final FirstTurnResponseCache responseCache;
+    private final ActiveGenerations activeGenerations;
+    private final SessionMailboxes mailboxes;
+    private final LlmAdmissionController admission;
+    private final MeterRegistry meterRegistry;
+    private final ObservationRegistry observationRegistry;
 
-    @Value("${deepseek.api.url}")
-    private String apiUrl;
+    public StreamingChatService(StreamingChatLanguageModel streamingModel,
+                                SessionRegistry sessionRegistry,
+                                GuideRetriever guideRetriever,
+                                FirstTurnResponseCache responseCache,
+                                ActiveGenerations activeGenerations,
+                                SessionMailboxes mailboxes,
+                                LlmAdmissionController admission,
+                                MeterRegistry meterRegistry,
+                                ObservationRegistry observationRegistry) {
+        this.streamingModel = streamingModel;
+        this.sessionRegistry = sessionRegistry;
+        this.guideRetriever = guideRetriever;
+        this.responseCache = responseCache;
+        this.activeGenerations = activeGenerations;
+        this.mailboxes = mailboxes;
+        this.admission = admission;
+        this.meterRegistry = meterRegistry;
+        this.observationRegistry = observationRegistry;
+    }
+
+    public Cancellation streamChat(String sessionId, String userMessage, Consumer<String> onNext, Runnable onComplete) {
+        return streamChat("ws", sessionId, userMessage, onNext, onComplete);
+    }
+
+    /**
+     * Streams through the session's mailbox, so the turn starts once earlier turns of the same session
+     * are done. {@code onComplete} also runs when the message was merged into another turn or stopped
+     * while still queued; {@code onRejected} runs instead when the session's queue is full or the model
+     * call was not admitted.
+     */
+    public StreamHandle submit(String transport, String sessionId, String userMessage,
+                               Consumer<String> onNext, Runnable onComplete, Consumer<RuntimeException> onRejected) {
+        StreamHandle handle = new StreamHandle();
+        // A stop racing with the turn being dequeued can end it from both sides
+        AtomicBoolean completed = new AtomicBoolean();
+        Runnable completeOnce = () -> {
+            if (completed.compareAndSet(false, true)) {
+                onComplete.run();
+            }
+        };
+        Consumer<RuntimeException> rejectOnce = rejected -> {
+            if (completed.compareAndSet(false, true)) {
+                onRejected.accept(rejected);
+            }
+        };
+        CompletableFuture<Void> turn = mailboxes.submit(sessionId, userMessage, text -> {
+            CompletableFuture<Void> done = new CompletableFuture<>();
+            handle.started(streamChat(transport, sessionId, text, onNext, () -> {
+                try {
+                    completeOnce.run();
+                } finally {
+                    done.complete(null);
+                }
+            }, rejected -> {
+                try {
+                    rejectOnce.accept(rejected);
+                } finally {
+                    done.complete(null);
+                }
+            }));
+            return done;
+        });
+        handle.queued(turn);
+        turn.whenComplete((result, error) -> {
+            if (handle.generation != null) {
+                return;
+            }
+            Throwable cause = error instanceof CompletionException ? error.getCause() : error;
+            if (cause instanceof SessionMailboxes.MailboxFullException rejected) {
+                rejectOnce.accept(rejected);
+            } else {
+                completeOnce.run();
+            }
+        });
+        return handle;
+    }
 
-    private final Map<Object, ChatMemory> chatMemoryStore;
+    /**
+     * Streams the answer through {@code onNext} and returns without waiting for it. {@code transport}
+     * (ws or sse) tags the time-to-first-token and tokens-per-second metrics and the "chat.turn" span,
+     * which spans from the message to the last token with the model call as its child. Cancelling the
+     * returned handle aborts the upstream stream, keeps what was streamed so far as the answer and calls
+     * {@code onComplete} right away.
+     */
+    public Cancellation streamChat(String transport, String sessionId, String userMessage,
+                           Consumer<String> onNext, Runnable onComplete) {
+        return streamChat(transport, sessionId, userMessage, onNext, onComplete, rejected -> {
+            onNext.accept("Error: " + rejected.getMessage());
+            onComplete.run();
+        });
+    }
 
-    public void streamChat(String sessionId, String userMessage, Consumer<String> onNext, Runnable onComplete) {
+    private Cancellation streamChat(String transport, String sessionId, String userMessage,
+                                    Consumer<String> onNext, Runnable onComplete,
+                                    Consumer<RuntimeException> onRejected) {
+        long start = System.nanoTime();
+        Timer timeToFirstToken = Timer.builder("chat.stream.time-to-first-token")
+                .description("Time from receiving a message to streaming its first token")
+                .tag("transport", transport)
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+        Observation turn = Observation.createNotStarted("chat.turn", observationRegistry)
+                .contextualName("chat turn")
+                .lowCardinalityKeyValue("path", transport)
+                .highCardinalityKeyValue("session.id", sessionId)
+                .start();
+        Cancellation cancellation = activeGenerations.start(sessionId);
         try {
             // Get or create memory for this session
-            ChatMemory chatMemory = chatMemoryStore.computeIfAbsent(
-                    sessionId,
-                    id -> MessageWindowChatMemory.withMaxMessages(10)
-            );
-
-            // Create streaming model
-            StreamingChatLanguageModel streamingModel = OpenAiStreamingChatModel.builder()
-                    .baseUrl(apiUrl + "/v1")
-                    .apiKey(apiKey)
-                    .modelName("deepseek-chat")
-                    .temperature(0.7)
-                    .timeout(Duration.ofSeconds(60))
-                    .build();
-
-            // Add user message to memory
-            chatMemory.add(UserMessage.from(userMessage));
-
-            // Stream response
-            streamingModel.generate(chatMemory.messages(), new StreamingResponseHandler<AiMessage>() {
+            ChatMemory chatMemory = sessionRegistry.getOrCreate(sessionId).memory();
+            boolean firstTurn = chatMemory.messages().isEmpty();
+            if (firstTurn) {
+                // A cached answer goes out as a single token, so the client needs no special handling
+                Optional<String> cached = responseCache.lookup("stream", userMessage);
+                if (cached.isPresent()) {
+                    timeToFirstToken.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+                    chatMemory.add(UserMessage.from(userMessage));
+                    chatMemory.add(AiMessage.from(cached.get()));
+                    onNext.accept(cached.get());
+                    activeGenerations.finish(cancellation, null);
+                    end(turn, "cached", null);
+                    onComplete.run();
+                    return cancellation;
+                }
+            } else {
+                responseCache.bypass("stream");
+            }
+
+            var handler = new StreamingResponseHandler<AiMessage>() {
                 private final StringBuilder fullResponse = new StringBuilder();
+                // Exactly one of complete, error, rejection or cancel finishes the stream
+                private final AtomicBoolean done = new AtomicBoolean();
+                private volatile LlmAdmissionController.Permit permit;
+                private volatile Observation call;
+                private long firstTokenNanos;
+
+                {
+                    cancellation.onCancel(this::cancelled);
+                }
+
+                void admitted(LlmAdmissionController.Permit permit) {
+                    this.permit = permit;
+                    // Stopped while waiting for admission
+                    if (done.get()) {
+                        permit.abandoned();
+                        return;
+                    }
+                    // Added only now, so a rejected message leaves no unanswered turn behind
+                    chatMemory.add(UserMessage.from(userMessage));
+                    call = Observation.createNotStarted("chat.model.call", observationRegistry)
+                            .contextualName("model call")
+                            .parentObservation(turn)
+                            .lowCardinalityKeyValue("path", "stream")
+                            .lowCardinalityKeyValue("follow-up", "false")
+                            .start();
+                    try {
+                        // Our DeepSeek model hands back the call so cancelling can abort it upstream
+                        List<ChatMessage> messages = guideRetriever.augment(chatMemory.messages(), userMessage);
+                        if (streamingModel instanceof DeepSeekStreamingChatModel deepSeek) {
+                            cancellation.onCancel(deepSeek.stream(messages, List.of(), this)::cancel);
+                        } else {
+                            streamingModel.generate(messages, this);
+                        }
+                    } catch (RuntimeException e) {
+                        onError(e);
+                    }
+                }
+
+                void notAdmitted(RuntimeException rejected) {
+                    if (!done.compareAndSet(false, true)) {
+                        return;
+                    }
+                    activeGenerations.finish(cancellation, null);
+                    end(turn, "rejected", rejected);
+                    log.warn("Model call for session {} not admitted: {}", sessionId, rejected.getMessage());
+                    onRejected.accept(rejected);
+                }
 
                 @Override
                 public void onNext(String token) {
-                    fullResponse.append(token);
+                    if (done.get()) {
+                        return;
+                    }
+                    synchronized (fullResponse) {
+                        if (fullResponse.isEmpty()) {
+                            permit.responded();
+                            call.event(Observation.Event.of("first-token"));
+                            firstTokenNanos = System.nanoTime();
+                            long ttft = firstTokenNanos - start;
+                            timeToFirstToken.record(ttft, TimeUnit.NANOSECONDS);
+                            log.debug("First token for session {} after {} ms", sessionId, ttft / 1_000_000);
+                        }
+                        fullResponse.append(token);
+                    }
+                    cancellation.tokenStreamed();
                     onNext.accept(token);
                 }
 
                 @Override
                 public void onComplete(Response<AiMessage> response) {
+                    if (!done.compareAndSet(false, true)) {
+                        return;
+                    }
+                    permit.succeeded();
+                    call.stop();
+                    recordTokensPerSecond();
+                    end(turn, "answered", null);
+                    ChatService.recordTokenUsage(meterRegistry, "stream", response.tokenUsage());
+                    activeGenerations.finish(cancellation,
+                            response.tokenUsage() != null ? response.tokenUsage().outputTokenCount() : null);
                     // Add AI response to memory
                     chatMemory.add(response.content());
+                    if (firstTurn) {
+                        responseCache.store(userMessage, response.content().text(), List.of());
+                    }
                     onComplete.run();
                 }
 
                 @Override
                 public void onError(Throwable error) {
+                    if (!done.compareAndSet(false, true)) {
+                        return;
+                    }
+                    permit.failed(error);
+                    if (call != null) {
+                        call.error(error);
+                        call.stop();
+                    }
+                    end(turn, "error", error);
+                    activeGenerations.finish(cancellation, null);
                     log.error("Error during streaming", error);
                     onNext.accept("\n\nError: " + error.getMessage());
                     onComplete.run();
                 }
+
+                // Streaming rate after the first token, which is what the reader experiences
+                private void recordTokensPerSecond() {
+                    long elapsed;
+                    synchronized (fullResponse) {
+                        elapsed = System.nanoTime() - firstTokenNanos;
+                    }
+                    int tokens = cancellation.streamedTokens();
+                    if (tokens > 1 && elapsed > 0) {
+                        DistributionSummary.builder("chat.stream.tokens-per-second")
+                                .description("Streamed tokens per second after the first token")
+                                .tag("transport", transport)
+                                .register(meterRegistry)
+                                .record((tokens - 1) * 1e9 / elapsed);
+                    }
+                }
+
+                private void cancelled() {
+                    if (!done.compareAndSet(false, true)) {
+                        return;
+                    }
+                    LlmAdmissionController.Permit admitted = permit;
+                    if (admitted != null) {
+                        admitted.abandoned();
+                    }
+                    Observation running = call;
+                    if (running != null) {
+                        running.stop();
+                    }
+                    end(turn, "cancelled", null);
+                    String partial;
+                    synchronized (fullResponse) {
+                        partial = fullResponse.toString();
+                    }
+                    // Keep the visible part so the next turn's context matches what the user saw
+                    if (!partial.isBlank()) {
+                        chatMemory.add(AiMessage.from(partial));
+                    }
+                    log.info("Stopped streaming for session {} after {} tokens ({})",
+                            sessionId, cancellation.streamedTokens(), cancellation.reason());
+                    onComplete.run();
+                }
+            };
+
+            // Waits in the admission queue without holding a thread; a stop meanwhile gives up the place
+            CompletableFuture<LlmAdmissionController.Permit> admitted = admission.acquireAsync("stream", sessionId, false);
+            cancellation.onCancel(() -> admitted.cancel(false));
+            admitted.whenComplete((permit, error) -> {
+                Throwable cause = error instanceof CompletionException ? error.getCause() : error;
+                if (cause == null) {
+                    handler.admitted(permit);
+                } else if (cause instanceof LlmAdmissionController.AdmissionRejectedException rejected) {
+                    handler.notAdmitted(rejected);
+                }
+                // Otherwise it was cancelled, which the handler has already handled
             });
 
         } catch (Exception e) {
+            activeGenerations.finish(cancellation, null);
+            end(turn, "error", e);
             log.error("Error in streaming chat", e);
             onNext.accept("Error: " + e.getMessage());
             onComplete.run();
         }
+        return cancellation;
+    }
+
+    private static void end(Observation observation, String outcome, Throwable error) {
+        observation.lowCardinalityKeyValue("outcome", outcome);
+        if (error != null) {
+            observation.error(error);
+        }
+        observation.stop();
+    }
+
+    /**
+     * A streamed turn that may still be waiting in its session's mailbox.
+     */
+    public static final class StreamHandle {
+
+        // Null until submit returns; the turn may already be streaming by then
+        private volatile CompletableFuture<Void> turn;
+        private volatile Cancellation generation;
+        private volatile String stopReason;
+
+        /**
+         * Drops the turn if it is still queued, otherwise cancels its generation.
+         */
+        public boolean stop(String reason) {
+            stopReason = reason;
+            CompletableFuture<Void> queued = turn;
+            boolean dequeued = generation == null && queued != null && queued.cancel(false);
+            Cancellation running = generation;
+            return (running != null && running.cancel(reason)) || dequeued;
+        }
+
+        public boolean isStopped() {
+            return stopReason != null;
+        }
+
+        private void queued(CompletableFuture<Void> queuedTurn) {
+            turn = queuedTurn;
+            // A stop that came before submit returned
+            if (stopReason != null && generation == null) {
+                queuedTurn.cancel(false);
+            }
+        }
+
+        private void started(Cancellation cancellation) {
+            generation = cancellation;
+            // A stop that raced with the turn starting
+            if (stopReason != null) {
+                cancellation.cancel(stopReason);
+            }
+        }
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,213 @@
+package org.pm.hamburgaiassistant.service;
+
+import dev.langchain4j.agent.tool.ToolExecutionRequest;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.observation.Observation;
+import io.micrometer.observation.ObservationRegistry;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.pm.hamburgaiassistant.config.VirtualThreads;
+import org.pm.hamburgaiassistant.http.Cancellation;
+import org.pm.hamburgaiassistant.tools.ToolOutcome;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs the tool calls of one model turn concurrently, so a turn that asks for weather, places and
+ * directions takes as long as the slowest of them rather than their sum. Results come back in request
+ * order. Calls still running at the turn deadline are cancelled and answered with an error string, the
+ * same way the tools report upstream failures, so the model can still reply with what it has. Either way
+ * the result is marked {@link ToolResult#degraded() degraded}, as is any answer the tool marked through
+ * {@link ToolOutcome}. Cancelling
+ * the generation cancels the pending calls and, through {@link Cancellation#current()}, their HTTP requests.
+ * Every call is observed as a "chat.tool" span under the caller's current observation, which also gives
+ * per-tool latency and failure counts. Calls the {@link ToolPrefetcher} started ahead of the model are
+ * picked up instead of being run again.
+ * <p>
+ * Every call runs on the pool, a single one included, so the deadline always applies. When the pool and
+ * its queue are full a call fails fast with an error result instead of running on the request thread.
+ */
+@Slf4j
+@Component
+public class ToolExecutionEngine {
+
+    private final AssistantTools assistantTools;
+    private final ObservationRegistry observationRegistry;
+    private final long turnDeadlineMs;
+    private final ExecutorService executor;
+    private final Timer turnTimer;
+    private final Counter timeouts;
+    private final Counter rejections;
+
+    public ToolExecutionEngine(AssistantTools assistantTools,
+                               MeterRegistry meterRegistry,
+                               ObservationRegistry observationRegistry,
+                               @Value("${chat.tools.turn-deadline-ms:10000}") long turnDeadlineMs,
+                               @Value("${chat.tools.threads:32}") int threads,
+                               @Value("${chat.tools.queue:256}") int queueCapacity,
+                               @Value("${spring.threads.virtual.enabled:false}") boolean virtualThreads) {
+        this.assistantTools = assistantTools;
+        this.observationRegistry = observationRegistry;
+        this.turnDeadlineMs = turnDeadlineMs;
+        if (virtualThreads && VirtualThreads.available()) {
+            // Tool calls block on OkHttp; on virtual threads they need no pool sizing at all
+            this.executor = VirtualThreads.newThreadPerTaskExecutor("tool-exec-");
+        } else {
+            AtomicInteger threadCount = new AtomicInteger();
+            ThreadPoolExecutor pool = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS,
+                    new ArrayBlockingQueue<>(queueCapacity), runnable -> {
+                        Thread thread = new Thread(runnable, "tool-exec-" + threadCount.incrementAndGet());
+                        thread.setDaemon(true);
+                        return thread;
+                    }, new ThreadPoolExecutor.AbortPolicy());
+            pool.allowCoreThreadTimeOut(true);
+            meterRegistry.gauge("chat.tools.queued", pool, p -> p.getQueue().size());
+            this.executor = pool;
+        }
+        this.turnTimer = Timer.builder("chat.tools.turn")
+                .description("Wall time to execute all tool calls of one model turn")
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+        this.timeouts = Counter.builder("chat.tools.timeouts")
+                .description("Tool calls cancelled at the per-turn deadline")
+                .register(meterRegistry);
+        this.rejections = Counter.builder("chat.tools.rejected")
+                .description("Tool calls turned away because the tool pool and its queue were full")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Executes the requests and returns one result per request, in the same order.
+     */
+    public List<ToolResult> executeAll(List<ToolExecutionRequest> requests, Object memoryId) {
+        return executeAll(requests, memoryId, null);
+    }
+
+    public List<ToolResult> executeAll(List<ToolExecutionRequest> requests, Object memoryId, Cancellation cancellation) {
+        return executeAll(requests, memoryId, cancellation, ToolPrefetcher.Prefetch.NONE);
+    }
+
+    /**
+     * Same as {@link #executeAll(List, Object, Cancellation)}, but a request the prefetch already started
+     * waits for that call instead of making its own.
+     */
+    public List<ToolResult> executeAll(List<ToolExecutionRequest> requests, Object memoryId, Cancellation cancellation,
+                                   ToolPrefetcher.Prefetch prefetch) {
+        long start = System.nanoTime();
+        // Captured here: pool threads don't see the caller's observation
+        Observation parent = observationRegistry.getCurrentObservation();
+        try {
+            List<Future<ToolResult>> futures = new ArrayList<>(requests.size());
+            for (ToolExecutionRequest request : requests) {
+                futures.add(prefetch.claim(request));
+            }
+            for (int i = 0; i < requests.size(); i++) {
+                if (futures.get(i) == null) {
+                    ToolExecutionRequest request = requests.get(i);
+                    Future<ToolResult> future = submit(request, memoryId, cancellation, parent, false);
+                    futures.set(i, future != null ? future
+                            : CompletableFuture.completedFuture(ToolResult.failed("Error: " + request.name()
+                                    + " could not run, the assistant is busy")));
+                }
+            }
+            long deadline = start + TimeUnit.MILLISECONDS.toNanos(turnDeadlineMs);
+            List<ToolResult> results = new ArrayList<>(requests.size());
+            for (int i = 0; i < requests.size(); i++) {
+                results.add(await(requests.get(i), futures.get(i), deadline));
+            }
+            return results;
+        } finally {
+            turnTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    /**
+     * Starts a call ahead of the model asking for it. The "chat.tool" span is tagged speculative. Null when
+     * the pool is full.
+     */
+    Future<ToolResult> prefetch(ToolExecutionRequest request, Object memoryId, Cancellation cancellation) {
+        return submit(request, memoryId, cancellation, observationRegistry.getCurrentObservation(), true);
+    }
+
+    // Null when the pool and its queue are full
+    private Future<ToolResult> submit(ToolExecutionRequest request, Object memoryId, Cancellation cancellation,
+                                  Observation parent, boolean speculative) {
+        Future<ToolResult> future;
+        try {
+            future = executor.submit(() -> execute(request, memoryId, cancellation, parent, speculative));
+        } catch (RejectedExecutionException e) {
+            rejections.increment();
+            log.warn("Tool pool is full, not running {}", request.name());
+            return null;
+        }
+        if (cancellation != null) {
+            cancellation.onCancel(() -> future.cancel(true));
+        }
+        return future;
+    }
+
+    private ToolResult execute(ToolExecutionRequest request, Object memoryId, Cancellation cancellation,
+                           Observation parent, boolean speculative) {
+        Observation observation = Observation.createNotStarted("chat.tool", observationRegistry)
+                .contextualName("tool " + request.name())
+                .parentObservation(parent)
+                .lowCardinalityKeyValue("tool", request.name())
+                .lowCardinalityKeyValue("speculative", String.valueOf(speculative))
+                .lowCardinalityKeyValue("outcome", "error")
+                .start();
+        try (Observation.Scope scope = observation.openScope()) {
+            ToolOutcome outcome = new ToolOutcome();
+            String text = ToolOutcome.callWith(outcome,
+                    () -> Cancellation.callWith(cancellation, () -> assistantTools.execute(request, memoryId)));
+            // Tools report upstream failures as text rather than by throwing, and mark them on the outcome
+            observation.lowCardinalityKeyValue("outcome", outcome.isDegraded() ? "failure" : "success");
+            return new ToolResult(text, outcome.isDegraded());
+        } catch (RuntimeException e) {
+            observation.error(e);
+            throw e;
+        } finally {
+            observation.stop();
+        }
+    }
+
+    private ToolResult await(ToolExecutionRequest request, Future<ToolResult> future, long deadline) {
+        try {
+            return future.get(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+        } catch (TimeoutException e) {
+            future.cancel(true);
+            timeouts.increment();
+            log.warn("Tool {} did not finish within the {} ms turn deadline", request.name(), turnDeadlineMs);
+            return ToolResult.failed("Error: " + request.name() + " did not respond in time");
+        } catch (CancellationException e) {
+            return ToolResult.failed("Error: " + request.name() + " was cancelled");
+        } catch (ExecutionException e) {
+            log.error("Tool {} failed", request.name(), e.getCause());
+            return ToolResult.failed("Error executing " + request.name() + ": " + e.getCause().getMessage());
+        } catch (InterruptedException e) {
+            future.cancel(true);
+            Thread.currentThread().interrupt();
+            return ToolResult.failed("Error: " + request.name() + " was interrupted");
+        }
+    }
+
+    @PreDestroy
+    void shutdown() {
+        executor.shutdownNow();
+    }
+}
@@ -0,0 +1,230 @@
+package org.pm.hamburgaiassistant.service;
+
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import dev.langchain4j.agent.tool.ToolExecutionRequest;
+import dev.langchain4j.agent.tool.ToolSpecification;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.pm.hamburgaiassistant.http.Cancellation;
+import org.pm.hamburgaiassistant.tools.GoogleDirectionsTool;
+import org.pm.hamburgaiassistant.tools.LandmarkAliases;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Future;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Starts the tool calls a message will almost certainly lead to while the first model call is still
+ * running: the weather for "is it raining?", a route for "from A to B", a place search for "cafes near
+ * the Alster". When the model then asks for the same call (same tool, equivalent arguments) the
+ * {@link ToolExecutionEngine} hands back the prefetched result instead of calling the upstream again.
+ * <p>
+ * Only tools the {@link IntentRouter} offers for the turn are prefetched. Every speculation ends up as a
+ * hit or as waste; tool calls the model makes that no speculation covered count as misses.
+ */
+@Slf4j
+@Component
+public class ToolPrefetcher {
+
+    private static final Pattern CITY = Pattern.compile("\\b(?:in|for|für|fuer)\\s+(\\p{Lu}[\\p{L}-]+)");
+    private static final Pattern ROUTE_EN = Pattern.compile(
+            "(?i)\\bfrom\\s+(?:the\\s+)?([^?.!,]+?)\\s+to\\s+(?:the\\s+)?([^?.!,]+?)(?:\\s+(?:by|on)\\s+\\w+)?\\s*(?:[?.!,]|$)");
+    private static final Pattern ROUTE_DE = Pattern.compile(
+            "(?i)\\bvon\\s+(?:der\\s+|dem\\s+)?([^?.!,]+?)\\s+(?:nach|zum|zur|bis)\\s+(?:der\\s+|dem\\s+)?([^?.!,]+?)\\s*(?:[?.!,]|$)");
+    private static final Pattern NEAR = Pattern.compile(
+            "(?i)\\b(?:near|around|close to|nahe|in der nähe (?:von|vom|der|des))\\s+(?:the\\s+|dem\\s+|der\\s+)?([^?.!,]+?)\\s*(?:[?.!,]|$)");
+
+    // Place words in a message and the query the model tends to search for them
+    private static final Map<String, String> PLACE_QUERIES = Map.ofEntries(
+            Map.entry("restaurant", "restaurants"), Map.entry("restaurants", "restaurants"),
+            Map.entry("cafe", "cafes"), Map.entry("cafes", "cafes"), Map.entry("coffee", "cafes"),
+            Map.entry("bar", "bars"), Map.entry("bars", "bars"), Map.entry("kneipe", "bars"),
+            Map.entry("hotel", "hotels"), Map.entry("hotels", "hotels"),
+            Map.entry("museum", "museums"), Map.entry("museums", "museums"));
+
+    private final ToolExecutionEngine toolExecutionEngine;
+    private final MeterRegistry meterRegistry;
+    private final boolean enabled;
+
+    public ToolPrefetcher(ToolExecutionEngine toolExecutionEngine,
+                          MeterRegistry meterRegistry,
+                          @Value("${chat.tools.prefetch.enabled:true}") boolean enabled) {
+        this.toolExecutionEngine = toolExecutionEngine;
+        this.meterRegistry = meterRegistry;
+        this.enabled = enabled;
+    }
+
+    /**
+     * Starts the predicted calls for a turn. The result must be {@link Prefetch#finish() finished} when
+     * the turn ends, so unused speculations are counted.
+     */
+    public Prefetch start(String message, IntentRouter.Route route, String sessionId, Cancellation cancellation) {
+        if (!enabled) {
+            return Prefetch.NONE;
+        }
+        Prefetch prefetch = new Prefetch(meterRegistry);
+        for (ToolExecutionRequest request : predict(message, route.tools())) {
+            String key = matchKey(request);
+            if (key != null && !prefetch.pending.containsKey(key)) {
+                log.debug("Prefetching {}({}) for session {}", request.name(), request.arguments(), sessionId);
+                Future<ToolResult> future = toolExecutionEngine.prefetch(request, sessionId, cancellation);
+                // A full pool means no speculation; the model's own call runs as usual
+                if (future != null) {
+                    prefetch.pending.put(key, future);
+                }
+            }
+        }
+        return prefetch;
+    }
+
+    static List<ToolExecutionRequest> predict(String message, List<ToolSpecification> offered) {
+        List<ToolExecutionRequest> predicted = new ArrayList<>();
+        String normalized = LandmarkAliases.normalize(message);
+        List<String> words = List.of(normalized.split(" "));
+
+        if (offers(offered, "getCurrentWeather") && (words.contains("weather") || words.contains("wetter")
+                || words.contains("rain") || words.contains("raining") || words.contains("regnet")
+                || words.contains("temperature") || words.contains("umbrella"))) {
+            Matcher city = CITY.matcher(message);
+            predicted.add(request("getCurrentWeather", json("city", city.find() ? city.group(1) : "Hamburg")));
+        }
+
+        if (offers(offered, "getDirections")) {
+            Matcher route = ROUTE_EN.matcher(message);
+            boolean found = route.find();
+            if (!found) {
+                route = ROUTE_DE.matcher(message);
+                found = route.find();
+            }
+            if (found) {
+                predicted.add(request("getDirections", json("origin", LandmarkAliases.resolve(route.group(1)),
+                        "destination", LandmarkAliases.resolve(route.group(2)), "mode", mode(words))));
+            }
+        }
+
+        if (offers(offered, "searchPlaces")) {
+            String query = words.stream().map(PLACE_QUERIES::get).filter(q -> q != null).findFirst().orElse(null);
+            if (query != null) {
+                Matcher near = NEAR.matcher(message);
+                String location = near.find() ? LandmarkAliases.resolve(near.group(1)) : "Hamburg";
+                predicted.add(request("searchPlaces", json("query", query, "location", location)));
+            }
+        }
+        return predicted;
+    }
+
+    /**
+     * Identity of a call for matching a request against a speculation: tool name plus arguments as the
+     * tool itself would key its cache. Null for calls that are never prefetched or that don't parse.
+     */
+    static String matchKey(ToolExecutionRequest request) {
+        JsonObject args;
+        try {
+            args = JsonParser.parseString(request.arguments()).getAsJsonObject();
+        } catch (RuntimeException e) {
+            return null;
+        }
+        return switch (request.name()) {
+            case "getCurrentWeather" -> "weather|" + LandmarkAliases.normalize(arg(args, "city"))
+                    .replaceFirst("( (de|deu|germany|deutschland))+$", "");
+            case "searchPlaces" -> "places|" + LandmarkAliases.normalize(arg(args, "query"))
+                    + "|" + LandmarkAliases.key(arg(args, "location"));
+            case "getDirections" -> "directions|" + LandmarkAliases.key(arg(args, "origin"))
+                    + "|" + LandmarkAliases.key(arg(args, "destination"))
+                    + "|" + GoogleDirectionsTool.normalizeMode(arg(args, "mode"));
+            default -> null;
+        };
+    }
+
+    private static String mode(List<String> words) {
+        if (words.contains("walk") || words.contains("walking") || words.contains("foot") || words.contains("fuss")) {
+            return "walking";
+        }
+        if (words.contains("bike") || words.contains("cycling") || words.contains("fahrrad")) {
+            return "bicycling";
+        }
+        if (words.contains("drive") || words.contains("driving") || words.contains("car") || words.contains("auto")) {
+            return "driving";
+        }
+        return "transit";
+    }
+
+    private static boolean offers(List<ToolSpecification> offered, String toolName) {
+        return offered.stream().anyMatch(spec -> spec.name().equals(toolName));
+    }
+
+    private static String arg(JsonObject args, String name) {
+        JsonElement value = args.get(name);
+        return value == null || value.isJsonNull() ? null : value.getAsString();
+    }
+
+    private static String json(String... keyValues) {
+        JsonObject object = new JsonObject();
+        for (int i = 0; i < keyValues.length; i += 2) {
+            object.addProperty(keyValues[i], keyValues[i + 1]);
+        }
+        return object.toString();
+    }
+
+    private static ToolExecutionRequest request(String name, String arguments) {
+        return ToolExecutionRequest.builder().id("prefetch-" + name).name(name).arguments(arguments).build();
+    }
+
+    /**
+     * The speculations of one turn. Used from the turn's own thread only.
+     */
+    public static final class Prefetch {
+
+        static final Prefetch NONE = new Prefetch(null);
+
+        private final Map<String, Future<ToolResult>> pending = new LinkedHashMap<>();
+        private final MeterRegistry meterRegistry;
+
+        private Prefetch(MeterRegistry meterRegistry) {
+            this.meterRegistry = meterRegistry;
+        }
+
+        /**
+         * The prefetched call matching the request, or null when the request has to run itself.
+         */
+        Future<ToolResult> claim(ToolExecutionRequest request) {
+            if (meterRegistry == null) {
+                return null;
+            }
+            String key = matchKey(request);
+            if (key == null) {
+                return null;
+            }
+            Future<ToolResult> future = pending.remove(key);
+            count(key, future != null ? "hit" : "miss");
+            return future;
+        }
+
+        /**
+         * Counts the speculations the model never asked for. Their results still warm the tool caches.
+         */
+        public void finish() {
+            pending.keySet().forEach(key -> count(key, "waste"));
+            pending.clear();
+        }
+
+        private void count(String key, String result) {
+            Counter.builder("chat.tools.prefetch")
+                    .description("Prefetched tool calls by outcome: hit (used), waste (never asked for), "
+                            + "miss (asked for but not prefetched)")
+                    .tag("tool", key.substring(0, key.indexOf('|')))
+                    .tag("result", result)
+                    .register(meterRegistry)
+                    .increment();
+        }
+    }
+}
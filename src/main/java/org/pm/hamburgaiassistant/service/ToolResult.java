@@ -0,0 +1,12 @@
+package org.pm.hamburgaiassistant.service;
+
+/**
+ * The text a tool call answered the model with, and whether that answer is degraded: a failure, a
+ * timeout or a fallback the tool marked through {@link org.pm.hamburgaiassistant.tools.ToolOutcome}.
+ */
+public record ToolResult(String text, boolean degraded) {
+
+    static ToolResult failed(String text) {
+        return new ToolResult(text, true);
+    }
+}
@@ -0,0 +1,85 @@
+package org.pm.hamburgaiassistant.session;
+
+import dev.langchain4j.agent.tool.ToolExecutionRequest;
+import dev.langchain4j.data.message.AiMessage;
+import dev.langchain4j.data.message.ChatMessage;
+import dev.langchain4j.data.message.SystemMessage;
+import dev.langchain4j.data.message.ToolExecutionResultMessage;
+import dev.langchain4j.data.message.UserMessage;
+import dev.langchain4j.memory.ChatMemory;
+
+import java.time.Instant;
+
+/**
+ * Conversation state for one chat session, shared by the REST and WebSocket paths.
+ */
+public class ChatSession {
+
+    // Session object, memory, message list and registry entry, measured roughly with a heap dump
+    static final long BASE_BYTES = 1024;
+    // Message object, its list slot and String header
+    private static final long PER_MESSAGE_BYTES = 96;
+
+    private final String id;
+    private final ChatMemory memory;
+    private final Instant createdAt = Instant.now();
+    private volatile long lastAccessNanos = System.nanoTime();
+
+    ChatSession(String id, ChatMemory memory) {
+        this.id = id;
+        this.memory = memory;
+    }
+
+    public String id() {
+        return id;
+    }
+
+    public ChatMemory memory() {
+        return memory;
+    }
+
+    public Instant createdAt() {
+        return createdAt;
+    }
+
+    void touch() {
+        lastAccessNanos = System.nanoTime();
+    }
+
+    long idleNanos() {
+        return System.nanoTime() - lastAccessNanos;
+    }
+
+    /**
+     * Rough retained size of this session: strings count two bytes per char plus fixed object overhead.
+     */
+    public long estimatedBytes() {
+        long bytes = BASE_BYTES;
+        for (ChatMessage message : memory.messages()) {
+            bytes += PER_MESSAGE_BYTES + 2L * textLength(message);
+        }
+        return bytes;
+    }
+
+    private static int textLength(ChatMessage message) {
+        if (message instanceof UserMessage user) {
+            return user.hasSingleText() ? user.singleText().length() : 0;
+        }
+        if (message instanceof AiMessage ai) {
+            int length = ai.text() != null ? ai.text().length() : 0;
+            if (ai.hasToolExecutionRequests()) {
+                for (ToolExecutionRequest request : ai.toolExecutionRequests()) {
+                    length += request.name().length() + (request.arguments() != null ? request.arguments().length() : 0);
+                }
+            }
+            return length;
+        }
+        if (message instanceof ToolExecutionResultMessage result) {
+            return result.text().length();
+        }
+        if (message instanceof SystemMessage system) {
+            return system.text().length();
+        }
+        return 0;
+    }
+}
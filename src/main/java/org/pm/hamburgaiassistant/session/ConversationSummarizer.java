@@ -0,0 +1,142 @@
+package org.pm.hamburgaiassistant.session;
+
+import dev.langchain4j.data.message.AiMessage;
+import dev.langchain4j.data.message.ChatMessage;
+import dev.langchain4j.data.message.SystemMessage;
+import dev.langchain4j.data.message.ToolExecutionResultMessage;
+import dev.langchain4j.data.message.UserMessage;
+import dev.langchain4j.model.chat.ChatLanguageModel;
+import dev.langchain4j.model.output.Response;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import org.pm.hamburgaiassistant.service.LlmAdmissionController;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Folds evicted conversation turns into a rolling summary on a small dedicated pool, so compaction
+ * never runs on a request thread. When the pool is saturated or the model call fails, callers fall back
+ * to {@link #extractiveSummary}. Summaries are admitted as low-priority background calls, so they share
+ * the model's capacity with chat turns instead of bypassing the limit.
+ */
+@Component
+public class ConversationSummarizer {
+
+    private static final int TOOL_RESULT_CHARS = 300;
+    private static final int EXTRACTIVE_MAX_CHARS = 600;
+
+    private final ChatLanguageModel chatModel;
+    private final LlmAdmissionController admission;
+    private final int maxWords;
+    private final ThreadPoolExecutor executor;
+    private final Timer summarizeTimer;
+    private final MeterRegistry meterRegistry;
+
+    public ConversationSummarizer(ChatLanguageModel chatModel,
+                                  LlmAdmissionController admission,
+                                  MeterRegistry meterRegistry,
+                                  @Value("${chat.memory.summary-max-words:120}") int maxWords,
+                                  @Value("${chat.memory.summarizer-threads:2}") int threads,
+                                  @Value("${chat.memory.summarizer-queue:500}") int queueCapacity) {
+        this.chatModel = chatModel;
+        this.admission = admission;
+        this.meterRegistry = meterRegistry;
+        this.maxWords = maxWords;
+        AtomicInteger threadCount = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(queueCapacity), runnable -> {
+                    Thread thread = new Thread(runnable, "memory-summarizer-" + threadCount.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+        this.summarizeTimer = Timer.builder("chat.memory.summarize")
+                .description("Time to fold evicted turns into a session's rolling summary")
+                .register(meterRegistry);
+    }
+
+    public CompletableFuture<String> summarize(String previousSummary, List<ChatMessage> turns) {
+        try {
+            return CompletableFuture.supplyAsync(() -> summarizeTimer.record(() -> {
+                SystemMessage instructions = SystemMessage.from("""
+                        You maintain a running summary of a conversation between a visitor and a \
+                        Hamburg travel assistant. Merge the previous summary with the new turns into \
+                        one summary of at most %d words. Keep the visitor's preferences, plans, dates, \
+                        places already suggested and open questions. Reply with the summary only."""
+                        .formatted(maxWords));
+                LlmAdmissionController.Permit permit = admission.acquireBackground("summary");
+                Response<AiMessage> response;
+                try {
+                    response = chatModel.generate(instructions, UserMessage.from(prompt(previousSummary, turns)));
+                } catch (RuntimeException e) {
+                    permit.failed(e);
+                    throw e;
+                }
+                permit.succeeded(response.tokenUsage() != null ? response.tokenUsage().outputTokenCount() : null);
+                return response.content().text().strip();
+            }), executor).whenComplete((summary, error) -> count(error == null ? "summarized" : "failed"));
+        } catch (RejectedExecutionException e) {
+            count("rejected");
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+
+    /**
+     * Summary built without the model: the previous summary plus the visitor's questions, capped in length.
+     */
+    static String extractiveSummary(String previousSummary, List<ChatMessage> turns) {
+        StringBuilder summary = new StringBuilder();
+        if (previousSummary != null) {
+            summary.append(previousSummary).append(' ');
+        }
+        summary.append("Earlier the visitor asked:");
+        for (ChatMessage message : turns) {
+            if (message instanceof UserMessage user && user.hasSingleText()) {
+                summary.append(' ').append(user.singleText().strip()).append(';');
+            }
+        }
+        return summary.length() > EXTRACTIVE_MAX_CHARS
+                ? "..." + summary.substring(summary.length() - EXTRACTIVE_MAX_CHARS)
+                : summary.toString();
+    }
+
+    private static String prompt(String previousSummary, List<ChatMessage> turns) {
+        StringBuilder prompt = new StringBuilder("Previous summary: ")
+                .append(previousSummary != null ? previousSummary : "(none)")
+                .append("\n\nNew turns:\n");
+        for (ChatMessage message : turns) {
+            if (message instanceof UserMessage user && user.hasSingleText()) {
+                prompt.append("Visitor: ").append(user.singleText()).append('\n');
+            } else if (message instanceof AiMessage ai && ai.text() != null) {
+                prompt.append("Assistant: ").append(ai.text()).append('\n');
+            } else if (message instanceof ToolExecutionResultMessage result) {
+                String text = result.text();
+                prompt.append("Tool ").append(result.toolName()).append(": ")
+                        .append(text.length() > TOOL_RESULT_CHARS ? text.substring(0, TOOL_RESULT_CHARS) + "..." : text)
+                        .append('\n');
+            }
+        }
+        return prompt.toString();
+    }
+
+    private void count(String result) {
+        Counter.builder("chat.memory.compactions")
+                .tag("result", result)
+                .register(meterRegistry)
+                .increment();
+    }
+
+    @PreDestroy
+    void shutdown() {
+        executor.shutdownNow();
+    }
+}
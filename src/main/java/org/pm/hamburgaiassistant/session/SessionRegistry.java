@@ -0,0 +1,195 @@
+package org.pm.hamburgaiassistant.session;
+
+import dev.langchain4j.model.Tokenizer;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BooleanSupplier;
+import java.util.function.Consumer;
+
+/**
+ * Bounded store of live chat sessions. Sessions expire after an idle TTL, the least recently used
+ * session is evicted once the session cap or the heap budget is exceeded, and a scheduled sweeper
+ * reclaims idle sessions even when no new traffic arrives.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class SessionRegistry {
+
+    public enum EvictionReason { IDLE, CAPACITY, HEAP_BUDGET, EXPLICIT }
+
+    @Value("${chat.sessions.idle-ttl-minutes:30}")
+    private long idleTtlMinutes;
+
+    @Value("${chat.sessions.max-sessions:10000}")
+    private int maxSessions;
+
+    @Value("${chat.sessions.max-bytes:268435456}")
+    private long maxBytes;
+
+    @Value("${chat.memory.max-tokens:2000}")
+    private int memoryMaxTokens;
+
+    private final MeterRegistry meterRegistry;
+    private final Tokenizer tokenizer;
+    private final ConversationSummarizer summarizer;
+
+    // Access-ordered, so iteration starts at the least recently used session
+    private final LinkedHashMap<String, ChatSession> sessions = new LinkedHashMap<>(256, 0.75f, true);
+    private final List<Consumer<ChatSession>> evictionListeners = new CopyOnWriteArrayList<>();
+    private final AtomicLong estimatedBytes = new AtomicLong();
+
+    @PostConstruct
+    void registerMetrics() {
+        Gauge.builder("chat.sessions.live", this, SessionRegistry::size)
+                .description("Chat sessions currently held in memory")
+                .register(meterRegistry);
+        Gauge.builder("chat.sessions.estimated-bytes", estimatedBytes, AtomicLong::get)
+                .description("Estimated heap retained by chat sessions, refreshed by the sweeper")
+                .baseUnit("bytes")
+                .register(meterRegistry);
+    }
+
+    public ChatSession getOrCreate(String sessionId) {
+        List<ChatSession> evicted = new ArrayList<>();
+        ChatSession session;
+        synchronized (sessions) {
+            session = sessions.get(sessionId);
+            if (session == null) {
+                session = new ChatSession(sessionId,
+                        new TokenBudgetChatMemory(sessionId, tokenizer, memoryMaxTokens, summarizer));
+                sessions.put(sessionId, session);
+                evictEldestWhile(() -> sessions.size() > maxSessions, evicted);
+            }
+            session.touch();
+        }
+        notifyEvicted(evicted, EvictionReason.CAPACITY);
+        return session;
+    }
+
+    public Optional<ChatSession> find(String sessionId) {
+        synchronized (sessions) {
+            ChatSession session = sessions.get(sessionId);
+            if (session != null) {
+                session.touch();
+            }
+            return Optional.ofNullable(session);
+        }
+    }
+
+    public boolean remove(String sessionId) {
+        ChatSession removed;
+        synchronized (sessions) {
+            removed = sessions.remove(sessionId);
+        }
+        if (removed == null) {
+            return false;
+        }
+        notifyEvicted(List.of(removed), EvictionReason.EXPLICIT);
+        return true;
+    }
+
+    public int size() {
+        synchronized (sessions) {
+            return sessions.size();
+        }
+    }
+
+    public long estimatedBytes() {
+        return estimatedBytes.get();
+    }
+
+    /**
+     * Called with every session that leaves the registry, so owners of per-session resources can release them.
+     */
+    public void onEviction(Consumer<ChatSession> listener) {
+        evictionListeners.add(listener);
+    }
+
+    @Scheduled(fixedDelayString = "${chat.sessions.sweep-interval-ms:60000}",
+            initialDelayString = "${chat.sessions.sweep-interval-ms:60000}")
+    public void sweep() {
+        long idleTtlNanos = Duration.ofMinutes(idleTtlMinutes).toNanos();
+        List<ChatSession> idle = new ArrayList<>();
+        List<ChatSession> overBudget = new ArrayList<>();
+        long totalBytes = 0;
+        int live;
+
+        synchronized (sessions) {
+            Iterator<ChatSession> it = sessions.values().iterator();
+            while (it.hasNext()) {
+                ChatSession session = it.next();
+                if (session.idleNanos() >= idleTtlNanos) {
+                    it.remove();
+                    idle.add(session);
+                } else {
+                    totalBytes += session.estimatedBytes();
+                }
+            }
+
+            // Oldest first until the remaining sessions fit the heap budget
+            it = sessions.values().iterator();
+            while (totalBytes > maxBytes && it.hasNext()) {
+                ChatSession session = it.next();
+                it.remove();
+                totalBytes -= session.estimatedBytes();
+                overBudget.add(session);
+            }
+            live = sessions.size();
+        }
+        estimatedBytes.set(totalBytes);
+
+        notifyEvicted(idle, EvictionReason.IDLE);
+        notifyEvicted(overBudget, EvictionReason.HEAP_BUDGET);
+        if (!idle.isEmpty() || !overBudget.isEmpty()) {
+            log.info("Session sweep: {} idle and {} over heap budget evicted, {} live (~{} KB)",
+                    idle.size(), overBudget.size(), live, totalBytes / 1024);
+        }
+    }
+
+    private void evictEldestWhile(BooleanSupplier condition, List<ChatSession> evicted) {
+        Iterator<Map.Entry<String, ChatSession>> it = sessions.entrySet().iterator();
+        while (condition.getAsBoolean() && it.hasNext()) {
+            evicted.add(it.next().getValue());
+            it.remove();
+        }
+    }
+
+    private void notifyEvicted(List<ChatSession> evicted, EvictionReason reason) {
+        if (evicted.isEmpty()) {
+            return;
+        }
+        Counter.builder("chat.sessions.evicted")
+                .tag("reason", reason.name().toLowerCase(Locale.ROOT))
+                .register(meterRegistry)
+                .increment(evicted.size());
+        for (ChatSession session : evicted) {
+            for (Consumer<ChatSession> listener : evictionListeners) {
+                try {
+                    listener.accept(session);
+                } catch (RuntimeException e) {
+                    log.warn("Session eviction listener failed for {}: {}", session.id(), e.getMessage());
+                }
+            }
+        }
+        log.debug("Evicted {} session(s) ({})", evicted.size(), reason);
+    }
+}
@@ -0,0 +1,174 @@
+package org.pm.hamburgaiassistant.session;
+
+import dev.langchain4j.data.message.ChatMessage;
+import dev.langchain4j.data.message.SystemMessage;
+import dev.langchain4j.data.message.UserMessage;
+import dev.langchain4j.memory.ChatMemory;
+import dev.langchain4j.model.Tokenizer;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Chat memory that keeps the prompt under a token budget. Once over budget, the oldest whole turns
+ * (a user message and everything up to the next one) leave the window immediately and are folded into
+ * a rolling summary in the background; the summary is sent as a system message in front of the
+ * remaining turns. Turns evicted while a summary is still being written wait for the next one. The
+ * current turn is never compacted, so tool calls always stay next to their results.
+ */
+@Slf4j
+public class TokenBudgetChatMemory implements ChatMemory {
+
+    static final String SUMMARY_PREFIX = "Summary of the earlier conversation: ";
+
+    private final Object id;
+    private final Tokenizer tokenizer;
+    private final int maxTokens;
+    private final ConversationSummarizer summarizer;
+
+    // Guarded by this; token counts are cached per message so nothing is re-encoded
+    private final List<ChatMessage> messages = new ArrayList<>();
+    private final List<Integer> tokenCounts = new ArrayList<>();
+    private SystemMessage summary;
+    private int summaryTokens;
+    private boolean compacting;
+    // Evicted while a summary was running; folded into the next one
+    private final List<ChatMessage> unsummarized = new ArrayList<>();
+    // Bumped by clear(), so a summary of the conversation before it is dropped when it arrives
+    private long generation;
+
+    public TokenBudgetChatMemory(Object id, Tokenizer tokenizer, int maxTokens, ConversationSummarizer summarizer) {
+        this.id = id;
+        this.tokenizer = tokenizer;
+        this.maxTokens = maxTokens;
+        this.summarizer = summarizer;
+    }
+
+    @Override
+    public Object id() {
+        return id;
+    }
+
+    @Override
+    public synchronized void add(ChatMessage message) {
+        if (message instanceof SystemMessage) {
+            // Instructions are supplied per request; only the rolling summary is kept as a system message
+            return;
+        }
+        messages.add(message);
+        tokenCounts.add(tokenizer.estimateTokenCountInMessage(message));
+        if (tokenCount() > maxTokens) {
+            compact();
+        }
+    }
+
+    @Override
+    public synchronized List<ChatMessage> messages() {
+        List<ChatMessage> result = new ArrayList<>(messages.size() + 1);
+        if (summary != null) {
+            result.add(summary);
+        }
+        result.addAll(messages);
+        return result;
+    }
+
+    @Override
+    public synchronized void clear() {
+        messages.clear();
+        tokenCounts.clear();
+        summary = null;
+        summaryTokens = 0;
+        unsummarized.clear();
+        compacting = false;
+        generation++;
+    }
+
+    public synchronized int tokenCount() {
+        int total = summaryTokens;
+        for (int count : tokenCounts) {
+            total += count;
+        }
+        return total;
+    }
+
+    // Drops the oldest turns until the window is back at half the budget, then summarizes them off-thread
+    // unless a summary is already running
+    private void compact() {
+        int lastTurnStart = lastIndexOfUserMessage();
+        int target = maxTokens / 2;
+        int tokens = tokenCount();
+        int cut = 0;
+        while (tokens > target) {
+            int nextTurn = nextUserMessage(cut + 1);
+            if (nextTurn > lastTurnStart) {
+                break;
+            }
+            for (int i = cut; i < nextTurn; i++) {
+                tokens -= tokenCounts.get(i);
+            }
+            cut = nextTurn;
+        }
+        if (cut == 0) {
+            return;
+        }
+
+        List<ChatMessage> evicted = new ArrayList<>(messages.subList(0, cut));
+        messages.subList(0, cut).clear();
+        tokenCounts.subList(0, cut).clear();
+        if (compacting) {
+            unsummarized.addAll(evicted);
+            return;
+        }
+        summarize(evicted);
+    }
+
+    private void summarize(List<ChatMessage> evicted) {
+        compacting = true;
+        long started = generation;
+        String previous = summary != null ? summary.text().substring(SUMMARY_PREFIX.length()) : null;
+        summarizer.summarize(previous, evicted).whenComplete((text, error) -> {
+            if (error != null) {
+                log.warn("Summarizing memory {} failed, keeping an extractive summary: {}", id, error.getMessage());
+                text = ConversationSummarizer.extractiveSummary(previous, evicted);
+            }
+            onSummary(started, text);
+        });
+    }
+
+    private synchronized void onSummary(long started, String text) {
+        if (started != generation) {
+            log.debug("Dropping summary for memory {}, it was cleared meanwhile", id);
+            return;
+        }
+        summary = SystemMessage.from(SUMMARY_PREFIX + text);
+        summaryTokens = tokenizer.estimateTokenCountInMessage(summary);
+        compacting = false;
+        if (!unsummarized.isEmpty()) {
+            List<ChatMessage> evicted = new ArrayList<>(unsummarized);
+            unsummarized.clear();
+            summarize(evicted);
+        }
+        if (tokenCount() > maxTokens) {
+            compact();
+        }
+    }
+
+    private int lastIndexOfUserMessage() {
+        for (int i = messages.size() - 1; i >= 0; i--) {
+            if (messages.get(i) instanceof UserMessage) {
+                return i;
+            }
+        }
+        return 0;
+    }
+
+    private int nextUserMessage(int from) {
+        for (int i = from; i < messages.size(); i++) {
+            if (messages.get(i) instanceof UserMessage) {
+                return i;
+            }
+        }
+        return messages.size();
+    }
+}
@@ -0,0 +1,25 @@
+package org.pm.hamburgaiassistant.tools;
+
+import java.time.Instant;
+import java.util.List;
+
+/**
+ * Parsed first leg of a Directions API route. Rendering happens per call, so the same cached
+ * route can answer both a full directions request and a travel-time question.
+ */
+public record DirectionsRoute(
+        String mode,
+        String startAddress,
+        String endAddress,
+        String distance,
+        String duration,
+        List<Step> steps,
+        Instant fetchedAt
+) {
+
+    public record Step(String instruction, String distance, String duration, TransitLeg transit) {
+    }
+
+    public record TransitLeg(String vehicle, String line, String departureStop, String arrivalStop, int numStops) {
+    }
+}
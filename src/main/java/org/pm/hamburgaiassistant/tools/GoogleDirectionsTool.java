@@ -1,151 +1,114 @@
 package org.pm.hamburgaiassistant.tools;
 
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
 import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
 import com.google.gson.JsonObject;
 import com.google.gson.JsonParser;
 import dev.langchain4j.agent.tool.Tool;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
-import okhttp3.OkHttpClient;
 import okhttp3.Request;
 import okhttp3.Response;
+import org.pm.hamburgaiassistant.http.CircuitOpenException;
+import org.pm.hamburgaiassistant.http.Upstream;
+import org.pm.hamburgaiassistant.http.UpstreamHttpClients;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.net.URLEncoder;
 import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
 
 @Slf4j
 @Component
+@RequiredArgsConstructor
 public class GoogleDirectionsTool {
 
+    private static final int MAX_RENDERED_STEPS = 8; // Limit to 8 steps for readability
+    // Returned at once while the circuit is open, so the model can still give general advice
+    private static final String DIRECTIONS_UNAVAILABLE = "Sorry, live directions are unavailable right now. "
+            + "Give general advice (HVV U-Bahn/S-Bahn, walking) and mention that times could not be checked.";
+
     @Value("${google.places.api.key}")
     private String apiKey;
 
-    private final OkHttpClient client = new OkHttpClient();
+    @Value("${directions.cache.max-entries:5000}")
+    private long maxCacheEntries;
+
+    @Value("${directions.cache.static-ttl-hours:24}")
+    private long staticTtlHours;
+
+    @Value("${directions.cache.transit-bucket-minutes:15}")
+    private long transitBucketMinutes;
+
+    private final MeterRegistry meterRegistry;
+    private final UpstreamHttpClients httpClients;
+
+    private Cache<RouteKey, DirectionsRoute> cache;
+
+    @PostConstruct
+    void initCache() {
+        cache = Caffeine.newBuilder()
+                .maximumSize(maxCacheEntries)
+                .expireAfter(Expiry.<RouteKey, DirectionsRoute>creating((key, route) -> timeToLive(key)))
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, "directions");
+    }
 
     @Tool("""
         Get detailed directions and route information between two locations.
-        
+
         **When to use this tool:**
         - User asks how to get from one place to another
         - Questions about travel time or distance
         - Planning routes or transportation
         - Asking about public transit, walking, or driving directions
-        
+
         **Examples:**
         - "How do I get to the Elbphilharmonie from the train station?"
         - "What's the fastest way to the airport?"
         - "How long does it take to walk to Miniatur Wunderland?"
         - "Show me the route from my hotel to Reeperbahn"
-        
+
         **Parameters:**
         - origin: Starting location (address, landmark, or place name)
         - destination: End location (address, landmark, or place name)
         - mode: Transportation mode (transit/walking/driving/bicycling) - defaults to "transit"
-        
+
         **Returns:** Step-by-step directions with distance, duration, and transit details.
         For Hamburg, always recommend public transit (U-Bahn/S-Bahn) as it's excellent!
         """)
 
     public String getDirections(String origin, String destination, String mode) {
         try {
-            // Default to transit if not specified
-            if (mode == null || mode.isEmpty()) {
-                mode = "transit";
+            DirectionsRoute route = route(origin, destination, mode);
+            if (route == null) {
+                ToolOutcome.markDegraded();
+                return "No route found between " + origin + " and " + destination;
             }
-
-            String encodedOrigin = URLEncoder.encode(origin, StandardCharsets.UTF_8);
-            String encodedDestination = URLEncoder.encode(destination, StandardCharsets.UTF_8);
-
-            String url = String.format(
-                    "https://maps.googleapis.com/maps/api/directions/json?origin=%s&destination=%s&mode=%s&key=%s",
-                    encodedOrigin, encodedDestination, mode.toLowerCase(), apiKey
-            );
-
-            Request request = new Request.Builder()
-                    .url(url)
-                    .build();
-
-            try (Response response = client.newCall(request).execute()) {
-                if (!response.isSuccessful()) {
-                    log.error("Google Directions API call failed: {}", response.code());
-                    return "Sorry, I couldn't fetch directions.";
-                }
-
-                String responseBody = response.body().string();
-                JsonObject json = JsonParser.parseString(responseBody).getAsJsonObject();
-
-                if (!json.get("status").getAsString().equals("OK")) {
-                    return "No route found between " + origin + " and " + destination;
-                }
-
-                // Parse first route
-                JsonArray routes = json.getAsJsonArray("routes");
-                if (routes.isEmpty()) {
-                    return "No routes available.";
-                }
-
-                JsonObject route = routes.get(0).getAsJsonObject();
-                JsonArray legs = route.getAsJsonArray("legs");
-                JsonObject leg = legs.get(0).getAsJsonObject();
-
-                // Extract information
-                String distance = leg.getAsJsonObject("distance").get("text").getAsString();
-                String duration = leg.getAsJsonObject("duration").get("text").getAsString();
-                String startAddress = leg.get("start_address").getAsString();
-                String endAddress = leg.get("end_address").getAsString();
-
-                StringBuilder result = new StringBuilder();
-                result.append("**Directions from ").append(origin)
-                        .append(" to ").append(destination).append("**\n\n");
-                result.append("📍 **Start:** ").append(startAddress).append("\n");
-                result.append("📍 **End:** ").append(endAddress).append("\n");
-                result.append("📏 **Distance:** ").append(distance).append("\n");
-                result.append("⏱️ **Duration:** ").append(duration).append("\n");
-                result.append("🚌 **Mode:** ").append(mode.substring(0, 1).toUpperCase())
-                        .append(mode.substring(1)).append("\n\n");
-
-                // Parse steps
-                JsonArray steps = leg.getAsJsonArray("steps");
-                result.append("**Route Steps:**\n");
-
-                int stepCount = Math.min(steps.size(), 8); // Limit to 8 steps for readability
-                for (int i = 0; i < stepCount; i++) {
-                    JsonObject step = steps.get(i).getAsJsonObject();
-                    String instruction = step.get("html_instructions").getAsString()
-                            .replaceAll("<[^>]*>", ""); // Remove HTML tags
-                    String stepDistance = step.getAsJsonObject("distance").get("text").getAsString();
-                    String stepDuration = step.getAsJsonObject("duration").get("text").getAsString();
-
-                    result.append(i + 1).append(". ").append(instruction)
-                            .append(" (").append(stepDistance).append(", ")
-                            .append(stepDuration).append(")\n");
-
-                    // Add transit details if available
-                    if (step.has("transit_details")) {
-                        JsonObject transit = step.getAsJsonObject("transit_details");
-                        JsonObject line = transit.getAsJsonObject("line");
-                        String lineName = line.get("short_name").getAsString();
-                        String vehicle = line.getAsJsonObject("vehicle").get("name").getAsString();
-                        String departure = transit.getAsJsonObject("departure_stop").get("name").getAsString();
-                        String arrival = transit.getAsJsonObject("arrival_stop").get("name").getAsString();
-                        int numStops = transit.get("num_stops").getAsInt();
-
-                        result.append("   🚇 Take ").append(vehicle).append(" ")
-                                .append(lineName).append(" from ").append(departure)
-                                .append(" to ").append(arrival)
-                                .append(" (").append(numStops).append(" stops)\n");
-                    }
-                }
-
-                if (steps.size() > stepCount) {
-                    result.append("... and ").append(steps.size() - stepCount)
-                            .append(" more steps\n");
-                }
-
-                return result.toString();
+            return render(origin, destination, route);
+        } catch (UncheckedIOException e) {
+            ToolOutcome.markDegraded();
+            if (e.getCause() instanceof CircuitOpenException) {
+                return DIRECTIONS_UNAVAILABLE;
             }
+            log.error("Google Directions API call failed: {}", e.getCause().getMessage());
+            return "Sorry, I couldn't fetch directions.";
         } catch (Exception e) {
+            ToolOutcome.markDegraded();
             log.error("Error fetching directions", e);
             return "Error fetching directions: " + e.getMessage();
         }
@@ -153,8 +116,197 @@ public class GoogleDirectionsTool {
 
     @Tool("Get travel time between two locations")
     public String getTravelTime(String origin, String destination) {
-        String directions = getDirections(origin, destination, "transit");
-        // Extract just the duration from the full directions
-        return directions;
+        try {
+            DirectionsRoute route = route(origin, destination, "transit");
+            if (route == null) {
+                ToolOutcome.markDegraded();
+                return "No route found between " + origin + " and " + destination;
+            }
+            // Answered from the route summary; no need to render the step list
+            return "Travel time from " + origin + " to " + destination + " by public transit: "
+                    + route.duration() + " (" + route.distance() + ")";
+        } catch (UncheckedIOException e) {
+            ToolOutcome.markDegraded();
+            if (e.getCause() instanceof CircuitOpenException) {
+                return DIRECTIONS_UNAVAILABLE;
+            }
+            log.error("Google Directions API call failed: {}", e.getCause().getMessage());
+            return "Sorry, I couldn't fetch directions.";
+        } catch (Exception e) {
+            ToolOutcome.markDegraded();
+            log.error("Error fetching directions", e);
+            return "Error fetching directions: " + e.getMessage();
+        }
+    }
+
+    /**
+     * Cached route lookup; returns null when Google has no route (those answers are not cached).
+     */
+    private DirectionsRoute route(String origin, String destination, String mode) {
+        String travelMode = normalizeMode(mode);
+        RouteKey key = new RouteKey(LandmarkAliases.key(origin), LandmarkAliases.key(destination),
+                travelMode, transitBucket(travelMode));
+        try {
+            return cache.get(key, k -> fetchRoute(LandmarkAliases.resolve(origin),
+                    LandmarkAliases.resolve(destination), travelMode));
+        } catch (NoRouteException e) {
+            return null;
+        }
+    }
+
+    private DirectionsRoute fetchRoute(String origin, String destination, String mode) {
+        String encodedOrigin = URLEncoder.encode(origin, StandardCharsets.UTF_8);
+        String encodedDestination = URLEncoder.encode(destination, StandardCharsets.UTF_8);
+
+        String url = String.format(
+                "https://maps.googleapis.com/maps/api/directions/json?origin=%s&destination=%s&mode=%s&key=%s",
+                encodedOrigin, encodedDestination, mode, apiKey
+        );
+
+        Request request = new Request.Builder()
+                .url(url)
+                .build();
+
+        try (Response response = httpClients.execute(Upstream.DIRECTIONS, request)) {
+            if (!response.isSuccessful()) {
+                throw new IOException("HTTP " + response.code());
+            }
+
+            String responseBody = response.body().string();
+            return parseRoute(JsonParser.parseString(responseBody).getAsJsonObject(), mode);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    static DirectionsRoute parseRoute(JsonObject json, String mode) {
+        if (!json.get("status").getAsString().equals("OK")) {
+            throw new NoRouteException();
+        }
+
+        // Parse first route
+        JsonArray routes = json.getAsJsonArray("routes");
+        if (routes.isEmpty()) {
+            throw new NoRouteException();
+        }
+
+        JsonObject route = routes.get(0).getAsJsonObject();
+        JsonArray legs = route.getAsJsonArray("legs");
+        JsonObject leg = legs.get(0).getAsJsonObject();
+
+        List<DirectionsRoute.Step> steps = new ArrayList<>();
+        for (JsonElement element : leg.getAsJsonArray("steps")) {
+            JsonObject step = element.getAsJsonObject();
+            String instruction = step.get("html_instructions").getAsString()
+                    .replaceAll("<[^>]*>", ""); // Remove HTML tags
+
+            DirectionsRoute.TransitLeg transitLeg = null;
+            if (step.has("transit_details")) {
+                JsonObject transit = step.getAsJsonObject("transit_details");
+                JsonObject line = transit.getAsJsonObject("line");
+                transitLeg = new DirectionsRoute.TransitLeg(
+                        line.getAsJsonObject("vehicle").get("name").getAsString(),
+                        line.get("short_name").getAsString(),
+                        transit.getAsJsonObject("departure_stop").get("name").getAsString(),
+                        transit.getAsJsonObject("arrival_stop").get("name").getAsString(),
+                        transit.get("num_stops").getAsInt());
+            }
+
+            steps.add(new DirectionsRoute.Step(instruction,
+                    step.getAsJsonObject("distance").get("text").getAsString(),
+                    step.getAsJsonObject("duration").get("text").getAsString(),
+                    transitLeg));
+        }
+
+        return new DirectionsRoute(
+                mode,
+                leg.get("start_address").getAsString(),
+                leg.get("end_address").getAsString(),
+                leg.getAsJsonObject("distance").get("text").getAsString(),
+                leg.getAsJsonObject("duration").get("text").getAsString(),
+                List.copyOf(steps),
+                Instant.now());
+    }
+
+    private static String render(String origin, String destination, DirectionsRoute route) {
+        String mode = route.mode();
+
+        StringBuilder result = new StringBuilder();
+        result.append("**Directions from ").append(origin)
+                .append(" to ").append(destination).append("**\n\n");
+        result.append("📍 **Start:** ").append(route.startAddress()).append("\n");
+        result.append("📍 **End:** ").append(route.endAddress()).append("\n");
+        result.append("📏 **Distance:** ").append(route.distance()).append("\n");
+        result.append("⏱️ **Duration:** ").append(route.duration()).append("\n");
+        result.append("🚌 **Mode:** ").append(mode.substring(0, 1).toUpperCase())
+                .append(mode.substring(1)).append("\n\n");
+
+        List<DirectionsRoute.Step> steps = route.steps();
+        result.append("**Route Steps:**\n");
+
+        int stepCount = Math.min(steps.size(), MAX_RENDERED_STEPS);
+        for (int i = 0; i < stepCount; i++) {
+            DirectionsRoute.Step step = steps.get(i);
+
+            result.append(i + 1).append(". ").append(step.instruction())
+                    .append(" (").append(step.distance()).append(", ")
+                    .append(step.duration()).append(")\n");
+
+            // Add transit details if available
+            DirectionsRoute.TransitLeg transit = step.transit();
+            if (transit != null) {
+                result.append("   🚇 Take ").append(transit.vehicle()).append(" ")
+                        .append(transit.line()).append(" from ").append(transit.departureStop())
+                        .append(" to ").append(transit.arrivalStop())
+                        .append(" (").append(transit.numStops()).append(" stops)\n");
+            }
+        }
+
+        if (steps.size() > stepCount) {
+            result.append("... and ").append(steps.size() - stepCount)
+                    .append(" more steps\n");
+        }
+
+        return result.toString();
+    }
+
+    public static String normalizeMode(String mode) {
+        // Default to transit if not specified
+        if (mode == null || mode.isBlank()) {
+            return "transit";
+        }
+        return switch (mode.trim().toLowerCase(Locale.ROOT)) {
+            case "walking", "walk", "on foot", "foot" -> "walking";
+            case "driving", "drive", "car", "taxi" -> "driving";
+            case "bicycling", "bicycle", "cycling", "bike" -> "bicycling";
+            default -> "transit";
+        };
+    }
+
+    // Transit answers depend on the timetable, so they are only shared within one departure window
+    private long transitBucket(String mode) {
+        if (!mode.equals("transit")) {
+            return 0;
+        }
+        return Instant.now().getEpochSecond() / Duration.ofMinutes(transitBucketMinutes).toSeconds();
+    }
+
+    // Walking, driving and cycling routes barely change; transit entries die with their departure window
+    private Duration timeToLive(RouteKey key) {
+        if (!key.mode().equals("transit")) {
+            return Duration.ofHours(staticTtlHours);
+        }
+        long bucketSeconds = Duration.ofMinutes(transitBucketMinutes).toSeconds();
+        Instant bucketEnd = Instant.ofEpochSecond((key.bucket() + 1) * bucketSeconds);
+        return Duration.between(Instant.now(), bucketEnd);
+    }
+
+    private record RouteKey(String origin, String destination, String mode, long bucket) {
+    }
+
+    private static class NoRouteException extends RuntimeException {
+        NoRouteException() {
+            super(null, null, false, false);
+        }
     }
-}
\ No newline at end of file
+}
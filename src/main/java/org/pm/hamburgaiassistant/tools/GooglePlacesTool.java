@@ -1,34 +1,98 @@
 package org.pm.hamburgaiassistant.tools;
 
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import com.google.gson.Gson;
 import com.google.gson.JsonArray;
 import com.google.gson.JsonObject;
 import com.google.gson.JsonParser;
+import com.google.gson.reflect.TypeToken;
 import dev.langchain4j.agent.tool.Tool;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
-import okhttp3.OkHttpClient;
 import okhttp3.Request;
 import okhttp3.Response;
+import org.pm.hamburgaiassistant.geo.Nearby;
+import org.pm.hamburgaiassistant.geo.Poi;
+import org.pm.hamburgaiassistant.geo.PoiIndex;
+import org.pm.hamburgaiassistant.http.CircuitOpenException;
+import org.pm.hamburgaiassistant.http.Upstream;
+import org.pm.hamburgaiassistant.http.UpstreamHttpClients;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Component;
 
+import java.io.IOException;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.io.Writer;
 import java.net.URLEncoder;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 @Slf4j
 @Component
+@RequiredArgsConstructor
 public class GooglePlacesTool {
 
+    // Opening status goes stale much faster than the rest of a place record
+    private static final Duration OPEN_STATUS_MAX_AGE = Duration.ofMinutes(15);
+
     @Value("${google.places.api.key}")
     private String apiKey;
 
     @Value("${google.places.api.url}")
     private String apiUrl;
 
-    private final OkHttpClient client = new OkHttpClient();
+    @Value("${places.cache.max-entries:10000}")
+    private long maxCacheEntries;
+
+    @Value("${places.cache.ttl-hours:24}")
+    private long cacheTtlHours;
+
+    @Value("${places.cache.snapshot-file:}")
+    private String snapshotFile;
+
+    private final MeterRegistry meterRegistry;
+    private final UpstreamHttpClients httpClients;
+    private final PoiIndex poiIndex;
+    private final Gson gson = new Gson();
+
+    private Cache<String, PlaceSearch> cache;
+    private final AtomicBoolean dirty = new AtomicBoolean();
+
+    @PostConstruct
+    void initCache() {
+        Duration ttl = Duration.ofHours(cacheTtlHours);
+        cache = Caffeine.newBuilder()
+                .maximumSize(maxCacheEntries)
+                // Age is measured from the original fetch so restored snapshot entries keep their expiry
+                .expireAfter(Expiry.<String, PlaceSearch>creating((key, search) ->
+                        ttl.minus(Duration.between(search.fetchedAt(), Instant.now()))))
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, "places");
+        loadSnapshot();
+    }
 
     @Tool("""
             Search for places, businesses, and points of interest in any city.
-            
+
             **When to use this tool:**
             - User asks for restaurant recommendations
             - Looking for hotels or accommodations
@@ -36,90 +100,50 @@ public class GooglePlacesTool {
             - Searching for cafes, bars, or nightlife
             - Looking for shops, services, or specific businesses
             - Finding parks, theaters, or entertainment venues
-            
+
             **Examples:**
             - "Where can I eat traditional German food?"
             - "Best hotels near the harbor"
             - "Coffee shops with WiFi in Hamburg"
             - "Museums in the city center"
             - "Vegetarian restaurants with outdoor seating"
-            
+
             **Parameters:**
             - query: What type of place (e.g., "Italian restaurants", "hotels", "museums")
             - location: City or area (e.g., "Hamburg", "Hamburg Speicherstadt")
-            
+
             **Returns:** Top 5 places with names, addresses, ratings, and opening status.
             Always provide diverse options when possible!
             """)
     public String searchPlaces(String query, String location) {
+        String searchQuery = query + " in " + location;
         try {
-            String searchQuery = query + " in " + location;
-            String encodedQuery = URLEncoder.encode(searchQuery, StandardCharsets.UTF_8);
-
-            String url = String.format("%s/textsearch/json?query=%s&key=%s",
-                    apiUrl, encodedQuery, apiKey);
-
-            Request request = new Request.Builder()
-                    .url(url)
-                    .build();
-
-            try (Response response = client.newCall(request).execute()) {
-                if (!response.isSuccessful()) {
-                    log.error("Google Places API call failed: {}", response.code());
-                    return "Sorry, I couldn't fetch places data.";
-                }
-
-                String responseBody = response.body().string();
-                JsonObject json = JsonParser.parseString(responseBody).getAsJsonObject();
-
-                if (!json.has("results") || json.getAsJsonArray("results").isEmpty()) {
-                    return "No places found for: " + searchQuery;
-                }
-
-                JsonArray results = json.getAsJsonArray("results");
-                StringBuilder resultText = new StringBuilder();
-                resultText.append("Found ").append(Math.min(results.size(), 5))
-                        .append(" places for '").append(searchQuery).append("':\n\n");
-
-                for (int i = 0; i < Math.min(5, results.size()); i++) {
-                    JsonObject place = results.get(i).getAsJsonObject();
-
-                    String name = place.get("name").getAsString();
-                    String address = place.has("formatted_address")
-                            ? place.get("formatted_address").getAsString()
-                            : "Address not available";
-
-                    double rating = place.has("rating")
-                            ? place.get("rating").getAsDouble()
-                            : 0.0;
-
-                    int userRatingsTotal = place.has("user_ratings_total")
-                            ? place.get("user_ratings_total").getAsInt()
-                            : 0;
-
-                    resultText.append(i + 1).append(". **").append(name).append("**\n");
-                    resultText.append("   - Address: ").append(address).append("\n");
-
-                    if (rating > 0) {
-                        resultText.append("   - Rating: ").append(rating)
-                                .append("/5 (").append(userRatingsTotal).append(" reviews)\n");
-                    }
-
-                    if (place.has("opening_hours")) {
-                        JsonObject openingHours = place.getAsJsonObject("opening_hours");
-                        boolean openNow = openingHours.has("open_now")
-                                && openingHours.get("open_now").getAsBoolean();
-                        resultText.append("   - Status: ")
-                                .append(openNow ? "Open now" : "Closed now")
-                                .append("\n");
-                    }
-
-                    resultText.append("\n");
+            String key = cacheKey(query, location);
+            PlaceSearch search = cache.getIfPresent(key);
+            if (search == null) {
+                // Plain "cafes near the Alster" questions can be answered from places already known
+                Optional<List<Nearby>> nearby = poiIndex.near(query, location);
+                if (nearby.isPresent()) {
+                    return formatNearby(searchQuery, nearby.get());
                 }
+                search = cache.get(key, k -> fetchPlaces(query, searchQuery));
+            }
 
-                return resultText.toString();
+            if (search.places().isEmpty()) {
+                ToolOutcome.markDegraded();
+                return "No places found for: " + searchQuery;
+            }
+            return format(searchQuery, search);
+        } catch (UncheckedIOException e) {
+            ToolOutcome.markDegraded();
+            if (e.getCause() instanceof CircuitOpenException) {
+                return "Sorry, live place search is unavailable right now. Recommend well-known places instead "
+                        + "and mention that ratings and opening hours could not be checked.";
             }
+            log.error("Google Places API call failed: {}", e.getCause().getMessage());
+            return "Sorry, I couldn't fetch places data.";
         } catch (Exception e) {
+            ToolOutcome.markDegraded();
             log.error("Error fetching places", e);
             return "Error fetching places: " + e.getMessage();
         }
@@ -132,4 +156,211 @@ public class GooglePlacesTool {
     public String getPlaceDetails(String placeName, String location) {
         return searchPlaces(placeName, location);
     }
-}
\ No newline at end of file
+
+    private PlaceSearch fetchPlaces(String query, String searchQuery) {
+        String encodedQuery = URLEncoder.encode(searchQuery, StandardCharsets.UTF_8);
+
+        String url = String.format("%s/textsearch/json?query=%s&key=%s",
+                apiUrl, encodedQuery, apiKey);
+
+        Request request = new Request.Builder()
+                .url(url)
+                .build();
+
+        try (Response response = httpClients.execute(Upstream.PLACES, request)) {
+            if (!response.isSuccessful()) {
+                throw new IOException("HTTP " + response.code());
+            }
+
+            List<PlaceResult> places = parsePlaces(response.body().string());
+            Instant fetchedAt = Instant.now();
+            poiIndex.record(query, places, fetchedAt);
+            dirty.set(true);
+            return new PlaceSearch(places, fetchedAt);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    // The first five results of a Text Search response
+    static List<PlaceResult> parsePlaces(String responseBody) {
+        JsonObject json = JsonParser.parseString(responseBody).getAsJsonObject();
+        List<PlaceResult> places = new ArrayList<>();
+        if (json.has("results")) {
+            JsonArray results = json.getAsJsonArray("results");
+            for (int i = 0; i < Math.min(5, results.size()); i++) {
+                places.add(parsePlace(results.get(i).getAsJsonObject()));
+            }
+        }
+        return List.copyOf(places);
+    }
+
+    private static PlaceResult parsePlace(JsonObject place) {
+        String address = place.has("formatted_address")
+                ? place.get("formatted_address").getAsString()
+                : null;
+
+        Double rating = place.has("rating") ? place.get("rating").getAsDouble() : null;
+        Integer userRatingsTotal = place.has("user_ratings_total")
+                ? place.get("user_ratings_total").getAsInt()
+                : null;
+
+        Boolean openNow = null;
+        if (place.has("opening_hours")) {
+            JsonObject openingHours = place.getAsJsonObject("opening_hours");
+            openNow = openingHours.has("open_now") && openingHours.get("open_now").getAsBoolean();
+        }
+
+        Double lat = null;
+        Double lng = null;
+        if (place.has("geometry") && place.getAsJsonObject("geometry").has("location")) {
+            JsonObject point = place.getAsJsonObject("geometry").getAsJsonObject("location");
+            lat = point.get("lat").getAsDouble();
+            lng = point.get("lng").getAsDouble();
+        }
+
+        String placeId = place.has("place_id") ? place.get("place_id").getAsString() : null;
+
+        return new PlaceResult(placeId, place.get("name").getAsString(), address,
+                rating, userRatingsTotal, openNow, lat, lng);
+    }
+
+    private static String format(String searchQuery, PlaceSearch search) {
+        List<PlaceResult> places = search.places();
+        boolean openStatusFresh = Duration.between(search.fetchedAt(), Instant.now())
+                .compareTo(OPEN_STATUS_MAX_AGE) < 0;
+
+        StringBuilder resultText = new StringBuilder();
+        resultText.append("Found ").append(places.size())
+                .append(" places for '").append(searchQuery).append("':\n\n");
+
+        for (int i = 0; i < places.size(); i++) {
+            PlaceResult place = places.get(i);
+
+            resultText.append(i + 1).append(". **").append(place.name()).append("**\n");
+            resultText.append("   - Address: ")
+                    .append(place.address() != null ? place.address() : "Address not available")
+                    .append("\n");
+
+            if (place.rating() != null && place.rating() > 0) {
+                resultText.append("   - Rating: ").append(place.rating())
+                        .append("/5 (").append(place.userRatingsTotal() != null ? place.userRatingsTotal() : 0)
+                        .append(" reviews)\n");
+            }
+
+            if (place.openNow() != null && openStatusFresh) {
+                resultText.append("   - Status: ")
+                        .append(place.openNow() ? "Open now" : "Closed now")
+                        .append("\n");
+            }
+
+            resultText.append("\n");
+        }
+
+        return resultText.toString();
+    }
+
+    private static String formatNearby(String searchQuery, List<Nearby> places) {
+        StringBuilder resultText = new StringBuilder();
+        resultText.append("Found ").append(places.size())
+                .append(" places for '").append(searchQuery).append("' (nearest first):\n\n");
+
+        for (int i = 0; i < places.size(); i++) {
+            Poi place = places.get(i).poi();
+
+            resultText.append(i + 1).append(". **").append(place.name()).append("**\n");
+            if (place.address() != null) {
+                resultText.append("   - Address: ").append(place.address()).append("\n");
+            }
+            resultText.append("   - Distance: ").append(distance(places.get(i).distanceMeters())).append("\n");
+            if (place.rating() != null && place.rating() > 0) {
+                resultText.append("   - Rating: ").append(place.rating())
+                        .append("/5 (").append(place.userRatingsTotal() != null ? place.userRatingsTotal() : 0)
+                        .append(" reviews)\n");
+            }
+
+            resultText.append("\n");
+        }
+
+        return resultText.toString();
+    }
+
+    private static String distance(double meters) {
+        return meters < 1000
+                ? Math.round(meters / 10) * 10 + " m"
+                : String.format(Locale.ROOT, "%.1f km", meters / 1000);
+    }
+
+    static String cacheKey(String query, String location) {
+        return normalize(query) + "|" + normalize(location);
+    }
+
+    private static String normalize(String text) {
+        return text == null ? "" : text.trim().toLowerCase(Locale.ROOT).replaceAll("\\s+", " ");
+    }
+
+    @Scheduled(fixedDelayString = "${places.cache.snapshot-interval-ms:300000}",
+            initialDelayString = "${places.cache.snapshot-interval-ms:300000}")
+    void snapshotPeriodically() {
+        if (dirty.getAndSet(false)) {
+            writeSnapshot();
+        }
+    }
+
+    @PreDestroy
+    void snapshotOnShutdown() {
+        writeSnapshot();
+    }
+
+    private void writeSnapshot() {
+        if (snapshotFile.isBlank()) {
+            return;
+        }
+        List<SnapshotEntry> entries = new ArrayList<>();
+        for (Map.Entry<String, PlaceSearch> entry : cache.asMap().entrySet()) {
+            PlaceSearch search = entry.getValue();
+            entries.add(new SnapshotEntry(entry.getKey(), search.fetchedAt().toEpochMilli(), search.places()));
+        }
+
+        Path target = Path.of(snapshotFile);
+        try {
+            Path dir = target.toAbsolutePath().getParent();
+            Files.createDirectories(dir);
+            // Write next to the target and rename, so a crash mid-write never leaves a truncated snapshot
+            Path tmp = Files.createTempFile(dir, "places-cache", ".tmp");
+            try (Writer writer = Files.newBufferedWriter(tmp, StandardCharsets.UTF_8)) {
+                gson.toJson(entries, writer);
+            }
+            Files.move(tmp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            log.info("Wrote {} cached place searches to {}", entries.size(), target);
+        } catch (IOException e) {
+            log.warn("Could not write places cache snapshot to {}: {}", target, e.getMessage());
+        }
+    }
+
+    private void loadSnapshot() {
+        if (snapshotFile.isBlank() || !Files.exists(Path.of(snapshotFile))) {
+            return;
+        }
+        try (Reader reader = Files.newBufferedReader(Path.of(snapshotFile), StandardCharsets.UTF_8)) {
+            List<SnapshotEntry> entries = gson.fromJson(reader, new TypeToken<List<SnapshotEntry>>() {}.getType());
+            if (entries == null) {
+                return;
+            }
+            for (SnapshotEntry entry : entries) {
+                Instant fetchedAt = Instant.ofEpochMilli(entry.fetchedAtMillis());
+                cache.put(entry.key(), new PlaceSearch(entry.places(), fetchedAt));
+                poiIndex.record(entry.key().substring(0, entry.key().indexOf('|')), entry.places(), fetchedAt);
+            }
+            log.info("Restored {} cached place searches from {}", cache.estimatedSize(), snapshotFile);
+        } catch (Exception e) {
+            log.warn("Ignoring unreadable places cache snapshot {}: {}", snapshotFile, e.getMessage());
+        }
+    }
+
+    record PlaceSearch(List<PlaceResult> places, Instant fetchedAt) {
+    }
+
+    private record SnapshotEntry(String key, long fetchedAtMillis, List<PlaceResult> places) {
+    }
+}
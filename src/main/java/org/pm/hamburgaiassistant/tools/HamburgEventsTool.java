@@ -3,67 +3,190 @@ package org.pm.hamburgaiassistant.tools;
 import dev.langchain4j.agent.tool.Tool;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.pm.hamburgaiassistant.events.Event;
+import org.pm.hamburgaiassistant.events.EventCatalog;
 import org.springframework.stereotype.Component;
 
+import java.time.DayOfWeek;
 import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
 import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
 
 @Slf4j
 @Component
 @RequiredArgsConstructor
 public class HamburgEventsTool {
 
+    private static final int MAX_EVENTS = 10;
+    private static final DateTimeFormatter WHEN_FORMAT = DateTimeFormatter.ofPattern("EEE d MMM, HH:mm", Locale.ENGLISH);
+
+    // Returned when the catalog has nothing for the question
+    private static final String FESTIVALS = """
+            **Popular Hamburg Events & Festivals:**
+            - **Hamburg DOM** - One of Europe's largest funfairs (held 3 times per year)
+            - **Hafengeburtstag (Port Anniversary)** - May - Massive harbor celebration
+            - **Reeperbahn Festival** - September - Music and arts festival
+            - **Christmas Markets** - November-December - Traditional German markets
+            - **Alstervergnügen** - Late summer - Festival around the Alster lake
+            - **Long Night of Museums** - Twice yearly - Museums open late with special programs
+
+            💡 **Tip:** For real-time event listings, check:
+            - hamburg.com/events
+            - Eventbrite Hamburg
+            - Local venue websites
+            """;
+
+    // What visitors ask for, mapped onto the (Eventbrite) category names the catalog is indexed by
+    private static final Map<String, String> CATEGORY_SYNONYMS = Map.ofEntries(
+            Map.entry("concert", "music"), Map.entry("gig", "music"), Map.entry("konzert", "music"),
+            Map.entry("theater", "performing visual arts"), Map.entry("theatre", "performing visual arts"),
+            Map.entry("musical", "performing visual arts"), Map.entry("show", "performing visual arts"),
+            Map.entry("comedy", "performing visual arts"), Map.entry("exhibition", "performing visual arts"),
+            Map.entry("food", "food drink"), Map.entry("film", "film media entertainment"),
+            Map.entry("cinema", "film media entertainment"), Map.entry("sport", "sports fitness"),
+            Map.entry("christmas", "seasonal holiday"), Map.entry("family", "family education"));
+
+    private final EventCatalog eventCatalog;
+    // Answers with event venues while no event source is configured
     private final GooglePlacesTool googlePlacesTool;
 
+    record DateRange(LocalDateTime from, LocalDateTime to, String label) {
+    }
+
+    @Tool("""
+        Find events happening in Hamburg in a given period: concerts, theater, festivals, exhibitions and more.
 
+        **When to use this tool:**
+        - User asks what's on today, tonight, tomorrow, this weekend or next week
+        - Looking for events, concerts, or shows on specific dates
+        - User asks what's on at a particular venue
 
-    public String findHamburgEvents(String eventType) {
-        // Use Google Places to find event venues
-        String query = eventType + " events venues";
-        String placesResult = googlePlacesTool.searchPlaces(query, "Hamburg");
+        **Parameters:**
+        - when: "today", "tonight", "tomorrow", "this weekend", "next week" or a date like "2025-06-14"
+        - category: Type of event (e.g., "concerts", "theater", "food"), or empty for everything
+        - venue: Venue name (e.g., "Elbphilharmonie", "Molotow"), or empty for anywhere
 
-        LocalDate today = LocalDate.now();
-        String formattedDate = today.format(DateTimeFormatter.ofPattern("MMMM dd, yyyy"));
+        **Returns:** Upcoming events with date, time and venue, or event venues and Hamburg's major festivals
+        when none are listed.
+        """)
+    public String findHamburgEvents(String when, String category, String venue) {
+        LocalDateTime now = eventCatalog.now();
+        DateRange range = parseWhen(when, now);
+        if (eventCatalog.isEmpty()) {
+            return venues(category);
+        }
 
-        StringBuilder result = new StringBuilder();
-        result.append("Hamburg Events & Venues (as of ").append(formattedDate).append("):\n\n");
-        result.append(placesResult).append("\n\n");
-        result.append("**Popular Hamburg Events & Festivals:**\n");
-        result.append("- **Hamburg DOM** - One of Europe's largest funfairs (held 3 times per year)\n");
-        result.append("- **Hafengeburtstag (Port Anniversary)** - May - Massive harbor celebration\n");
-        result.append("- **Reeperbahn Festival** - September - Music and arts festival\n");
-        result.append("- **Christmas Markets** - November-December - Traditional German markets\n");
-        result.append("- **Alstervergnügen** - Late summer - Festival around the Alster lake\n");
-        result.append("- **Long Night of Museums** - Twice yearly - Museums open late with special programs\n\n");
-        result.append("💡 **Tip:** For real-time event listings, check:\n");
-        result.append("- hamburg.com/events\n");
-        result.append("- Eventbrite Hamburg\n");
-        result.append("- Local venue websites\n");
+        String wanted = category == null || category.isBlank() ? null : LandmarkAliases.normalize(category);
+        String indexed = wanted != null ? resolveCategory(wanted) : null;
+        String place = venue == null || venue.isBlank() ? null : venue.trim();
+        List<Event> events;
+        if (wanted == null || indexed != null) {
+            events = eventCatalog.find(range.from(), range.to(), indexed, place, MAX_EVENTS);
+        } else {
+            // Not a category the catalog knows: match on names instead
+            String stem = singular(wanted);
+            events = eventCatalog.find(range.from(), range.to(), null, place, Integer.MAX_VALUE).stream()
+                    .filter(event -> LandmarkAliases.normalize(event.name()).contains(stem))
+                    .limit(MAX_EVENTS)
+                    .toList();
+        }
 
+        String subject = (wanted != null ? category.trim() : "events") + (place != null ? " at " + place : "");
+        if (events.isEmpty()) {
+            ToolOutcome.markDegraded();
+            return "No listed " + subject + " in Hamburg " + range.label() + ".\n\n" + FESTIVALS;
+        }
+        StringBuilder result = new StringBuilder("Hamburg " + subject + " " + range.label() + ":\n\n");
+        for (Event event : events) {
+            result.append("- ").append(WHEN_FORMAT.format(event.start())).append(" - **")
+                    .append(event.name()).append("**");
+            if (event.venue() != null) {
+                result.append(" at ").append(event.venue());
+            }
+            if (event.category() != null) {
+                result.append(" (").append(event.category()).append(")");
+            }
+            result.append("\n");
+        }
         return result.toString();
     }
 
+    // Without listings the answer is a stand-in, whatever the places search makes of it
+    private String venues(String category) {
+        ToolOutcome.markDegraded();
+        String eventType = category == null || category.isBlank() ? "" : category.trim() + " ";
+        String places = googlePlacesTool.searchPlaces(eventType + "events venues", "Hamburg");
+        return "No event listings are available, these Hamburg venues host " + eventType + "events:\n\n"
+                + places + "\n\n" + FESTIVALS;
+    }
+
+    /**
+     * Turns the model's "when" into a range of local times. Anything unrecognised means the next seven days.
+     */
+    static DateRange parseWhen(String when, LocalDateTime now) {
+        String normalized = LandmarkAliases.normalize(when);
+        LocalDate today = now.toLocalDate();
+        if (normalized.contains("tonight") || normalized.contains("heute abend")) {
+            return new DateRange(max(now, today.atTime(17, 0)), today.plusDays(1).atTime(4, 0), "tonight");
+        }
+        if (normalized.contains("today") || normalized.equals("heute")) {
+            return new DateRange(now, today.atTime(LocalTime.MAX), "today");
+        }
+        if (normalized.contains("tomorrow") || normalized.equals("morgen")) {
+            LocalDate tomorrow = today.plusDays(1);
+            return new DateRange(tomorrow.atStartOfDay(), tomorrow.atTime(LocalTime.MAX), "tomorrow");
+        }
+        if (normalized.contains("weekend") || normalized.contains("wochenende")) {
+            DayOfWeek day = today.getDayOfWeek();
+            LocalDate sunday = today.plusDays(DayOfWeek.SUNDAY.getValue() - day.getValue());
+            // On Saturday and Sunday the weekend is already under way; before that it starts Friday evening
+            LocalDateTime from = day == DayOfWeek.SATURDAY || day == DayOfWeek.SUNDAY ? now
+                    : max(now, today.plusDays(DayOfWeek.FRIDAY.getValue() - day.getValue()).atTime(17, 0));
+            return new DateRange(from, sunday.atTime(LocalTime.MAX), "this weekend");
+        }
+        if (normalized.contains("next week") || normalized.contains("naechste woche")) {
+            // The coming Monday to Sunday, also when asked on a Sunday
+            LocalDate monday = today.plusDays(8 - today.getDayOfWeek().getValue());
+            return new DateRange(monday.atStartOfDay(), monday.plusDays(6).atTime(LocalTime.MAX), "next week");
+        }
+        try {
+            LocalDate date = LocalDate.parse(when == null ? "" : when.trim());
+            return new DateRange(date.atStartOfDay(), date.atTime(LocalTime.MAX), "on " + date);
+        } catch (DateTimeParseException e) {
+            return new DateRange(now, today.plusDays(7).atTime(LocalTime.MAX), "in the next 7 days");
+        }
+    }
+
+    private String resolveCategory(String wanted) {
+        if (eventCatalog.categories().contains(wanted)) {
+            return wanted;
+        }
+        String synonym = CATEGORY_SYNONYMS.get(singular(wanted.split(" ")[0]));
+        return synonym != null && eventCatalog.categories().contains(synonym) ? synonym : null;
+    }
+
+    private static String singular(String word) {
+        return word.length() > 3 && word.endsWith("s") ? word.substring(0, word.length() - 1) : word;
+    }
+
+    private static LocalDateTime max(LocalDateTime a, LocalDateTime b) {
+        return a.isAfter(b) ? a : b;
+    }
+
     @Tool("""
-        Find Hamburg-specific events, festivals, cultural activities, and entertainment.
-        
+        List Hamburg's major venues and cultural centers: concert halls, theaters, museums and event spaces.
+
         **When to use this tool:**
-        - User asks what to do in Hamburg
-        - Looking for events, concerts, or shows
-        - Asking about festivals or seasonal activities
-        - Questions about Hamburg's cultural scene
-        - Looking for entertainment or nightlife
-        
-        **Examples:**
-        - "What events are happening this weekend?"
-        - "Any concerts coming up?"
-        - "What festivals does Hamburg have?"
-        - "Things to do at night in Hamburg"
-        - "Cultural activities in Hamburg"
-        
-        **Parameters:**
-        - eventType: Type of event (e.g., "concerts", "theater", "festivals", "museums")
-        
-        **Returns:** Event venues, major Hamburg festivals, and tips for finding current events.
+        - User asks what to do in Hamburg or about its cultural scene
+        - Looking for places to see concerts, shows or exhibitions in general, without a date
+        - Looking for entertainment or nightlife districts
+
+        **Returns:** Concert halls, theaters, museums and event spaces with a short description.
         Hamburg has amazing cultural offerings year-round - be enthusiastic!
         """)
     public String getHamburgVenues() {
@@ -85,4 +208,4 @@ public class HamburgEventsTool {
                 "- Reeperbahn - Famous entertainment district\n" +
                 "- Speicherstadt - Historic warehouse district with galleries";
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,101 @@
+package org.pm.hamburgaiassistant.tools;
+
+import java.text.Normalizer;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Maps the many ways people (and the model) spell common Hamburg landmarks onto one canonical name,
+ * so cache keys line up and the upstream APIs get an unambiguous query. Only whole place names are
+ * matched, and words that name more than one place ("alster", "zoo") are deliberately not aliases.
+ */
+public final class LandmarkAliases {
+
+    private static final Map<String, String> CANONICAL = new HashMap<>();
+
+    static {
+        register("Hamburg Hauptbahnhof", "hauptbahnhof", "hbf", "hamburg hbf", "central station",
+                "main station", "train station", "main train station", "hamburg central station");
+        register("Elbphilharmonie Hamburg", "elbphilharmonie", "elphi", "elbe philharmonic hall",
+                "elbphilharmonie plaza");
+        register("Hamburg Airport", "airport", "flughafen", "flughafen hamburg",
+                "hamburg airport helmut schmidt", "helmut schmidt airport", "fuhlsbuettel");
+        register("Reeperbahn, Hamburg", "reeperbahn", "st pauli reeperbahn");
+        register("St. Pauli Landungsbrücken, Hamburg", "landungsbruecken", "st pauli landungsbruecken",
+                "landungsbrucken", "st pauli piers", "landing bridges");
+        register("Miniatur Wunderland, Hamburg", "miniatur wunderland", "miniature wonderland", "wunderland");
+        register("Speicherstadt, Hamburg", "speicherstadt", "warehouse district");
+        register("HafenCity, Hamburg", "hafencity", "hafen city");
+        register("Hamburg Rathaus", "rathaus", "town hall", "city hall", "rathausmarkt");
+        register("Jungfernstieg, Hamburg", "jungfernstieg");
+        register("Hamburg-Altona station", "altona", "bahnhof altona", "altona station", "hamburg altona");
+        register("Bahnhof Dammtor, Hamburg", "dammtor", "dammtor station", "bahnhof dammtor");
+        register("Fischmarkt, Hamburg", "fischmarkt", "fish market", "altonaer fischmarkt");
+        register("Planten un Blomen, Hamburg", "planten un blomen", "planten und blomen");
+        register("St. Michaelis Church, Hamburg", "michel", "st michaelis", "st michaels church",
+                "hauptkirche st michaelis");
+        register("Binnenalster, Hamburg", "binnenalster", "inner alster");
+        register("Außenalster, Hamburg", "aussenalster", "outer alster");
+        register("Mönckebergstraße, Hamburg", "moenckebergstrasse", "moenckeberg street");
+        register("Volksparkstadion, Hamburg", "volksparkstadion", "volkspark stadium", "hsv stadium");
+        register("Millerntor-Stadion, Hamburg", "millerntor", "millerntor stadion", "st pauli stadium");
+        register("Hagenbeck Zoo, Hamburg", "hagenbeck", "tierpark hagenbeck", "hamburg zoo");
+    }
+
+    private LandmarkAliases() {
+    }
+
+    private static void register(String canonical, String... aliases) {
+        CANONICAL.put(normalize(canonical), canonical);
+        for (String alias : List.of(aliases)) {
+            CANONICAL.put(normalize(alias), canonical);
+        }
+    }
+
+    /**
+     * Returns the canonical landmark name for a known alias, or the input unchanged.
+     */
+    public static String resolve(String place) {
+        String canonical = lookup(normalize(place));
+        return canonical != null ? canonical : place;
+    }
+
+    /**
+     * Stable cache key for a place: the canonical landmark when known, otherwise the normalized text.
+     */
+    public static String key(String place) {
+        String normalized = normalize(place);
+        String canonical = lookup(normalized);
+        return canonical != null ? normalize(canonical) : stripCity(normalized);
+    }
+
+    private static String lookup(String normalized) {
+        String canonical = CANONICAL.get(normalized);
+        if (canonical == null) {
+            canonical = CANONICAL.get(stripCity(normalized));
+        }
+        return canonical;
+    }
+
+    // "Reeperbahn Hamburg", "Hamburg Reeperbahn" and "Reeperbahn, Hamburg, Germany" all mean the same place
+    private static String stripCity(String normalized) {
+        String stripped = normalized.replaceFirst("( (hamburg|germany|deutschland))+$", "");
+        stripped = stripped.replaceFirst("^hamburg ", "");
+        return stripped.isEmpty() ? normalized : stripped;
+    }
+
+    /**
+     * Lower-cases, transliterates German umlauts and drops punctuation so spellings compare equal.
+     */
+    public static String normalize(String text) {
+        if (text == null) {
+            return "";
+        }
+        String lower = text.toLowerCase(Locale.GERMAN)
+                .replace("ä", "ae").replace("ö", "oe").replace("ü", "ue").replace("ß", "ss");
+        String ascii = Normalizer.normalize(lower, Normalizer.Form.NFD).replaceAll("\\p{M}", "");
+        return ascii.replaceAll("[^a-z0-9]+", " ").trim();
+    }
+}
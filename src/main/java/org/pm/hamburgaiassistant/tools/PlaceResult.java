@@ -0,0 +1,16 @@
+package org.pm.hamburgaiassistant.tools;
+
+/**
+ * One parsed Places text-search hit. Optional fields are null when the API omitted them.
+ */
+public record PlaceResult(
+        String placeId,
+        String name,
+        String address,
+        Double rating,
+        Integer userRatingsTotal,
+        Boolean openNow,
+        Double lat,
+        Double lng
+) {
+}
@@ -0,0 +1,47 @@
+package org.pm.hamburgaiassistant.tools;
+
+import java.util.function.Supplier;
+
+/**
+ * How the tool call running on this thread went. Tools answer the model with text either way, apologies
+ * and fallbacks included; a tool that returns anything short of a fresh, complete answer (an error, a stale
+ * observation, a canned list, nothing found) says so with {@link #markDegraded()}, which is what callers
+ * such as the first-turn cache go by. Marks made by a tool another tool calls count for the outer call.
+ */
+public final class ToolOutcome {
+
+    private static final ThreadLocal<ToolOutcome> CURRENT = new ThreadLocal<>();
+
+    private boolean degraded;
+
+    /**
+     * Marks the current call's answer as degraded. Does nothing outside {@link #callWith}.
+     */
+    public static void markDegraded() {
+        ToolOutcome outcome = CURRENT.get();
+        if (outcome != null) {
+            outcome.degraded = true;
+        }
+    }
+
+    /**
+     * Runs {@code work} with {@code outcome} collecting the marks made on this thread.
+     */
+    public static <T> T callWith(ToolOutcome outcome, Supplier<T> work) {
+        ToolOutcome previous = CURRENT.get();
+        CURRENT.set(outcome);
+        try {
+            return work.get();
+        } finally {
+            if (previous != null) {
+                CURRENT.set(previous);
+            } else {
+                CURRENT.remove();
+            }
+        }
+    }
+
+    public boolean isDegraded() {
+        return degraded;
+    }
+}
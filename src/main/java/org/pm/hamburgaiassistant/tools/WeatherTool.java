@@ -1,87 +1,251 @@
 package org.pm.hamburgaiassistant.tools;
 
+import com.github.benmanes.caffeine.cache.AsyncCache;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
 import com.google.gson.JsonObject;
 import com.google.gson.JsonParser;
 import dev.langchain4j.agent.tool.Tool;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
-import okhttp3.OkHttpClient;
+import okhttp3.HttpUrl;
 import okhttp3.Request;
 import okhttp3.Response;
+import org.pm.hamburgaiassistant.http.CircuitOpenException;
+import org.pm.hamburgaiassistant.http.Upstream;
+import org.pm.hamburgaiassistant.http.UpstreamHttpClients;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
 @Slf4j
 @Component
+@RequiredArgsConstructor
 public class WeatherTool {
 
+    // Country suffixes that mean "the default region" and should share a cache entry with the bare city name
+    private static final Set<String> DEFAULT_COUNTRY_ALIASES = Set.of("de", "deu", "germany", "deutschland");
+    private static final DateTimeFormatter AS_OF_FORMAT = DateTimeFormatter.ofPattern("HH:mm")
+            .withZone(ZoneId.of("Europe/Berlin"));
+
     @Value("${weather.api.key}")
     private String apiKey;
 
     @Value("${weather.api.url}")
     private String apiUrl;
 
-    private final OkHttpClient client = new OkHttpClient();
+    @Value("${weather.cache.ttl-seconds:300}")
+    private long cacheTtlSeconds;
+
+    @Value("${weather.cache.max-cities:500}")
+    private long maxCachedCities;
+
+    private final MeterRegistry meterRegistry;
+    private final UpstreamHttpClients httpClients;
+
+    // Fresh observations; an in-flight future is shared by every caller asking for the same city
+    private AsyncCache<String, WeatherSnapshot> cache;
+    // Last successful observation per city, served when the upstream is slow or down
+    private Cache<String, WeatherSnapshot> lastKnown;
+
+    private Counter hits;
+    private Counter misses;
+    private Counter coalesced;
+    private Counter staleServed;
+
+    @PostConstruct
+    void initCache() {
+        cache = Caffeine.newBuilder()
+                .expireAfterWrite(Duration.ofSeconds(cacheTtlSeconds))
+                .maximumSize(maxCachedCities)
+                .buildAsync();
+        lastKnown = Caffeine.newBuilder()
+                .maximumSize(maxCachedCities)
+                .build();
+
+        hits = requestCounter("hit");
+        misses = requestCounter("miss");
+        coalesced = requestCounter("coalesced");
+        staleServed = requestCounter("stale");
+    }
+
+    private Counter requestCounter(String result) {
+        return Counter.builder("weather.cache.requests")
+                .description("Weather lookups by cache outcome")
+                .tag("result", result)
+                .register(meterRegistry);
+    }
 
     @Tool("""
             Get current real-time weather conditions for any city.
-            
+
             **When to use this tool:**
             - User asks about current weather, temperature, or conditions
             - User wants to know what to wear or if they need an umbrella
             - Planning outdoor activities and need weather information
             - Comparing weather between cities
-            
+
             **Examples:**
             - "What's the weather like in Hamburg?"
             - "Is it raining right now?"
             - "Do I need a jacket today?"
             - "What's the temperature?"
-            
+
             **Parameters:**
             - city: The city name (e.g., "Hamburg", "Berlin", "Munich")
-            
+
             **Returns:** Current temperature, weather description, feels-like temperature, and humidity.
             Always mention the weather when recommending outdoor activities!
             """)
     public String getCurrentWeather(String city) {
+        String key = normalizeCity(city);
         try {
-            String url = String.format("%s?q=%s&appid=%s&units=metric",
-                    apiUrl, city, apiKey);
+            return lookup(key).describe();
+        } catch (RuntimeException e) {
+            Throwable cause = unwrap(e);
+            ToolOutcome.markDegraded();
 
-            Request request = new Request.Builder()
-                    .url(url)
-                    .build();
+            WeatherSnapshot stale = lastKnown.getIfPresent(key);
+            if (stale != null) {
+                staleServed.increment();
+                log.warn("Weather upstream unavailable for '{}', serving observation from {}: {}",
+                        key, stale.observedAt(), cause.getMessage());
+                return stale.describe() + " (as of " + AS_OF_FORMAT.format(stale.observedAt())
+                        + ", live data temporarily unavailable)";
+            }
 
-            try (Response response = client.newCall(request).execute()) {
-                if (!response.isSuccessful()) {
-                    log.error("Weather API call failed: {}", response.code());
-                    return "Sorry, I couldn't fetch the weather data for " + city;
-                }
+            if (cause instanceof CircuitOpenException) {
+                return "Sorry, live weather for " + city + " is unavailable right now. Answer without current "
+                        + "conditions and suggest checking a weather app.";
+            }
+            if (cause instanceof UpstreamStatusException) {
+                log.error("Weather API call failed: {}", cause.getMessage());
+                return "Sorry, I couldn't fetch the weather data for " + city;
+            }
+            log.error("Error fetching weather", cause);
+            return "Error fetching weather: " + cause.getMessage();
+        }
+    }
 
-                String responseBody = response.body().string();
-                JsonObject json = JsonParser.parseString(responseBody).getAsJsonObject();
+    private static Throwable unwrap(Throwable e) {
+        Throwable cause = e;
+        while ((cause instanceof CompletionException || cause instanceof UncheckedIOException)
+                && cause.getCause() != null) {
+            cause = cause.getCause();
+        }
+        return cause;
+    }
 
-                String weatherDescription = json.getAsJsonArray("weather")
-                        .get(0).getAsJsonObject()
-                        .get("description").getAsString();
+    private WeatherSnapshot lookup(String key) {
+        CompletableFuture<WeatherSnapshot> existing = cache.getIfPresent(key);
+        if (existing != null) {
+            (existing.isDone() ? hits : coalesced).increment();
+            return existing.join();
+        }
 
-                double temperature = json.getAsJsonObject("main")
-                        .get("temp").getAsDouble();
+        // Single flight: only the caller that installs the future talks to the upstream
+        CompletableFuture<WeatherSnapshot> leader = new CompletableFuture<>();
+        existing = cache.asMap().putIfAbsent(key, leader);
+        if (existing != null) {
+            coalesced.increment();
+            return existing.join();
+        }
+
+        misses.increment();
+        try {
+            WeatherSnapshot snapshot = fetchWeather(key);
+            lastKnown.put(key, snapshot);
+            leader.complete(snapshot);
+            return snapshot;
+        } catch (RuntimeException e) {
+            // Failed futures are dropped by the cache, so the next caller retries
+            leader.completeExceptionally(e);
+            throw e;
+        }
+    }
 
-                double feelsLike = json.getAsJsonObject("main")
-                        .get("feels_like").getAsDouble();
+    private WeatherSnapshot fetchWeather(String key) {
+        HttpUrl url = HttpUrl.get(apiUrl).newBuilder()
+                .addQueryParameter("q", key)
+                .addQueryParameter("appid", apiKey)
+                .addQueryParameter("units", "metric")
+                .build();
 
-                int humidity = json.getAsJsonObject("main")
-                        .get("humidity").getAsInt();
+        Request request = new Request.Builder()
+                .url(url)
+                .build();
 
-                return String.format(
-                        "Weather in %s: %s. Temperature: %.1f°C (feels like %.1f°C). Humidity: %d%%",
-                        city, weatherDescription, temperature, feelsLike, humidity
-                );
+        try (Response response = httpClients.execute(Upstream.WEATHER, request)) {
+            if (!response.isSuccessful()) {
+                throw new UncheckedIOException(new UpstreamStatusException(response.code()));
             }
-        } catch (Exception e) {
-            log.error("Error fetching weather", e);
-            return "Error fetching weather: " + e.getMessage();
+
+            String responseBody = response.body().string();
+            JsonObject json = JsonParser.parseString(responseBody).getAsJsonObject();
+
+            String weatherDescription = json.getAsJsonArray("weather")
+                    .get(0).getAsJsonObject()
+                    .get("description").getAsString();
+
+            JsonObject main = json.getAsJsonObject("main");
+            double temperature = main.get("temp").getAsDouble();
+            double feelsLike = main.get("feels_like").getAsDouble();
+            int humidity = main.get("humidity").getAsInt();
+
+            String cityName = json.has("name") ? json.get("name").getAsString() : key;
+
+            return new WeatherSnapshot(cityName, weatherDescription, temperature, feelsLike, humidity, Instant.now());
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Collapses spellings like "hamburg", " Hamburg " and "Hamburg, DE" onto one cache key.
+     * A non-default country suffix is kept so "Paris, FR" and "Paris, US" stay distinct.
+     */
+    static String normalizeCity(String city) {
+        if (city == null) {
+            return "";
+        }
+        String normalized = city.trim().toLowerCase(Locale.ROOT).replaceAll("\\s+", " ");
+
+        int firstComma = normalized.indexOf(',');
+        if (firstComma < 0) {
+            return normalized;
+        }
+        String name = normalized.substring(0, firstComma).trim();
+        String country = normalized.substring(normalized.lastIndexOf(',') + 1).trim();
+        return country.isEmpty() || DEFAULT_COUNTRY_ALIASES.contains(country) ? name : name + "," + country;
+    }
+
+    record WeatherSnapshot(String city, String description, double temperature, double feelsLike,
+                           int humidity, Instant observedAt) {
+
+        String describe() {
+            return String.format(
+                    "Weather in %s: %s. Temperature: %.1f°C (feels like %.1f°C). Humidity: %d%%",
+                    city, description, temperature, feelsLike, humidity
+            );
+        }
+    }
+
+    private static class UpstreamStatusException extends IOException {
+        UpstreamStatusException(int code) {
+            super("HTTP " + code);
         }
     }
-}
\ No newline at end of file
+}
@@ -11,9 +11,11 @@ import org.springframework.web.socket.TextMessage;
 import org.springframework.web.socket.WebSocketSession;
 import org.springframework.web.socket.handler.TextWebSocketHandler;
 
-import java.io.IOException;
 import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
 
 @Slf4j
 @Component
@@ -21,8 +23,12 @@ import java.util.concurrent.ConcurrentHashMap;
 public class ChatWebSocketHandler extends TextWebSocketHandler {
 
     private final StreamingChatService streamingChatService;
+    private final TokenBatcher tokenBatcher;
+    private final WebSocketSender webSocketSender;
     private final Gson gson = new Gson();
     private final Map<String, WebSocketSession> sessions = new ConcurrentHashMap<>();
+    // Streams queued or running per connection, stopped on {"type":"stop"} or when the connection closes
+    private final Map<String, Set<StreamingChatService.StreamHandle>> generations = new ConcurrentHashMap<>();
 
     @Override
     public void afterConnectionEstablished(WebSocketSession session) throws Exception {
@@ -33,7 +39,10 @@ public class ChatWebSocketHandler extends TextWebSocketHandler {
         JsonObject welcome = new JsonObject();
         welcome.addProperty("type", "connected");
         welcome.addProperty("message", "Connected to Hamburg AI Assistant");
-        session.sendMessage(new TextMessage(gson.toJson(welcome)));
+        // Clients may send "batchMs" with a message to change how tokens are coalesced (0 = every token)
+        welcome.addProperty("batchMs", tokenBatcher.defaultWindowMs());
+        welcome.addProperty("maxBatchMs", tokenBatcher.maxWindowMs());
+        webSocketSender.outbox(session).send(gson.toJson(welcome));
     }
 
     @Override
@@ -44,50 +53,85 @@ public class ChatWebSocketHandler extends TextWebSocketHandler {
 
             // Parse incoming message
             JsonObject json = gson.fromJson(payload, JsonObject.class);
+            if (json.has("type") && "stop".equals(json.get("type").getAsString())) {
+                log.info("Client asked to stop {} running stream(s) on {}", cancelGenerations(session, "stop"),
+                        session.getId());
+                return;
+            }
             String userMessage = json.get("message").getAsString();
             String sessionId = json.has("sessionId")
                     ? json.get("sessionId").getAsString()
                     : session.getId();
+            // Optional per-message coalescing window negotiated by the client
+            Long batchMs = json.has("batchMs") ? json.get("batchMs").getAsLong() : null;
 
-            // Send streaming response
-            streamingChatService.streamChat(
+            // Callbacks only enqueue; the outbox sender does the actual writes
+            WebSocketSender.Outbox outbox = webSocketSender.outbox(session);
+            TokenBatcher.Batch batch = tokenBatcher.open(batchMs, outbox::congested, outbox::send);
+
+            Set<StreamingChatService.StreamHandle> running =
+                    generations.computeIfAbsent(session.getId(), id -> ConcurrentHashMap.newKeySet());
+            AtomicReference<StreamingChatService.StreamHandle> generation = new AtomicReference<>();
+            AtomicBoolean completed = new AtomicBoolean();
+
+            // Send streaming response; waits behind earlier messages of the same chat session
+            StreamingChatService.StreamHandle handle = streamingChatService.submit(
+                    "ws",
                     sessionId,
                     userMessage,
                     // On each token
-                    token -> {
-                        try {
-                            JsonObject response = new JsonObject();
-                            response.addProperty("type", "token");
-                            response.addProperty("content", token);
-                            session.sendMessage(new TextMessage(gson.toJson(response)));
-                        } catch (IOException e) {
-                            log.error("Error sending token", e);
-                        }
-                    },
+                    batch::add,
                     // On complete
                     () -> {
-                        try {
-                            JsonObject complete = new JsonObject();
-                            complete.addProperty("type", "complete");
-                            session.sendMessage(new TextMessage(gson.toJson(complete)));
-                        } catch (IOException e) {
-                            log.error("Error sending completion", e);
+                        completed.set(true);
+                        StreamingChatService.StreamHandle finished = generation.get();
+                        if (finished != null) {
+                            running.remove(finished);
+                        }
+                        batch.finish();
+                        JsonObject complete = new JsonObject();
+                        complete.addProperty("type", "complete");
+                        if (finished != null && finished.isStopped()) {
+                            complete.addProperty("stopped", true);
                         }
+                        outbox.send(gson.toJson(complete));
+                    },
+                    // Too many messages waiting for this chat session, or the model is saturated
+                    rejected -> {
+                        completed.set(true);
+                        StreamingChatService.StreamHandle finished = generation.get();
+                        if (finished != null) {
+                            running.remove(finished);
+                        }
+                        batch.finish();
+                        JsonObject error = new JsonObject();
+                        error.addProperty("type", "error");
+                        error.addProperty("status", 429);
+                        error.addProperty("message", "Error: " + rejected.getMessage());
+                        outbox.send(gson.toJson(error));
                     }
             );
+            // Cache hits and rejections complete before submit returns
+            running.add(handle);
+            generation.set(handle);
+            if (completed.get()) {
+                running.remove(handle);
+            }
 
         } catch (Exception e) {
             log.error("Error handling message", e);
             JsonObject error = new JsonObject();
             error.addProperty("type", "error");
             error.addProperty("message", "Error: " + e.getMessage());
-            session.sendMessage(new TextMessage(gson.toJson(error)));
+            webSocketSender.outbox(session).send(gson.toJson(error));
         }
     }
 
     @Override
     public void afterConnectionClosed(WebSocketSession session, CloseStatus status) throws Exception {
         sessions.remove(session.getId());
+        webSocketSender.unregister(session);
+        cancelGenerations(session, "disconnect");
         log.info("WebSocket connection closed: {} - {}", session.getId(), status);
     }
 
@@ -95,5 +139,22 @@ public class ChatWebSocketHandler extends TextWebSocketHandler {
     public void handleTransportError(WebSocketSession session, Throwable exception) throws Exception {
         log.error("WebSocket transport error: {}", session.getId(), exception);
         sessions.remove(session.getId());
+        webSocketSender.unregister(session);
+        cancelGenerations(session, "disconnect");
+    }
+
+    private int cancelGenerations(WebSocketSession session, String reason) {
+        Set<StreamingChatService.StreamHandle> running = "stop".equals(reason)
+                ? generations.getOrDefault(session.getId(), Set.of())
+                : generations.remove(session.getId());
+        int cancelled = 0;
+        if (running != null) {
+            for (StreamingChatService.StreamHandle handle : running) {
+                if (handle.stop(reason)) {
+                    cancelled++;
+                }
+            }
+        }
+        return cancelled;
     }
 }
\ No newline at end of file
@@ -0,0 +1,168 @@
+package org.pm.hamburgaiassistant.websocket;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+import java.util.function.Consumer;
+
+/**
+ * Coalesces streamed tokens into fewer outbound frames. A batch is flushed when its window elapses or its
+ * content reaches the byte limit, whichever comes first; the first token of a stream is always sent on its
+ * own so time-to-first-token is unaffected. Frames are the same {"type":"token","content":...} envelope
+ * the client already parses, written straight into a reused buffer instead of through a JSON tree.
+ * While the receiving client is congested, batches use the maximum window and four times the byte limit.
+ */
+@Slf4j
+@Component
+public class TokenBatcher {
+
+    private static final String FRAME_PREFIX = "{\"type\":\"token\",\"content\":\"";
+    private static final String FRAME_SUFFIX = "\"}";
+
+    private final long defaultWindowMs;
+    private final long maxWindowMs;
+    private final int maxBytes;
+    private final ScheduledExecutorService scheduler;
+    private final DistributionSummary tokensPerFrame;
+
+    public TokenBatcher(MeterRegistry meterRegistry,
+                        @Value("${chat.ws.batch-window-ms:30}") long defaultWindowMs,
+                        @Value("${chat.ws.batch-max-window-ms:250}") long maxWindowMs,
+                        @Value("${chat.ws.batch-max-bytes:256}") int maxBytes) {
+        this.defaultWindowMs = defaultWindowMs;
+        this.maxWindowMs = maxWindowMs;
+        this.maxBytes = maxBytes;
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "token-batch-flush");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.tokensPerFrame = DistributionSummary.builder("chat.ws.tokens-per-frame")
+                .description("Streamed tokens coalesced into one WebSocket frame")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Starts a batch for one streamed answer. {@code requestedWindowMs} is the client's preference
+     * (null for the server default, 0 to send every token as it arrives) and is capped at the configured
+     * maximum.
+     */
+    public Batch open(Long requestedWindowMs, Consumer<String> frameSink) {
+        return open(requestedWindowMs, () -> false, frameSink);
+    }
+
+    public Batch open(Long requestedWindowMs, BooleanSupplier congested, Consumer<String> frameSink) {
+        long windowMs = requestedWindowMs == null ? defaultWindowMs
+                : Math.max(0, Math.min(requestedWindowMs, maxWindowMs));
+        return new Batch(windowMs, congested, frameSink);
+    }
+
+    public long defaultWindowMs() {
+        return defaultWindowMs;
+    }
+
+    public long maxWindowMs() {
+        return maxWindowMs;
+    }
+
+    public final class Batch {
+
+        private final long windowMs;
+        private final BooleanSupplier congested;
+        private final Consumer<String> frameSink;
+
+        // Guarded by this: tokens arrive on the upstream thread, timed flushes on the scheduler
+        private final StringBuilder frame = new StringBuilder(FRAME_PREFIX.length() + maxBytes + 64)
+                .append(FRAME_PREFIX);
+        private int tokens;
+        private boolean firstSent;
+        private ScheduledFuture<?> pendingFlush;
+
+        private Batch(long windowMs, BooleanSupplier congested, Consumer<String> frameSink) {
+            this.windowMs = windowMs;
+            this.congested = congested;
+            this.frameSink = frameSink;
+        }
+
+        public synchronized void add(String token) {
+            appendJsonEscaped(frame, token);
+            tokens++;
+            boolean slowClient = firstSent && congested.getAsBoolean();
+            long window = slowClient ? maxWindowMs : windowMs;
+            int limit = slowClient ? maxBytes * 4 : maxBytes;
+            if (!firstSent || window == 0 || frame.length() - FRAME_PREFIX.length() >= limit) {
+                firstSent = true;
+                flush();
+            } else if (pendingFlush == null) {
+                pendingFlush = scheduler.schedule(this::timedFlush, window, TimeUnit.MILLISECONDS);
+            }
+        }
+
+        /**
+         * Sends whatever is still buffered. Call before the completion message so no token trails it.
+         */
+        public synchronized void finish() {
+            flush();
+        }
+
+        private synchronized void timedFlush() {
+            pendingFlush = null;
+            flush();
+        }
+
+        private void flush() {
+            if (pendingFlush != null) {
+                pendingFlush.cancel(false);
+                pendingFlush = null;
+            }
+            if (tokens == 0) {
+                return;
+            }
+            String text = frame.append(FRAME_SUFFIX).toString();
+            tokensPerFrame.record(tokens);
+            frame.setLength(FRAME_PREFIX.length());
+            tokens = 0;
+            try {
+                frameSink.accept(text);
+            } catch (RuntimeException e) {
+                log.error("Error sending token frame", e);
+            }
+        }
+    }
+
+    static void appendJsonEscaped(StringBuilder out, CharSequence text) {
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            switch (c) {
+                case '"' -> out.append("\\\"");
+                case '\\' -> out.append("\\\\");
+                case '\n' -> out.append("\\n");
+                case '\r' -> out.append("\\r");
+                case '\t' -> out.append("\\t");
+                case '\b' -> out.append("\\b");
+                case '\f' -> out.append("\\f");
+                default -> {
+                    if (c < 0x20) {
+                        out.append("\\u00").append(Character.forDigit(c >> 4, 16)).append(Character.forDigit(c & 0xF, 16));
+                    } else {
+                        out.append(c);
+                    }
+                }
+            }
+        }
+    }
+
+    @PreDestroy
+    void shutdown() {
+        scheduler.shutdownNow();
+    }
+}
@@ -0,0 +1,233 @@
+package org.pm.hamburgaiassistant.websocket;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.pm.hamburgaiassistant.config.VirtualThreads;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketSession;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Outbound side of the chat WebSocket. Each connection gets a bounded outbox drained by a sender task,
+ * so the model's callback thread only enqueues and is never stalled by a slow client, and sends on one
+ * session never overlap. Once an outbox is half full the session counts as congested and token batches
+ * coalesce harder; a full outbox or a single send running past the time limit disconnects the client.
+ * <p>
+ * A drain blocks only its own connection: there is one sender thread per connection with frames in
+ * flight, up to a configured cap. A connection that needs a sender while all of them are busy is dropped
+ * like any other slow consumer, rather than growing the pool without bound when many clients stall at
+ * once. A watchdog enforces the send time limit even when no further frames arrive, and disconnects run
+ * on a separate pool, never behind a blocked send. On virtual threads there is no cap.
+ */
+@Slf4j
+@Component
+public class WebSocketSender {
+
+    private final int bufferSizeLimit;
+    private final long sendTimeLimitNanos;
+    private final ExecutorService senders;
+    private final ExecutorService closers;
+    private final ScheduledExecutorService watchdog;
+    private final Map<String, Outbox> outboxes = new ConcurrentHashMap<>();
+    private final MeterRegistry meterRegistry;
+
+    public WebSocketSender(MeterRegistry meterRegistry,
+                           @Value("${chat.ws.send-buffer-bytes:65536}") int bufferSizeLimit,
+                           @Value("${chat.ws.send-time-limit-ms:10000}") long sendTimeLimitMs,
+                           @Value("${chat.ws.max-sender-threads:256}") int maxSenderThreads,
+                           @Value("${spring.threads.virtual.enabled:false}") boolean virtualThreads) {
+        this.meterRegistry = meterRegistry;
+        this.bufferSizeLimit = bufferSizeLimit;
+        this.sendTimeLimitNanos = TimeUnit.MILLISECONDS.toNanos(sendTimeLimitMs);
+        if (virtualThreads && VirtualThreads.available()) {
+            this.senders = VirtualThreads.newThreadPerTaskExecutor("ws-send-");
+            this.closers = VirtualThreads.newThreadPerTaskExecutor("ws-close-");
+        } else {
+            this.senders = pool("ws-send-", maxSenderThreads, new SynchronousQueue<>());
+            this.closers = pool("ws-close-", maxSenderThreads, new LinkedBlockingQueue<>());
+        }
+        this.watchdog = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "ws-send-watchdog");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long checkMs = Math.max(10, sendTimeLimitMs / 4);
+        watchdog.scheduleWithFixedDelay(this::dropStalled, checkMs, checkMs, TimeUnit.MILLISECONDS);
+        // One outbox per open connection
+        meterRegistry.gauge("chat.ws.connections", outboxes, Map::size);
+        meterRegistry.gauge("chat.ws.outbound.queued-bytes", outboxes,
+                all -> all.values().stream().mapToInt(o -> o.bufferedBytes.get()).sum());
+        meterRegistry.gauge("chat.ws.outbound.congested-sessions", outboxes,
+                all -> all.values().stream().filter(Outbox::congested).count());
+    }
+
+    public Outbox outbox(WebSocketSession session) {
+        return outboxes.computeIfAbsent(session.getId(), id -> new Outbox(session));
+    }
+
+    public void unregister(WebSocketSession session) {
+        Outbox outbox = outboxes.remove(session.getId());
+        if (outbox != null) {
+            outbox.closed = true;
+            outbox.queue.clear();
+        }
+    }
+
+    // With a SynchronousQueue every task gets a thread of its own, and the task past maxThreads is rejected
+    private static ExecutorService pool(String prefix, int maxThreads, BlockingQueue<Runnable> queue) {
+        AtomicInteger threadCount = new AtomicInteger();
+        ThreadPoolExecutor pool = new ThreadPoolExecutor(maxThreads, maxThreads, 60, TimeUnit.SECONDS, queue,
+                runnable -> {
+                    Thread thread = new Thread(runnable, prefix + threadCount.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+        pool.allowCoreThreadTimeOut(true);
+        return pool;
+    }
+
+    private void dropStalled() {
+        for (Outbox outbox : outboxes.values()) {
+            if (outbox.stalled()) {
+                outbox.drop("send-time", "a send has been blocked for more than the time limit");
+            }
+        }
+    }
+
+    private void dropped(String reason) {
+        Counter.builder("chat.ws.sessions.dropped")
+                .description("WebSocket sessions disconnected as slow consumers")
+                .tag("reason", reason)
+                .register(meterRegistry)
+                .increment();
+    }
+
+    public final class Outbox {
+
+        private final WebSocketSession session;
+        private final Queue<String> queue = new ConcurrentLinkedQueue<>();
+        private final AtomicInteger bufferedBytes = new AtomicInteger();
+        private final AtomicBoolean draining = new AtomicBoolean();
+        private volatile long sendStartedNanos;
+        private volatile boolean closed;
+
+        private Outbox(WebSocketSession session) {
+            this.session = session;
+        }
+
+        /**
+         * Queues a frame without blocking. Returns false once the session has been closed or dropped.
+         */
+        public boolean send(String frame) {
+            if (closed) {
+                return false;
+            }
+            if (stalled()) {
+                drop("send-time", "a send has been blocked for more than the time limit");
+                return false;
+            }
+            // Two bytes per char, like the session heap estimate; exact size is not needed for a limit
+            if (bufferedBytes.addAndGet(frame.length() * 2) > bufferSizeLimit) {
+                drop("buffer", "the outbound buffer exceeded " + bufferSizeLimit + " bytes");
+                return false;
+            }
+            queue.add(frame);
+            scheduleDrain();
+            return !closed;
+        }
+
+        private boolean stalled() {
+            long started = sendStartedNanos;
+            return started != 0 && System.nanoTime() - started > sendTimeLimitNanos;
+        }
+
+        public boolean congested() {
+            return bufferedBytes.get() > bufferSizeLimit / 2;
+        }
+
+        private void scheduleDrain() {
+            if (draining.compareAndSet(false, true)) {
+                try {
+                    senders.execute(this::drain);
+                } catch (RejectedExecutionException e) {
+                    draining.set(false);
+                    drop("senders", "all sender threads are busy with other clients");
+                }
+            }
+        }
+
+        private void drain() {
+            // A frame queued after the last poll but before draining was reset would otherwise sit there.
+            // Picked up on this thread: handing it to a new one could be rejected while this one is busy.
+            do {
+                try {
+                    String frame;
+                    while (!closed && (frame = queue.poll()) != null) {
+                        sendStartedNanos = System.nanoTime();
+                        try {
+                            session.sendMessage(new TextMessage(frame));
+                        } finally {
+                            sendStartedNanos = 0;
+                            int size = frame.length() * 2;
+                            // A drop while sending has already reset the count
+                            bufferedBytes.updateAndGet(bytes -> Math.max(0, bytes - size));
+                        }
+                    }
+                } catch (IOException | RuntimeException e) {
+                    log.warn("Sending to WebSocket {} failed: {}", session.getId(), e.getMessage());
+                    closed = true;
+                    queue.clear();
+                } finally {
+                    draining.set(false);
+                }
+            } while (!closed && !queue.isEmpty() && draining.compareAndSet(false, true));
+        }
+
+        private synchronized void drop(String reason, String detail) {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            queue.clear();
+            bufferedBytes.set(0);
+            dropped(reason);
+            log.warn("Disconnecting slow WebSocket client {}: {}", session.getId(), detail);
+            // Not on a sender thread: this session's own sender may be the one that is blocked
+            closers.execute(() -> {
+                try {
+                    session.close(CloseStatus.SESSION_NOT_RELIABLE);
+                } catch (IOException e) {
+                    log.debug("Error closing WebSocket {}", session.getId(), e);
+                }
+            });
+        }
+    }
+
+    @PreDestroy
+    void shutdown() {
+        watchdog.shutdownNow();
+        senders.shutdownNow();
+        closers.shutdownNow();
+    }
+}
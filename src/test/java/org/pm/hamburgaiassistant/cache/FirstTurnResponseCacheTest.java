@@ -0,0 +1,51 @@
+package org.pm.hamburgaiassistant.cache;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.pm.hamburgaiassistant.cache.FirstTurnResponseCache.AnswerClass;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class FirstTurnResponseCacheTest {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    @Test
+    void equivalentQuestionsShareAnEntryPerLanguage() {
+        FirstTurnResponseCache cache = new FirstTurnResponseCache(meterRegistry);
+        ReflectionTestUtils.setField(cache, "enabled", true);
+        ReflectionTestUtils.setField(cache, "maxEntries", 100L);
+        ReflectionTestUtils.setField(cache, "staticTtlHours", 24L);
+        cache.initCache();
+
+        cache.store("What is the Speicherstadt?", "A warehouse district.", List.of());
+
+        assertThat(cache.lookup("rest", "what is the  speicherstadt")).contains("A warehouse district.");
+        assertThat(cache.lookup("stream", "Was ist die Speicherstadt?")).isEmpty();
+        assertThat(meterRegistry.get("chat.response.cache").tags("path", "rest", "result", "hit").counter().count())
+                .isEqualTo(1);
+        assertThat(meterRegistry.get("chat.response.cache").tags("path", "stream", "result", "miss").counter().count())
+                .isEqualTo(1);
+    }
+
+    @Test
+    void detectsGermanQuestions() {
+        assertThat(FirstTurnResponseCache.detectLanguage("Was kann man in Hamburg sehen?")).isEqualTo("de");
+        assertThat(FirstTurnResponseCache.detectLanguage("What can I see in Hamburg?")).isEqualTo("en");
+    }
+
+    @Test
+    void classifiesAnswersByHowFastTheyGoStale() {
+        assertThat(FirstTurnResponseCache.classify("Tell me about the harbour", List.of("getCurrentWeather")))
+                .isEqualTo(AnswerClass.LIVE);
+        assertThat(FirstTurnResponseCache.classify("Wie ist das Wetter heute?", List.of()))
+                .isEqualTo(AnswerClass.LIVE);
+        assertThat(FirstTurnResponseCache.classify("Good restaurants in Ottensen", List.of("searchPlaces")))
+                .isEqualTo(AnswerClass.LISTING);
+        assertThat(FirstTurnResponseCache.classify("History of the Speicherstadt", List.of()))
+                .isEqualTo(AnswerClass.STATIC);
+    }
+}
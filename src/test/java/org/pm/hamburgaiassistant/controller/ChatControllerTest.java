@@ -0,0 +1,105 @@
+package org.pm.hamburgaiassistant.controller;
+
+import dev.langchain4j.data.message.AiMessage;
+import dev.langchain4j.model.chat.StreamingChatLanguageModel;
+import dev.langchain4j.model.openai.OpenAiTokenizer;
+import dev.langchain4j.model.output.Response;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.micrometer.observation.ObservationRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.pm.hamburgaiassistant.cache.FirstTurnResponseCache;
+import org.pm.hamburgaiassistant.retrieval.GuideRetriever;
+import org.pm.hamburgaiassistant.service.ActiveGenerations;
+import org.pm.hamburgaiassistant.service.ChatConcurrencyLimiter;
+import org.pm.hamburgaiassistant.service.LlmAdmissionController;
+import org.pm.hamburgaiassistant.service.SessionMailboxes;
+import org.pm.hamburgaiassistant.service.StreamingChatService;
+import org.pm.hamburgaiassistant.session.ConversationSummarizer;
+import org.pm.hamburgaiassistant.session.SessionRegistry;
+import org.springframework.http.MediaType;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+class ChatControllerTest {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private SessionRegistry sessionRegistry;
+    private MockMvc mockMvc;
+
+    @BeforeEach
+    void setUp() {
+        ConversationSummarizer summarizer = new ConversationSummarizer(
+                messages -> Response.from(AiMessage.from("summary")),
+                new LlmAdmissionController(meterRegistry, 4, 1, 8, 2.0, 10, 1000, 60, 10, 4), meterRegistry, 120, 1, 10);
+        sessionRegistry = new SessionRegistry(meterRegistry, new OpenAiTokenizer(), summarizer);
+        ReflectionTestUtils.setField(sessionRegistry, "maxSessions", 100);
+        ReflectionTestUtils.setField(sessionRegistry, "memoryMaxTokens", 2000);
+        GuideRetriever guideRetriever = new GuideRetriever(meterRegistry);
+        ReflectionTestUtils.invokeMethod(guideRetriever, "buildIndex");
+        FirstTurnResponseCache responseCache = new FirstTurnResponseCache(meterRegistry);
+        ReflectionTestUtils.invokeMethod(responseCache, "initCache");
+
+        // Streams " Moin" and " Hamburg" from another thread, like the OkHttp callbacks do
+        StreamingChatLanguageModel model = (messages, handler) -> new Thread(() -> {
+            handler.onNext(" Moin");
+            handler.onNext(" Hamburg");
+            handler.onComplete(Response.from(AiMessage.from(" Moin Hamburg")));
+        }).start();
+        SessionMailboxes mailboxes = new SessionMailboxes(meterRegistry, 5, false, 4, false);
+        StreamingChatService streamingChatService =
+                new StreamingChatService(model, sessionRegistry, guideRetriever, responseCache,
+                        new ActiveGenerations(sessionRegistry, meterRegistry), mailboxes,
+                        new LlmAdmissionController(meterRegistry, 4, 1, 8, 2.0, 10, 1000, 60, 10, 4), meterRegistry,
+                        ObservationRegistry.NOOP);
+
+        ChatController controller = new ChatController(null,
+                new ChatConcurrencyLimiter(meterRegistry, 10, 100), streamingChatService, mailboxes);
+        ReflectionTestUtils.setField(controller, "sseTimeoutMs", 5000L);
+        mockMvc = MockMvcBuilders.standaloneSetup(controller).build();
+    }
+
+    @Test
+    void streamsTokensAsServerSentEvents() throws Exception {
+        MvcResult result = mockMvc.perform(post("/api/chat/stream")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"message\":\"Hi\",\"sessionId\":\"sse-1\"}"))
+                .andExpect(request().asyncStarted())
+                .andExpect(header().string("X-Accel-Buffering", "no"))
+                .andReturn();
+        result.getAsyncResult(5000);
+
+        String body = mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getContentAsString();
+
+        assertThat(body).containsSubsequence(
+                "event:token", "{\"content\":\" Moin\"}",
+                "event:token", "{\"content\":\" Hamburg\"}",
+                "event:complete", "{\"sessionId\":\"sse-1\"}");
+        assertThat(sessionRegistry.getOrCreate("sse-1").memory().messages()).hasSize(2);
+        assertThat(meterRegistry.get("chat.stream.time-to-first-token").tag("transport", "sse").timer().count())
+                .isEqualTo(1);
+    }
+
+    @Test
+    void acceptsGetRequestsForEventSourceClients() throws Exception {
+        MvcResult result = mockMvc.perform(get("/api/chat/stream").param("message", "Hi"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        result.getAsyncResult(5000);
+
+        assertThat(mockMvc.perform(asyncDispatch(result)).andReturn().getResponse().getContentAsString())
+                .contains("event:complete", "{\"sessionId\":\"default-session\"}");
+    }
+}
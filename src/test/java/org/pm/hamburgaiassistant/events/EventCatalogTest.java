@@ -0,0 +1,76 @@
+package org.pm.hamburgaiassistant.events;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.pm.hamburgaiassistant.tools.HamburgEventsTool;
+import org.springframework.core.io.ClassPathResource;
+
+import java.time.Clock;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class EventCatalogTest {
+
+    private static final ZoneId HAMBURG = ZoneId.of("Europe/Berlin");
+
+    // Wednesday morning before the fixture's weekend
+    private final Clock clock = Clock.fixed(LocalDateTime.of(2026, 10, 21, 10, 0).atZone(HAMBURG).toInstant(), HAMBURG);
+    private final EventCatalog catalog = new EventCatalog(
+            new JsonFileEventSource(new ClassPathResource("events/hamburg-events.json")),
+            new SimpleMeterRegistry(), clock, 30);
+
+    @Test
+    void answersWhatsOnThisWeekendFromTheIndex() {
+        catalog.refresh();
+
+        String answer = new HamburgEventsTool(catalog, null).findHamburgEvents("this weekend", "concerts", "");
+
+        assertThat(answer).contains("Harbour Jazz Night", "Indie Sunday Session")
+                .doesNotContain("Last Week's Concert", "Street Food Market", "König der Löwen");
+        assertThat(answer.indexOf("Harbour Jazz Night")).isLessThan(answer.indexOf("Indie Sunday Session"));
+        // The DOM runs for weeks and overlaps every weekend in between
+        assertThat(catalog.find(LocalDateTime.of(2026, 11, 7, 0, 0), LocalDateTime.of(2026, 11, 8, 23, 59),
+                null, null, 10)).extracting(Event::id).containsExactly("2");
+        assertThat(catalog.find(clock.instant().atZone(HAMBURG).toLocalDateTime(), LocalDateTime.of(2026, 12, 1, 0, 0),
+                null, "Elbphilharmonie Hamburg", 10)).extracting(Event::id).containsExactly("1");
+    }
+
+    @Test
+    void narrowsToTheVenueTheVisitorAsksAbout() {
+        catalog.refresh();
+        HamburgEventsTool tool = new HamburgEventsTool(catalog, null);
+
+        assertThat(tool.findHamburgEvents("this weekend", "", "Elphi"))
+                .contains("Harbour Jazz Night").doesNotContain("Indie Sunday Session", "König der Löwen");
+        assertThat(tool.findHamburgEvents("next week", "comedy", "Schmidts Tivoli"))
+                .contains("Late Night Comedy").doesNotContain("Hamburger DOM");
+        assertThat(tool.findHamburgEvents("next week", "concerts", "Molotow")).startsWith("No listed concerts at Molotow");
+    }
+
+    @Test
+    void intervalTreeFindsExactlyTheOverlappingEvents() {
+        Random random = new Random(42);
+        LocalDateTime base = LocalDateTime.of(2026, 1, 1, 0, 0);
+        List<Event> events = new ArrayList<>();
+        for (int i = 0; i < 2000; i++) {
+            LocalDateTime start = base.plusHours(random.nextInt(24 * 365));
+            events.add(new Event(String.valueOf(i), "e" + i, null, null, start,
+                    start.plusHours(random.nextInt(24 * 14)), null));
+        }
+        EventIntervalTree tree = new EventIntervalTree(events);
+
+        for (int q = 0; q < 200; q++) {
+            LocalDateTime from = base.plusHours(random.nextInt(24 * 365));
+            LocalDateTime to = from.plusHours(random.nextInt(24 * 7));
+            List<Event> expected = events.stream()
+                    .filter(event -> !event.end().isBefore(from) && !event.start().isAfter(to))
+                    .toList();
+            assertThat(tree.overlapping(from, to)).containsExactlyInAnyOrderElementsOf(expected);
+        }
+    }
+}
@@ -0,0 +1,48 @@
+package org.pm.hamburgaiassistant.geo;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class PoiGridTest {
+
+    @Test
+    void radiusAndNearestQueriesMatchBruteForce() {
+        Random random = new Random(42);
+        PoiGrid grid = new PoiGrid();
+        List<Poi> all = new ArrayList<>();
+        for (int i = 0; i < 2000; i++) {
+            Poi poi = new Poi("p" + i, "Place " + i, i % 3 == 0 ? "cafe" : "bar", null,
+                    53.50 + random.nextDouble() * 0.12, 9.90 + random.nextDouble() * 0.18, null, null, null);
+            all.add(poi);
+            grid.put(poi);
+        }
+        // Replacing a point moves it to its new cell
+        Poi moved = new Poi("p0", "Place 0", "cafe", null, 53.5529, 9.9929, null, null, null);
+        all.set(0, moved);
+        grid.put(moved);
+
+        for (int i = 0; i < 50; i++) {
+            double lat = 53.51 + random.nextDouble() * 0.10;
+            double lng = 9.91 + random.nextDouble() * 0.16;
+            double radius = 200 + random.nextDouble() * 2000;
+            List<Nearby> expected = all.stream()
+                    .filter(poi -> poi.category().equals("cafe"))
+                    .map(poi -> new Nearby(poi, PoiGrid.distanceMeters(lat, lng, poi.lat(), poi.lng())))
+                    .filter(nearby -> nearby.distanceMeters() <= radius)
+                    .sorted(Comparator.comparingDouble(Nearby::distanceMeters))
+                    .toList();
+
+            assertThat(grid.within(lat, lng, radius, poi -> poi.category().equals("cafe")))
+                    .containsExactlyElementsOf(expected);
+            assertThat(grid.nearest(lat, lng, 5, radius, poi -> poi.category().equals("cafe")))
+                    .containsExactlyElementsOf(expected.subList(0, Math.min(5, expected.size())));
+        }
+        assertThat(grid.size()).isEqualTo(2000);
+    }
+}
@@ -0,0 +1,86 @@
+package org.pm.hamburgaiassistant.geo;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.pm.hamburgaiassistant.tools.PlaceResult;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.Optional;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class PoiIndexTest {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final PoiIndex index = new PoiIndex(meterRegistry);
+
+    @BeforeEach
+    void setUp() {
+        ReflectionTestUtils.setField(index, "enabled", true);
+        ReflectionTestUtils.setField(index, "landmarks", "geo/hamburg-landmarks.json");
+        ReflectionTestUtils.setField(index, "radiusMeters", 1000.0);
+        ReflectionTestUtils.setField(index, "minResults", 3);
+        ReflectionTestUtils.setField(index, "maxResults", 5);
+        ReflectionTestUtils.setField(index, "maxAgeHours", 168L);
+        index.seed();
+    }
+
+    @Test
+    void resolvesTheAnchorFromTheQueryOrTheLocation() {
+        Optional<List<Nearby>> inQuery = index.near("museums near the Speicherstadt", null);
+        Optional<List<Nearby>> asLocation = index.near("Museums", "warehouse district");
+
+        assertThat(inQuery).isPresent();
+        assertThat(inQuery.get()).extracting(nearby -> nearby.poi().name())
+                .contains("Miniatur Wunderland", "Speicherstadt Museum");
+        assertThat(asLocation.get()).isEqualTo(inQuery.get());
+        assertThat(index.near("museums near my hotel", null)).isEmpty();
+        assertThat(count("no-anchor")).isEqualTo(1);
+    }
+
+    @Test
+    void needsTheMinimumNumberOfMatches() {
+        Instant now = Instant.now();
+        index.record("cafes", List.of(cafe("c1", 0.001), cafe("c2", 0.002)), now);
+
+        assertThat(index.near("cafes", "Speicherstadt")).isEmpty();
+        assertThat(count("too-few")).isEqualTo(1);
+
+        index.record("cafes near the Speicherstadt", List.of(cafe("c3", 0.003)), now);
+
+        assertThat(index.near("cafes", "Speicherstadt")).hasValueSatisfying(cafes -> assertThat(cafes).hasSize(3));
+    }
+
+    @Test
+    void ignoresPlacesOlderThanTheCutoff() {
+        Instant stale = Instant.now().minus(Duration.ofHours(169));
+        index.record("cafes", List.of(cafe("c1", 0.001), cafe("c2", 0.002), cafe("c3", 0.003)), stale);
+
+        assertThat(index.near("cafes", "Speicherstadt")).isEmpty();
+
+        index.record("cafes", List.of(cafe("c1", 0.001), cafe("c2", 0.002), cafe("c3", 0.003)), Instant.now());
+
+        assertThat(index.near("cafes", "Speicherstadt")).isPresent();
+    }
+
+    @Test
+    void onlyPlainCategorySearchesTagTheirResults() {
+        Instant now = Instant.now();
+        index.record("vegan cafes with wifi", List.of(cafe("c1", 0.001), cafe("c2", 0.002), cafe("c3", 0.003)), now);
+
+        assertThat(index.near("cafes", "Speicherstadt")).isEmpty();
+    }
+
+    // A cafe just north of the Speicherstadt
+    private static PlaceResult cafe(String id, double northOffset) {
+        return new PlaceResult(id, "Cafe " + id, null, 4.5, 100, true, 53.5441 + northOffset, 9.9896);
+    }
+
+    private double count(String result) {
+        return meterRegistry.get("places.local.lookups").tag("result", result).counter().count();
+    }
+}
@@ -0,0 +1,153 @@
+package org.pm.hamburgaiassistant.http;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.Response;
+import okhttp3.mockwebserver.Dispatcher;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.env.MockEnvironment;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class UpstreamHttpClientsTest {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private MockWebServer server;
+    private UpstreamHttpClients httpClients;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        server = new MockWebServer();
+        server.start();
+        MockEnvironment environment = new MockEnvironment()
+                .withProperty("http.upstream.places.circuit.window", "4")
+                .withProperty("http.upstream.places.circuit.min-calls", "4")
+                .withProperty("http.upstream.places.latency.min-samples", "16")
+                .withProperty("http.upstream.weather.timeout-ms", "300")
+                .withProperty("http.upstream.weather.max-concurrency", "2")
+                .withProperty("http.upstream.weather.queue-timeout-ms", "200")
+                .withProperty("http.upstream.directions.hedge.enabled", "false")
+                .withProperty("http.upstream.directions.min-timeout-ms", "50")
+                .withProperty("http.upstream.directions.latency.window", "32")
+                .withProperty("http.upstream.directions.latency.min-samples", "16")
+                .withProperty("http.upstream.directions.circuit.window", "4")
+                .withProperty("http.upstream.directions.circuit.min-calls", "2")
+                .withProperty("http.upstream.directions.circuit.open-ms", "100");
+        httpClients = new UpstreamHttpClients(new OkHttpClient(), environment, meterRegistry);
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        server.shutdown();
+    }
+
+    @Test
+    void failsFastOnceTheCircuitIsOpen() throws IOException {
+        for (int i = 0; i < 4; i++) {
+            server.enqueue(new MockResponse().setResponseCode(503));
+            try (Response response = get()) {
+                assertThat(response.code()).isEqualTo(503);
+            }
+        }
+
+        assertThatThrownBy(this::get).isInstanceOf(CircuitOpenException.class);
+        assertThat(server.getRequestCount()).isEqualTo(4);
+    }
+
+    @Test
+    void hedgesAGetThatRunsPastTheUsualLatency() throws IOException {
+        for (int i = 0; i < 16; i++) {
+            server.enqueue(new MockResponse().setBody("fast"));
+            get().close();
+        }
+        server.enqueue(new MockResponse().setBody("stuck").setHeadersDelay(3, TimeUnit.SECONDS));
+        server.enqueue(new MockResponse().setBody("hedge"));
+
+        long start = System.nanoTime();
+        try (Response response = get()) {
+            assertThat(response.body().string()).isEqualTo("hedge");
+        }
+
+        assertThat(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start)).isLessThan(1000);
+        assertThat(meterRegistry.get("http.client.upstream.hedges").tag("upstream", "places").tag("result", "won").counter().count())
+                .isEqualTo(1);
+    }
+
+    @Test
+    void missedDeadlinesGiveBackTheirPermits() throws IOException {
+        // More slow calls than the upstream has permits; each one is abandoned at the deadline
+        for (int i = 0; i < 4; i++) {
+            server.enqueue(new MockResponse().setBody("late").setHeadersDelay(500, TimeUnit.MILLISECONDS));
+            assertThatThrownBy(() -> httpClients.execute(Upstream.WEATHER, request()))
+                    .isInstanceOf(InterruptedIOException.class);
+        }
+        server.enqueue(new MockResponse().setBody("fresh"));
+
+        try (Response response = httpClients.execute(Upstream.WEATHER, request())) {
+            assertThat(response.body().string()).isEqualTo("fresh");
+        }
+        assertThat(meterRegistry.get("http.client.upstream.in-flight").tag("upstream", "weather").gauge().value())
+                .isZero();
+    }
+
+    @Test
+    void deadlineFollowsAnUpstreamThatSlowsDownForGood() throws Exception {
+        AtomicBoolean slow = new AtomicBoolean();
+        server.setDispatcher(new Dispatcher() {
+            @Override
+            public MockResponse dispatch(RecordedRequest request) {
+                return new MockResponse().setBody("route")
+                        .setHeadersDelay(slow.get() ? 400 : 0, TimeUnit.MILLISECONDS);
+            }
+        });
+        for (int i = 0; i < 20; i++) {
+            directions().close();
+        }
+        assertThat(deadlineMs("directions")).isLessThan(400);
+
+        // Now every answer takes longer than the learned deadline, yet well within the configured timeout
+        slow.set(true);
+        int answeredInARow = 0;
+        for (int attempt = 0; attempt < 40 && answeredInARow < 5; attempt++) {
+            try (Response response = directions()) {
+                assertThat(response.body().string()).isEqualTo("route");
+                answeredInARow++;
+            } catch (CircuitOpenException e) {
+                Thread.sleep(120);
+            } catch (InterruptedIOException e) {
+                answeredInARow = 0;
+            }
+        }
+
+        assertThat(answeredInARow).isEqualTo(5);
+        assertThat(deadlineMs("directions")).isGreaterThanOrEqualTo(400);
+    }
+
+    private double deadlineMs(String upstream) {
+        return meterRegistry.get("http.client.upstream.deadline").tag("upstream", upstream).gauge().value();
+    }
+
+    private Response directions() throws IOException {
+        return httpClients.execute(Upstream.DIRECTIONS, new Request.Builder().url(server.url("/directions")).build());
+    }
+
+    private Request request() {
+        return new Request.Builder().url(server.url("/weather")).build();
+    }
+
+    private Response get() throws IOException {
+        return httpClients.execute(Upstream.PLACES, new Request.Builder().url(server.url("/place")).build());
+    }
+}
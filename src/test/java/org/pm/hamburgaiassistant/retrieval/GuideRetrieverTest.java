@@ -0,0 +1,64 @@
+package org.pm.hamburgaiassistant.retrieval;
+
+import dev.langchain4j.data.message.ChatMessage;
+import dev.langchain4j.data.message.SystemMessage;
+import dev.langchain4j.data.message.UserMessage;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class GuideRetrieverTest {
+
+    private GuideRetriever retriever;
+
+    @BeforeEach
+    void setUp() {
+        retriever = new GuideRetriever(new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(retriever, "enabled", true);
+        ReflectionTestUtils.setField(retriever, "resource", "static/hamburg_tourism_guide.txt");
+        ReflectionTestUtils.setField(retriever, "topK", 3);
+        ReflectionTestUtils.setField(retriever, "minScore", 2.0);
+        ReflectionTestUtils.setField(retriever, "maxPassageChars", 900);
+        retriever.buildIndex();
+    }
+
+    @Test
+    void findsTheGuideEntryForALandmark() {
+        List<GuidePassage> passages = retriever.search("How much does the Elbphilharmonie plaza cost?");
+
+        assertThat(passages).isNotEmpty();
+        assertThat(passages.get(0).heading()).isEqualTo("Elbphilharmonie (Elphi)");
+        // The location and access lines stay with the entry they describe
+        assertThat(passages.get(0).text()).contains("free", "Platz der Deutschen Einheit 4");
+    }
+
+    @Test
+    void mapsVisitorWordsOntoGuideWording() {
+        assertThat(retriever.search("What can kids do?")).extracting(GuidePassage::section)
+                .first().isEqualTo("Hamburg With Children");
+    }
+
+    @Test
+    void smallTalkRetrievesNothing() {
+        assertThat(retriever.search("Hi!")).isEmpty();
+        assertThat(retriever.search("Thanks a lot")).isEmpty();
+        assertThat(retriever.search("ok cool")).isEmpty();
+    }
+
+    @Test
+    void augmentAddsExcerptsForThisTurnOnly() {
+        List<ChatMessage> memory = List.of(UserMessage.from("What is Labskaus?"));
+
+        List<ChatMessage> request = retriever.augment(memory, "What is Labskaus?");
+
+        assertThat(request).hasSize(2);
+        assertThat(((SystemMessage) request.get(0)).text()).contains("Labskaus", "corned beef");
+        assertThat(request.get(1)).isSameAs(memory.get(0));
+        assertThat(retriever.augment(memory, "Hi!")).isSameAs(memory);
+    }
+}
@@ -0,0 +1,46 @@
+package org.pm.hamburgaiassistant.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class ChatConcurrencyLimiterTest {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final ChatConcurrencyLimiter limiter = new ChatConcurrencyLimiter(meterRegistry, 1, 50);
+
+    @Test
+    void rejectsOnceTheCapStaysFullPastTheQueueTimeout() throws Exception {
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        CompletableFuture<String> running = CompletableFuture.supplyAsync(() -> limiter.call(() -> {
+            started.countDown();
+            await(release);
+            return "first";
+        }));
+        assertThat(started.await(5, TimeUnit.SECONDS)).isTrue();
+        assertThat(meterRegistry.get("chat.in-flight").gauge().value()).isEqualTo(1);
+
+        assertThatThrownBy(() -> limiter.call(() -> "second"))
+                .isInstanceOf(ChatConcurrencyLimiter.CapacityExceededException.class);
+
+        release.countDown();
+        assertThat(running.get(5, TimeUnit.SECONDS)).isEqualTo("first");
+        assertThat(limiter.call(() -> "third")).isEqualTo("third");
+        assertThat(meterRegistry.get("chat.rejected").counter().count()).isEqualTo(1);
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,146 @@
+package org.pm.hamburgaiassistant.service;
+
+import dev.langchain4j.agent.tool.ToolExecutionRequest;
+import dev.langchain4j.agent.tool.ToolSpecification;
+import dev.langchain4j.data.message.AiMessage;
+import dev.langchain4j.data.message.ChatMessage;
+import dev.langchain4j.data.message.ToolExecutionResultMessage;
+import dev.langchain4j.model.chat.ChatLanguageModel;
+import dev.langchain4j.model.openai.OpenAiTokenizer;
+import dev.langchain4j.model.output.Response;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.micrometer.observation.ObservationRegistry;
+import okhttp3.OkHttpClient;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.pm.hamburgaiassistant.cache.FirstTurnResponseCache;
+import org.pm.hamburgaiassistant.events.EventCatalog;
+import org.pm.hamburgaiassistant.events.JsonFileEventSource;
+import org.pm.hamburgaiassistant.geo.PoiIndex;
+import org.pm.hamburgaiassistant.http.UpstreamHttpClients;
+import org.pm.hamburgaiassistant.retrieval.GuideRetriever;
+import org.pm.hamburgaiassistant.session.ConversationSummarizer;
+import org.pm.hamburgaiassistant.session.SessionRegistry;
+import org.pm.hamburgaiassistant.tools.GoogleDirectionsTool;
+import org.pm.hamburgaiassistant.tools.GooglePlacesTool;
+import org.pm.hamburgaiassistant.tools.HamburgEventsTool;
+import org.pm.hamburgaiassistant.tools.WeatherTool;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.mock.env.MockEnvironment;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ChatServiceTest {
+
+    private final List<List<ToolSpecification>> offeredTools = new ArrayList<>();
+    private final List<List<ChatMessage>> modelCalls = new ArrayList<>();
+    private SessionRegistry sessionRegistry;
+    private FirstTurnResponseCache responseCache;
+    private ChatService chatService;
+
+    @BeforeEach
+    void setUp() {
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        UpstreamHttpClients httpClients = new UpstreamHttpClients(new OkHttpClient(), new MockEnvironment(), meterRegistry);
+        GooglePlacesTool placesTool = new GooglePlacesTool(meterRegistry, httpClients, new PoiIndex(meterRegistry));
+        EventCatalog eventCatalog = new EventCatalog(
+                new JsonFileEventSource(new ClassPathResource("events/hamburg-events.json")), meterRegistry, 30);
+        AssistantTools tools = new AssistantTools(new WeatherTool(meterRegistry, httpClients), placesTool,
+                new GoogleDirectionsTool(meterRegistry, httpClients), new HamburgEventsTool(eventCatalog, placesTool));
+
+        ConversationSummarizer summarizer = new ConversationSummarizer(
+                messages -> Response.from(AiMessage.from("summary")),
+                new LlmAdmissionController(meterRegistry, 4, 1, 8, 2.0, 10, 1000, 60, 10, 4), meterRegistry, 120, 1, 10);
+        sessionRegistry = new SessionRegistry(meterRegistry, new OpenAiTokenizer(), summarizer);
+        ReflectionTestUtils.setField(sessionRegistry, "maxSessions", 100);
+        ReflectionTestUtils.setField(sessionRegistry, "memoryMaxTokens", 2000);
+
+        // Asks for the venue list first, then answers from the tool result
+        ChatLanguageModel model = new ChatLanguageModel() {
+            @Override
+            public Response<AiMessage> generate(List<ChatMessage> messages) {
+                return generate(messages, List.of());
+            }
+
+            @Override
+            public Response<AiMessage> generate(List<ChatMessage> messages, List<ToolSpecification> specs) {
+                offeredTools.add(specs);
+                modelCalls.add(messages);
+                ChatMessage last = messages.get(messages.size() - 1);
+                if (last instanceof ToolExecutionResultMessage result) {
+                    return Response.from(AiMessage.from("Try the Elbphilharmonie! (" + result.text().length() + ")"));
+                }
+                return Response.from(AiMessage.from(ToolExecutionRequest.builder()
+                        .id("call_1").name("getHamburgVenues").arguments("{}").build()));
+            }
+        };
+        // Disabled retriever: these tests are about the tool loop, not guide excerpts
+        GuideRetriever guideRetriever = new GuideRetriever(meterRegistry);
+        ReflectionTestUtils.invokeMethod(guideRetriever, "buildIndex");
+        // Constructed outside Spring the cache starts disabled; the cache test turns it on
+        responseCache = new FirstTurnResponseCache(meterRegistry);
+        ReflectionTestUtils.setField(responseCache, "maxEntries", 100L);
+        ReflectionTestUtils.setField(responseCache, "listingTtlHours", 6L);
+        ReflectionTestUtils.invokeMethod(responseCache, "initCache");
+        ToolExecutionEngine engine = new ToolExecutionEngine(tools, meterRegistry, ObservationRegistry.NOOP, 5000, 4, 16, false);
+        ActiveGenerations activeGenerations = new ActiveGenerations(sessionRegistry, meterRegistry);
+        LlmAdmissionController admission = new LlmAdmissionController(meterRegistry, 4, 1, 8, 2.0, 10, 1000, 60, 10, 4);
+        IntentRouter intentRouter = new IntentRouter(tools, new OpenAiTokenizer(), meterRegistry, true);
+        ToolPrefetcher prefetcher = new ToolPrefetcher(engine, meterRegistry, true);
+        chatService = new ChatService(model, intentRouter, engine, prefetcher, sessionRegistry, guideRetriever, responseCache,
+                activeGenerations, admission, meterRegistry, ObservationRegistry.NOOP);
+    }
+
+    @Test
+    void runsToolsAndKeepsTheExchangeInSessionMemory() {
+        String response = chatService.chat("s1", "Where can I hear a concert?");
+
+        assertThat(response).startsWith("Try the Elbphilharmonie!");
+        List<ChatMessage> messages = sessionRegistry.getOrCreate("s1").memory().messages();
+        assertThat(messages).hasSize(4);
+        assertThat(((ToolExecutionResultMessage) messages.get(2)).text()).contains("Elbphilharmonie");
+    }
+
+    @Test
+    void everySessionSharesTheSameToolSpecifications() {
+        chatService.chat("s1", "Anything special in Hamburg?");
+        chatService.chat("s2", "Anything special in Hamburg?");
+
+        assertThat(offeredTools).hasSize(4);
+        assertThat(offeredTools).allSatisfy(specs -> assertThat(specs).isSameAs(offeredTools.get(0)));
+        assertThat(offeredTools.get(0)).extracting(ToolSpecification::name).containsExactlyInAnyOrder(
+                "getCurrentWeather", "searchPlaces", "getPlaceDetails", "getDirections", "getTravelTime",
+                "findHamburgEvents", "getHamburgVenues");
+    }
+
+    @Test
+    void offersOnlyTheToolsTheMessageNeeds() {
+        chatService.chat("s1", "Concerts?");
+        chatService.chat("s2", "Concerts?");
+
+        assertThat(offeredTools).hasSize(4);
+        assertThat(offeredTools).allSatisfy(specs -> assertThat(specs).isSameAs(offeredTools.get(0)));
+        assertThat(offeredTools.get(0)).extracting(ToolSpecification::name)
+                .containsExactlyInAnyOrder("findHamburgEvents", "getHamburgVenues");
+    }
+
+    @Test
+    void answersRepeatedOpeningQuestionsFromTheCache() {
+        ReflectionTestUtils.setField(responseCache, "enabled", true);
+
+        String first = chatService.chat("s1", "Where can I hear a concert?");
+        String second = chatService.chat("s2", "  where can i hear a CONCERT ");
+
+        assertThat(second).isEqualTo(first);
+        assertThat(modelCalls).hasSize(2);
+        assertThat(sessionRegistry.getOrCreate("s2").memory().messages()).hasSize(2);
+
+        // Follow-ups depend on the conversation so far and always reach the model
+        chatService.chat("s2", "Where can I hear a concert?");
+        assertThat(modelCalls).hasSize(4);
+    }
+}
@@ -0,0 +1,142 @@
+package org.pm.hamburgaiassistant.service;
+
+import dev.langchain4j.agent.tool.ToolExecutionRequest;
+import dev.langchain4j.agent.tool.ToolSpecification;
+import dev.langchain4j.data.message.AiMessage;
+import dev.langchain4j.data.message.ChatMessage;
+import dev.langchain4j.data.message.UserMessage;
+import dev.langchain4j.model.StreamingResponseHandler;
+import dev.langchain4j.model.output.FinishReason;
+import dev.langchain4j.model.output.Response;
+import okhttp3.OkHttpClient;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class DeepSeekStreamingChatModelTest {
+
+    private MockWebServer server;
+    private DeepSeekStreamingChatModel model;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        server = new MockWebServer();
+        server.start();
+        model = new DeepSeekStreamingChatModel(new OkHttpClient(), server.url("/v1").toString()
+                .replaceAll("/$", ""), "test-key", "deepseek-chat", 0.7);
+    }
+
+    @AfterEach
+    void tearDown() throws Exception {
+        server.shutdown();
+    }
+
+    private static MockResponse sse(String... events) {
+        StringBuilder body = new StringBuilder();
+        for (String event : events) {
+            body.append("data: ").append(event).append("\n\n");
+        }
+        return new MockResponse()
+                .setHeader("Content-Type", "text/event-stream")
+                .setBody(body.toString());
+    }
+
+    @Test
+    void streamsTokensAndReportsUsage() throws Exception {
+        server.enqueue(sse(
+                "{\"choices\":[{\"delta\":{\"role\":\"assistant\",\"content\":\"\"}}]}",
+                "{\"choices\":[{\"delta\":{\"content\":\"Moin\"}}]}",
+                "{\"choices\":[{\"delta\":{\"content\":\" from Hamburg!\"},\"finish_reason\":\"stop\"}]}",
+                "{\"choices\":[],\"usage\":{\"prompt_tokens\":12,\"completion_tokens\":4,\"total_tokens\":16}}",
+                "[DONE]"));
+
+        List<String> tokens = new ArrayList<>();
+        Response<AiMessage> response = generate(List.of(UserMessage.from("Hi")), List.of(), tokens);
+
+        assertThat(tokens).containsExactly("Moin", " from Hamburg!");
+        assertThat(response.content().text()).isEqualTo("Moin from Hamburg!");
+        assertThat(response.finishReason()).isEqualTo(FinishReason.STOP);
+        assertThat(response.tokenUsage().inputTokenCount()).isEqualTo(12);
+        assertThat(response.tokenUsage().outputTokenCount()).isEqualTo(4);
+
+        RecordedRequest request = server.takeRequest(1, TimeUnit.SECONDS);
+        assertThat(request.getPath()).isEqualTo("/v1/chat/completions");
+        assertThat(request.getHeader("Authorization")).isEqualTo("Bearer test-key");
+        assertThat(request.getBody().readUtf8()).contains("\"stream\":true", "\"content\":\"Hi\"");
+    }
+
+    @Test
+    void assemblesFragmentedToolCalls() throws Exception {
+        server.enqueue(sse(
+                "{\"choices\":[{\"delta\":{\"tool_calls\":[{\"index\":0,\"id\":\"call_1\",\"type\":\"function\","
+                        + "\"function\":{\"name\":\"getCurrentWeather\",\"arguments\":\"\"}}]}}]}",
+                "{\"choices\":[{\"delta\":{\"tool_calls\":[{\"index\":0,\"function\":{\"arguments\":\"{\\\"city\\\":\"}}]}}]}",
+                "{\"choices\":[{\"delta\":{\"tool_calls\":[{\"index\":0,\"function\":{\"arguments\":\"\\\"Hamburg\\\"}\"}}]},"
+                        + "\"finish_reason\":\"tool_calls\"}]}",
+                "[DONE]"));
+
+        ToolSpecification weather = ToolSpecification.builder()
+                .name("getCurrentWeather")
+                .description("Weather")
+                .addParameter("city")
+                .build();
+        Response<AiMessage> response = generate(List.of(UserMessage.from("Weather?")), List.of(weather), new ArrayList<>());
+
+        assertThat(response.finishReason()).isEqualTo(FinishReason.TOOL_EXECUTION);
+        assertThat(response.content().toolExecutionRequests()).containsExactly(ToolExecutionRequest.builder()
+                .id("call_1").name("getCurrentWeather").arguments("{\"city\":\"Hamburg\"}").build());
+        assertThat(server.takeRequest(1, TimeUnit.SECONDS).getBody().readUtf8())
+                .contains("\"tools\":[{\"type\":\"function\",\"function\":{\"name\":\"getCurrentWeather\"");
+    }
+
+    @Test
+    void reportsHttpErrors() {
+        server.enqueue(new MockResponse().setResponseCode(429).setBody("{\"error\":\"rate limited\"}"));
+
+        CompletableFuture<Throwable> error = new CompletableFuture<>();
+        model.generate(List.of(UserMessage.from("Hi")), new StreamingResponseHandler<>() {
+            @Override
+            public void onNext(String token) {
+            }
+
+            @Override
+            public void onError(Throwable e) {
+                error.complete(e);
+            }
+        });
+
+        assertThat(error.join()).hasMessageContaining("HTTP 429").hasMessageContaining("rate limited");
+    }
+
+    private Response<AiMessage> generate(List<ChatMessage> messages, List<ToolSpecification> tools,
+                                         List<String> tokens) throws Exception {
+        CompletableFuture<Response<AiMessage>> result = new CompletableFuture<>();
+        model.generate(messages, tools, new StreamingResponseHandler<>() {
+            @Override
+            public void onNext(String token) {
+                tokens.add(token);
+            }
+
+            @Override
+            public void onComplete(Response<AiMessage> response) {
+                result.complete(response);
+            }
+
+            @Override
+            public void onError(Throwable error) {
+                result.completeExceptionally(error);
+            }
+        });
+        return result.get(5, TimeUnit.SECONDS);
+    }
+}
@@ -0,0 +1,83 @@
+package org.pm.hamburgaiassistant.service;
+
+import dev.langchain4j.agent.tool.ToolSpecification;
+import dev.langchain4j.model.openai.OpenAiTokenizer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import okhttp3.OkHttpClient;
+import org.junit.jupiter.api.Test;
+import org.pm.hamburgaiassistant.events.EventCatalog;
+import org.pm.hamburgaiassistant.events.JsonFileEventSource;
+import org.pm.hamburgaiassistant.geo.PoiIndex;
+import org.pm.hamburgaiassistant.http.UpstreamHttpClients;
+import org.pm.hamburgaiassistant.tools.GoogleDirectionsTool;
+import org.pm.hamburgaiassistant.tools.GooglePlacesTool;
+import org.pm.hamburgaiassistant.tools.HamburgEventsTool;
+import org.pm.hamburgaiassistant.tools.WeatherTool;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.mock.env.MockEnvironment;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class IntentRouterTest {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final AssistantTools tools = assistantTools();
+
+    @Test
+    void sendsOnlyTheToolsOfTheMatchedIntents() {
+        IntentRouter router = new IntentRouter(tools, new OpenAiTokenizer(), meterRegistry, true);
+
+        IntentRouter.Route route = router.route("Wie komme ich zur Elbphilharmonie, und regnet es?");
+
+        assertThat(route.intent()).isEqualTo("weather+directions");
+        assertThat(route.routed()).isTrue();
+        assertThat(route.tools()).extracting(ToolSpecification::name)
+                .containsExactly("getCurrentWeather", "getDirections", "getTravelTime");
+        assertThat(route.tokensSaved()).isPositive();
+    }
+
+    @Test
+    void sendsNoToolsForSmallTalk() {
+        IntentRouter router = new IntentRouter(tools, new OpenAiTokenizer(), meterRegistry, true);
+
+        IntentRouter.Route route = router.route("Moin!");
+
+        assertThat(route.intent()).isEqualTo("smalltalk");
+        assertThat(route.tools()).isEmpty();
+    }
+
+    @Test
+    void keepsToolsForShortAffirmations() {
+        IntentRouter router = new IntentRouter(tools, new OpenAiTokenizer(), meterRegistry, true);
+
+        // "Shall I look up the route?" - "ok"
+        assertThat(router.route("ok").tools()).isSameAs(tools.specifications());
+        assertThat(router.route("Great!").tools()).isSameAs(tools.specifications());
+        assertThat(router.route("Perfect, thank you so much").tools()).isEmpty();
+    }
+
+    @Test
+    void fallsBackToTheFullSetWhenUnsure() {
+        IntentRouter router = new IntentRouter(tools, new OpenAiTokenizer(), meterRegistry, true);
+
+        assertThat(router.route("Tell me something about the Speicherstadt").tools())
+                .isSameAs(tools.specifications());
+        assertThat(router.route("Weather, a cafe and a concert, then how do I get home?").intent()).isEqualTo("mixed");
+
+        // Disabled routing still classifies, so full-set calls are labelled with their intent
+        IntentRouter disabled = new IntentRouter(tools, new OpenAiTokenizer(), meterRegistry, false);
+        IntentRouter.Route route = disabled.route("Is it raining?");
+        assertThat(route.intent()).isEqualTo("weather");
+        assertThat(route.routed()).isFalse();
+        assertThat(route.tools()).isSameAs(tools.specifications());
+    }
+
+    private AssistantTools assistantTools() {
+        UpstreamHttpClients httpClients = new UpstreamHttpClients(new OkHttpClient(), new MockEnvironment(), meterRegistry);
+        GooglePlacesTool placesTool = new GooglePlacesTool(meterRegistry, httpClients, new PoiIndex(meterRegistry));
+        EventCatalog eventCatalog = new EventCatalog(
+                new JsonFileEventSource(new ClassPathResource("events/hamburg-events.json")), meterRegistry, 30);
+        return new AssistantTools(new WeatherTool(meterRegistry, httpClients), placesTool,
+                new GoogleDirectionsTool(meterRegistry, httpClients), new HamburgEventsTool(eventCatalog, placesTool));
+    }
+}
@@ -0,0 +1,108 @@
+package org.pm.hamburgaiassistant.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class LlmAdmissionControllerTest {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    @Test
+    void aChattySessionDoesNotStarveOthers() {
+        LlmAdmissionController admission = new LlmAdmissionController(meterRegistry, 1, 1, 1, 2.0, 10, 5000, 600, 10, 4);
+        LlmAdmissionController.Permit running = admission.acquire("rest", "busy", false);
+        CompletableFuture<LlmAdmissionController.Permit> busy1 = admission.acquireAsync("rest", "busy", false);
+        CompletableFuture<LlmAdmissionController.Permit> busy2 = admission.acquireAsync("rest", "busy", false);
+        CompletableFuture<LlmAdmissionController.Permit> busy3 = admission.acquireAsync("rest", "busy", false);
+        CompletableFuture<LlmAdmissionController.Permit> quiet = admission.acquireAsync("rest", "quiet", false);
+
+        running.succeeded();
+        assertThat(busy1).isDone();
+        busy1.join().succeeded();
+        // "quiet" arrived last but its first call is as far along as "busy"'s second
+        assertThat(quiet).isDone();
+        assertThat(busy2).isNotDone();
+        quiet.join().succeeded();
+        assertThat(busy2).isDone();
+        busy2.join().succeeded();
+        assertThat(busy3).isDone();
+    }
+
+    @Test
+    void overloadHalvesTheLimitAndAFullQueueFailsFast() {
+        LlmAdmissionController admission = new LlmAdmissionController(meterRegistry, 8, 1, 8, 2.0, 1, 5000, 600, 20, 4);
+        List<LlmAdmissionController.Permit> permits = new ArrayList<>();
+        for (int i = 0; i < 8; i++) {
+            permits.add(admission.acquire("stream", "s" + i, false));
+        }
+        permits.get(0).failed(new IOException("DeepSeek streaming call failed: HTTP 429 rate limited"));
+        assertThat(meterRegistry.get("chat.admission.limit").gauge().value()).isEqualTo(4);
+
+        // Seven still in flight against a limit of four: one may wait, the next is turned away
+        CompletableFuture<LlmAdmissionController.Permit> waiting = admission.acquireAsync("stream", "late", false);
+        assertThat(waiting).isNotDone();
+        assertThatThrownBy(() -> admission.acquire("stream", "later", false))
+                .isInstanceOf(LlmAdmissionController.AdmissionRejectedException.class);
+
+        for (int i = 1; i < 5; i++) {
+            permits.get(i).abandoned();
+        }
+        assertThat(waiting).isDone();
+    }
+
+    @Test
+    void rateLimitsNewTurnsButNotFollowUps() {
+        LlmAdmissionController admission = new LlmAdmissionController(meterRegistry, 8, 1, 8, 2.0, 10, 5000, 1, 2, 4);
+        admission.acquire("rest", "s", false).succeeded();
+        admission.acquire("rest", "s", false).succeeded();
+
+        assertThatThrownBy(() -> admission.acquire("rest", "s", false))
+                .isInstanceOf(LlmAdmissionController.AdmissionRejectedException.class);
+        admission.acquire("rest", "s", true).succeeded();
+        admission.acquire("rest", "other", false).succeeded();
+        assertThat(meterRegistry.get("chat.admission.rejected").tag("reason", "rate").counter().count())
+                .isEqualTo(1);
+    }
+
+    @Test
+    void longAnswersAreNotMistakenForLatencySpikes() throws InterruptedException {
+        LlmAdmissionController admission = new LlmAdmissionController(meterRegistry, 8, 1, 8, 2.0, 10, 5000, 600, 100, 4);
+        for (int i = 0; i < 5; i++) {
+            LlmAdmissionController.Permit toolCall = admission.acquire("rest", "s", false);
+            Thread.sleep(5);
+            toolCall.succeeded(12);
+        }
+        // Ten times as long, for twenty times the output
+        LlmAdmissionController.Permit answer = admission.acquire("rest", "s", false);
+        Thread.sleep(50);
+        answer.succeeded(640);
+
+        assertThat(meterRegistry.get("chat.admission.limit").gauge().value()).isEqualTo(8);
+    }
+
+    @Test
+    void backgroundCallsQueueBehindChatTurns() {
+        LlmAdmissionController admission = new LlmAdmissionController(meterRegistry, 1, 1, 1, 2.0, 10, 5000, 600, 10, 4);
+        LlmAdmissionController.Permit running = admission.acquire("rest", "a", false);
+        CompletableFuture<LlmAdmissionController.Permit> summary =
+                CompletableFuture.supplyAsync(() -> admission.acquireBackground("summary"));
+        while (admission.queued() == 0) {
+            Thread.onSpinWait();
+        }
+        CompletableFuture<LlmAdmissionController.Permit> turn = admission.acquireAsync("rest", "b", false);
+
+        running.succeeded();
+        assertThat(turn).isDone();
+        assertThat(summary).isNotDone();
+        turn.join().succeeded();
+        summary.join().succeeded();
+    }
+}
@@ -0,0 +1,80 @@
+package org.pm.hamburgaiassistant.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class SessionMailboxesTest {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    @Test
+    void runsOneSessionInOrderWhileOtherSessionsProceed() throws Exception {
+        SessionMailboxes mailboxes = new SessionMailboxes(meterRegistry, 5, false, 4, false);
+        List<String> started = new CopyOnWriteArrayList<>();
+        CompletableFuture<String> firstTurn = new CompletableFuture<>();
+
+        CompletableFuture<String> first = mailboxes.submit("a", "one", text -> {
+            started.add(text);
+            return firstTurn;
+        });
+        CompletableFuture<String> second = mailboxes.submit("a", "two", text -> {
+            started.add(text);
+            return CompletableFuture.completedFuture(text);
+        });
+        CompletableFuture<String> other = mailboxes.submit("b", "other", text -> {
+            started.add(text);
+            return CompletableFuture.completedFuture(text);
+        });
+
+        // "b" is not held up by the turn still running on "a"
+        assertThat(other.get(5, TimeUnit.SECONDS)).isEqualTo("other");
+        assertThat(started).containsExactly("one", "other");
+        assertThat(second).isNotDone();
+
+        firstTurn.complete("one");
+        assertThat(first.get(5, TimeUnit.SECONDS)).isEqualTo("one");
+        assertThat(second.get(5, TimeUnit.SECONDS)).isEqualTo("two");
+        assertThat(started).containsExactly("one", "other", "two");
+    }
+
+    @Test
+    void rejectsPastTheQueueLimit() throws Exception {
+        SessionMailboxes mailboxes = new SessionMailboxes(meterRegistry, 1, false, 4, false);
+        CompletableFuture<String> running = new CompletableFuture<>();
+        mailboxes.submit("a", "one", text -> running);
+        CompletableFuture<String> queued = mailboxes.submit("a", "two", CompletableFuture::completedFuture);
+        CompletableFuture<String> rejected = mailboxes.submit("a", "three", CompletableFuture::completedFuture);
+
+        assertThatThrownBy(() -> SessionMailboxes.await(rejected))
+                .isInstanceOf(SessionMailboxes.MailboxFullException.class);
+        assertThat(meterRegistry.get("chat.mailbox.queued").gauge().value()).isEqualTo(1);
+
+        running.complete("one");
+        assertThat(queued.get(5, TimeUnit.SECONDS)).isEqualTo("two");
+    }
+
+    @Test
+    void mergesMessagesThatQueuedUpAndSkipsCancelledOnes() throws Exception {
+        SessionMailboxes mailboxes = new SessionMailboxes(meterRegistry, 5, true, 4, false);
+        CompletableFuture<String> running = new CompletableFuture<>();
+        mailboxes.submit("a", "one", text -> running);
+        CompletableFuture<String> two = mailboxes.submit("a", "two", CompletableFuture::completedFuture);
+        CompletableFuture<String> stopped = mailboxes.submit("a", "never mind", CompletableFuture::completedFuture);
+        CompletableFuture<String> three = mailboxes.submit("a", "three", CompletableFuture::completedFuture);
+        stopped.cancel(false);
+
+        running.complete("one");
+        assertThat(two.get(5, TimeUnit.SECONDS)).isEqualTo("two\nthree");
+        assertThat(three.get(5, TimeUnit.SECONDS)).isEqualTo("two\nthree");
+        assertThat(meterRegistry.get("chat.mailbox.messages").tag("result", "merged").counter().count())
+                .isEqualTo(1);
+    }
+}
@@ -0,0 +1,107 @@
+package org.pm.hamburgaiassistant.service;
+
+import dev.langchain4j.data.message.AiMessage;
+import dev.langchain4j.data.message.ChatMessage;
+import dev.langchain4j.model.StreamingResponseHandler;
+import dev.langchain4j.model.chat.StreamingChatLanguageModel;
+import dev.langchain4j.model.openai.OpenAiTokenizer;
+import dev.langchain4j.model.output.Response;
+import dev.langchain4j.model.output.TokenUsage;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.micrometer.observation.ObservationRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.pm.hamburgaiassistant.cache.FirstTurnResponseCache;
+import org.pm.hamburgaiassistant.http.Cancellation;
+import org.pm.hamburgaiassistant.retrieval.GuideRetriever;
+import org.pm.hamburgaiassistant.session.ConversationSummarizer;
+import org.pm.hamburgaiassistant.session.SessionRegistry;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class StreamingChatServiceTest {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final AtomicReference<StreamingResponseHandler<AiMessage>> upstream = new AtomicReference<>();
+    private final List<String> tokens = new ArrayList<>();
+    private final AtomicInteger completions = new AtomicInteger();
+    private SessionRegistry sessionRegistry;
+    private StreamingChatService service;
+
+    @BeforeEach
+    void setUp() {
+        ConversationSummarizer summarizer = new ConversationSummarizer(
+                messages -> Response.from(AiMessage.from("summary")),
+                new LlmAdmissionController(meterRegistry, 4, 1, 8, 2.0, 10, 1000, 60, 10, 4), meterRegistry, 120, 1, 10);
+        sessionRegistry = new SessionRegistry(meterRegistry, new OpenAiTokenizer(), summarizer);
+        ReflectionTestUtils.setField(sessionRegistry, "maxSessions", 100);
+        ReflectionTestUtils.setField(sessionRegistry, "memoryMaxTokens", 2000);
+        GuideRetriever guideRetriever = new GuideRetriever(meterRegistry);
+        ReflectionTestUtils.invokeMethod(guideRetriever, "buildIndex");
+        FirstTurnResponseCache responseCache = new FirstTurnResponseCache(meterRegistry);
+        ReflectionTestUtils.invokeMethod(responseCache, "initCache");
+        ActiveGenerations activeGenerations = new ActiveGenerations(sessionRegistry, meterRegistry);
+        ReflectionTestUtils.invokeMethod(activeGenerations, "listenForEvictions");
+
+        // The test drives the upstream stream by hand through the captured handler
+        StreamingChatLanguageModel model = (List<ChatMessage> messages, StreamingResponseHandler<AiMessage> handler) ->
+                upstream.set(handler);
+        service = new StreamingChatService(model, sessionRegistry, guideRetriever, responseCache,
+                activeGenerations, new SessionMailboxes(meterRegistry, 5, false, 4, false),
+                new LlmAdmissionController(meterRegistry, 4, 1, 8, 2.0, 10, 1000, 60, 10, 4), meterRegistry,
+                ObservationRegistry.NOOP);
+    }
+
+    @Test
+    void stopEndsTheStreamAndKeepsWhatWasShown() {
+        answerOnce("s0", 40, () -> { });
+
+        Cancellation cancellation = service.streamChat("s1", "Tell me about the harbour", tokens::add,
+                completions::incrementAndGet);
+        upstream.get().onNext("The harbour");
+        cancellation.cancel("stop");
+        upstream.get().onNext(" is");
+        upstream.get().onComplete(Response.from(AiMessage.from("The harbour is big")));
+
+        assertThat(tokens).containsExactly("The harbour");
+        assertThat(completions).hasValue(1);
+        List<ChatMessage> memory = sessionRegistry.getOrCreate("s1").memory().messages();
+        assertThat(((AiMessage) memory.get(memory.size() - 1)).text()).isEqualTo("The harbour");
+        assertThat(meterRegistry.get("chat.generations.cancelled").tag("reason", "stop").counter().count())
+                .isEqualTo(1);
+        // One of an average 40 completion tokens was streamed before the stop
+        assertThat(meterRegistry.get("chat.generations.tokens-saved").counter().count()).isEqualTo(39);
+    }
+
+    @Test
+    void clearingTheSessionCancelsItsStream() {
+        service.streamChat("s1", "Hi", tokens::add, completions::incrementAndGet);
+
+        sessionRegistry.remove("s1");
+
+        assertThat(completions).hasValue(1);
+        assertThat(meterRegistry.get("chat.generations.cancelled").tag("reason", "session-closed").counter().count())
+                .isEqualTo(1);
+    }
+
+    @Test
+    void cancellingAfterCompletionIsANoOp() {
+        Cancellation cancellation = answerOnce("s1", 2, completions::incrementAndGet);
+
+        assertThat(cancellation.cancel("disconnect")).isFalse();
+        assertThat(completions).hasValue(1);
+    }
+
+    private Cancellation answerOnce(String sessionId, int completionTokens, Runnable onComplete) {
+        Cancellation cancellation = service.streamChat(sessionId, "Hi", token -> { }, onComplete);
+        upstream.get().onNext("Moin");
+        upstream.get().onComplete(Response.from(AiMessage.from("Moin"), new TokenUsage(10, completionTokens)));
+        return cancellation;
+    }
+}
@@ -0,0 +1,159 @@
+package org.pm.hamburgaiassistant.service;
+
+import dev.langchain4j.agent.tool.ToolExecutionRequest;
+import io.micrometer.core.instrument.observation.DefaultMeterObservationHandler;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.micrometer.observation.ObservationRegistry;
+import okhttp3.OkHttpClient;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.pm.hamburgaiassistant.events.EventCatalog;
+import org.pm.hamburgaiassistant.events.JsonFileEventSource;
+import org.pm.hamburgaiassistant.geo.PoiIndex;
+import org.pm.hamburgaiassistant.http.Cancellation;
+import org.pm.hamburgaiassistant.http.UpstreamHttpClients;
+import org.pm.hamburgaiassistant.tools.GoogleDirectionsTool;
+import org.pm.hamburgaiassistant.tools.GooglePlacesTool;
+import org.pm.hamburgaiassistant.tools.HamburgEventsTool;
+import org.pm.hamburgaiassistant.tools.ToolOutcome;
+import org.pm.hamburgaiassistant.tools.WeatherTool;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.mock.env.MockEnvironment;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ToolExecutionEngineTest {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final ObservationRegistry observationRegistry = observedInto(meterRegistry);
+    private final ToolExecutionEngine engine =
+            new ToolExecutionEngine(sleepingTools(), meterRegistry, observationRegistry, 1000, 4, 16, false);
+
+    @AfterEach
+    void tearDown() {
+        engine.shutdown();
+    }
+
+    @Test
+    void runsCallsOfOneTurnConcurrentlyAndKeepsTheirOrder() {
+        long start = System.nanoTime();
+
+        List<ToolResult> results = engine.executeAll(List.of(call("a", 300), call("b", 200), call("c", 300)), "s1");
+
+        assertThat(results).extracting(ToolResult::text).containsExactly("a done", "b done", "c done");
+        assertThat(results).noneMatch(ToolResult::degraded);
+        assertThat(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start)).isLessThan(700);
+        assertThat(meterRegistry.get("chat.tool").tag("tool", "b").tag("outcome", "success").timer().count())
+                .isEqualTo(1);
+    }
+
+    @Test
+    void answersCallsStillRunningAtTheDeadlineWithAnError() {
+        List<ToolResult> results = engine.executeAll(List.of(call("slow", 5000), call("fast", 10)), "s1");
+
+        assertThat(results.get(0).text()).startsWith("Error").contains("slow");
+        assertThat(results.get(0).degraded()).isTrue();
+        assertThat(results.get(1).text()).isEqualTo("fast done");
+        assertThat(meterRegistry.get("chat.tools.timeouts").counter().count()).isEqualTo(1);
+    }
+
+    @Test
+    void aSingleCallIsHeldToTheDeadlineToo() {
+        long start = System.nanoTime();
+
+        List<ToolResult> results = engine.executeAll(List.of(call("slow", 5000)), "s1");
+
+        assertThat(results.get(0).text()).startsWith("Error").contains("slow");
+        assertThat(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start)).isLessThan(2000);
+    }
+
+    @Test
+    void aFullPoolFailsFastInsteadOfRunningOnTheCaller() {
+        ToolExecutionEngine small =
+                new ToolExecutionEngine(sleepingTools(), meterRegistry, observationRegistry, 1000, 1, 1, false);
+        try {
+            long start = System.nanoTime();
+
+            List<ToolResult> results = small.executeAll(List.of(call("a", 5000), call("b", 5000), call("c", 10)), "s1");
+
+            assertThat(results.get(2).text()).startsWith("Error").contains("busy");
+            assertThat(results.get(2).degraded()).isTrue();
+            assertThat(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start)).isLessThan(2000);
+            assertThat(meterRegistry.get("chat.tools.rejected").counter().count()).isEqualTo(1);
+        } finally {
+            small.shutdown();
+        }
+    }
+
+    @Test
+    void cancellingTheGenerationStopsPendingCalls() throws Exception {
+        Cancellation cancellation = new Cancellation("s1", c -> { });
+        Thread canceller = new Thread(() -> {
+            sleep(100);
+            cancellation.cancel("stop");
+        });
+        canceller.start();
+        long start = System.nanoTime();
+
+        List<ToolResult> results = engine.executeAll(List.of(call("a", 800), call("b", 800)), "s1", cancellation);
+
+        assertThat(results).allSatisfy(result -> assertThat(result.text()).startsWith("Error").contains("cancelled"));
+        assertThat(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start)).isLessThan(600);
+        canceller.join();
+    }
+
+    @Test
+    void keepsTheDegradedMarkOfAnAnswerThatReadsFine() {
+        List<ToolResult> results = engine.executeAll(List.of(call("stale", 10), call("fresh", 10)), "s1");
+
+        assertThat(results).extracting(ToolResult::text).containsExactly("stale done", "fresh done");
+        assertThat(results).extracting(ToolResult::degraded).containsExactly(true, false);
+        assertThat(meterRegistry.get("chat.tool").tag("tool", "stale").tag("outcome", "failure").timer().count())
+                .isEqualTo(1);
+    }
+
+    private static ObservationRegistry observedInto(SimpleMeterRegistry meterRegistry) {
+        ObservationRegistry registry = ObservationRegistry.create();
+        registry.observationConfig().observationHandler(new DefaultMeterObservationHandler(meterRegistry));
+        return registry;
+    }
+
+    private static void sleep(long ms) {
+        try {
+            Thread.sleep(ms);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static ToolExecutionRequest call(String name, long sleepMs) {
+        return ToolExecutionRequest.builder().id(name).name(name).arguments(String.valueOf(sleepMs)).build();
+    }
+
+    // Each "tool" sleeps for the milliseconds given as its arguments; "stale" marks its answer degraded
+    private AssistantTools sleepingTools() {
+        UpstreamHttpClients httpClients = new UpstreamHttpClients(new OkHttpClient(), new MockEnvironment(), meterRegistry);
+        GooglePlacesTool placesTool = new GooglePlacesTool(meterRegistry, httpClients, new PoiIndex(meterRegistry));
+        EventCatalog eventCatalog = new EventCatalog(
+                new JsonFileEventSource(new ClassPathResource("events/hamburg-events.json")), meterRegistry, 30);
+        return new AssistantTools(new WeatherTool(meterRegistry, httpClients), placesTool,
+                new GoogleDirectionsTool(meterRegistry, httpClients), new HamburgEventsTool(eventCatalog, placesTool)) {
+            @Override
+            public String execute(ToolExecutionRequest request, Object memoryId) {
+                try {
+                    Thread.sleep(Long.parseLong(request.arguments()));
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return "interrupted";
+                }
+                if (request.name().equals("stale")) {
+                    ToolOutcome.markDegraded();
+                }
+                return request.name() + " done";
+            }
+        };
+    }
+}
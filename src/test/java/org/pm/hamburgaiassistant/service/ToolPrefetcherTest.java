@@ -0,0 +1,100 @@
+package org.pm.hamburgaiassistant.service;
+
+import dev.langchain4j.agent.tool.ToolExecutionRequest;
+import dev.langchain4j.model.openai.OpenAiTokenizer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.micrometer.observation.ObservationRegistry;
+import okhttp3.OkHttpClient;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.pm.hamburgaiassistant.events.EventCatalog;
+import org.pm.hamburgaiassistant.events.JsonFileEventSource;
+import org.pm.hamburgaiassistant.geo.PoiIndex;
+import org.pm.hamburgaiassistant.http.UpstreamHttpClients;
+import org.pm.hamburgaiassistant.tools.GoogleDirectionsTool;
+import org.pm.hamburgaiassistant.tools.GooglePlacesTool;
+import org.pm.hamburgaiassistant.tools.HamburgEventsTool;
+import org.pm.hamburgaiassistant.tools.WeatherTool;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.mock.env.MockEnvironment;
+
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ToolPrefetcherTest {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final Queue<String> executed = new ConcurrentLinkedQueue<>();
+    private final AssistantTools tools = recordingTools();
+    private final ToolExecutionEngine engine =
+            new ToolExecutionEngine(tools, meterRegistry, ObservationRegistry.NOOP, 1000, 4, 16, false);
+    private final IntentRouter router = new IntentRouter(tools, new OpenAiTokenizer(), meterRegistry, false);
+    private final ToolPrefetcher prefetcher = new ToolPrefetcher(engine, meterRegistry, true);
+
+    @AfterEach
+    void tearDown() {
+        engine.shutdown();
+    }
+
+    @Test
+    void handsThePrefetchedCallToTheModelsMatchingRequest() throws InterruptedException {
+        String message = "How do I get from the main station to the Elbphilharmonie? Will it rain?";
+        ToolPrefetcher.Prefetch prefetch = prefetcher.start(message, router.route(message), "s1", null);
+
+        // The model spells the places its own way and asks for one of the two prefetched calls
+        List<ToolResult> results = engine.executeAll(List.of(call("getDirections",
+                "{\"origin\":\"Hamburg Hbf\",\"destination\":\"Elbphilharmonie, Hamburg\"}")), "s1", null, prefetch);
+        prefetch.finish();
+        // Nobody waits for the unused weather prefetch; it may still be on the pool
+        awaitExecuted(2);
+
+        assertThat(results).extracting(ToolResult::text).containsExactly("getDirections done");
+        assertThat(executed).containsExactlyInAnyOrder("getDirections", "getCurrentWeather");
+        assertThat(count("directions", "hit")).isEqualTo(1);
+        assertThat(count("weather", "waste")).isEqualTo(1);
+    }
+
+    @Test
+    void predictsOnlyCallsWhoseArgumentsTheMessageGives() {
+        assertThat(ToolPrefetcher.predict("How do I get to the Reeperbahn?", tools.specifications())).isEmpty();
+        assertThat(ToolPrefetcher.predict("Cafes near the Inner Alster?", tools.specifications()))
+                .extracting(ToolExecutionRequest::arguments)
+                .containsExactly("{\"query\":\"cafes\",\"location\":\"Binnenalster, Hamburg\"}");
+        assertThat(ToolPrefetcher.matchKey(call("getCurrentWeather", "{\"city\":\"Hamburg, DE\"}")))
+                .isEqualTo(ToolPrefetcher.matchKey(call("getCurrentWeather", "{\"city\":\"hamburg\"}")));
+    }
+
+    private void awaitExecuted(int calls) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(1);
+        while (executed.size() < calls && System.nanoTime() < deadline) {
+            Thread.sleep(5);
+        }
+    }
+
+    private double count(String tool, String result) {
+        return meterRegistry.get("chat.tools.prefetch").tag("tool", tool).tag("result", result).counter().count();
+    }
+
+    private static ToolExecutionRequest call(String name, String arguments) {
+        return ToolExecutionRequest.builder().id(name).name(name).arguments(arguments).build();
+    }
+
+    private AssistantTools recordingTools() {
+        UpstreamHttpClients httpClients = new UpstreamHttpClients(new OkHttpClient(), new MockEnvironment(), meterRegistry);
+        GooglePlacesTool placesTool = new GooglePlacesTool(meterRegistry, httpClients, new PoiIndex(meterRegistry));
+        EventCatalog eventCatalog = new EventCatalog(
+                new JsonFileEventSource(new ClassPathResource("events/hamburg-events.json")), meterRegistry, 30);
+        return new AssistantTools(new WeatherTool(meterRegistry, httpClients), placesTool,
+                new GoogleDirectionsTool(meterRegistry, httpClients), new HamburgEventsTool(eventCatalog, placesTool)) {
+            @Override
+            public String execute(ToolExecutionRequest request, Object memoryId) {
+                executed.add(request.name());
+                return request.name() + " done";
+            }
+        };
+    }
+}
@@ -0,0 +1,87 @@
+package org.pm.hamburgaiassistant.session;
+
+import dev.langchain4j.data.message.AiMessage;
+import dev.langchain4j.data.message.UserMessage;
+import dev.langchain4j.model.openai.OpenAiTokenizer;
+import dev.langchain4j.model.output.Response;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.pm.hamburgaiassistant.service.LlmAdmissionController;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class SessionRegistryTest {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private SessionRegistry registry;
+    private final List<String> evicted = new ArrayList<>();
+
+    @BeforeEach
+    void setUp() {
+        ConversationSummarizer summarizer = new ConversationSummarizer(
+                messages -> Response.from(AiMessage.from("summary")),
+                new LlmAdmissionController(meterRegistry, 4, 1, 8, 2.0, 10, 1000, 60, 10, 4), meterRegistry, 120, 1, 10);
+        registry = new SessionRegistry(meterRegistry, new OpenAiTokenizer(), summarizer);
+        ReflectionTestUtils.setField(registry, "idleTtlMinutes", 30L);
+        ReflectionTestUtils.setField(registry, "maxSessions", 3);
+        ReflectionTestUtils.setField(registry, "maxBytes", Long.MAX_VALUE);
+        ReflectionTestUtils.setField(registry, "memoryMaxTokens", 100_000);
+        registry.registerMetrics();
+        registry.onEviction(session -> evicted.add(session.id()));
+    }
+
+    @Test
+    void evictsLeastRecentlyUsedSessionAtCapacity() {
+        registry.getOrCreate("a");
+        registry.getOrCreate("b");
+        registry.getOrCreate("c");
+        registry.getOrCreate("a");
+
+        registry.getOrCreate("d");
+
+        assertThat(evicted).containsExactly("b");
+        assertThat(registry.find("a")).isPresent();
+        assertThat(registry.size()).isEqualTo(3);
+        assertThat(meterRegistry.get("chat.sessions.live").gauge().value()).isEqualTo(3);
+        assertThat(meterRegistry.get("chat.sessions.evicted").tag("reason", "capacity").counter().count())
+                .isEqualTo(1);
+    }
+
+    @Test
+    void sweeperRemovesIdleSessions() {
+        registry.getOrCreate("a");
+        ReflectionTestUtils.setField(registry, "idleTtlMinutes", 0L);
+
+        registry.sweep();
+
+        assertThat(evicted).containsExactly("a");
+        assertThat(registry.size()).isZero();
+    }
+
+    @Test
+    void sweeperEnforcesHeapBudget() {
+        ChatSession big = registry.getOrCreate("big");
+        big.memory().add(UserMessage.from("x".repeat(50_000)));
+        registry.getOrCreate("small");
+        ReflectionTestUtils.setField(registry, "maxBytes", 10_000L);
+
+        registry.sweep();
+
+        assertThat(evicted).containsExactly("big");
+        assertThat(registry.estimatedBytes()).isEqualTo(registry.find("small").orElseThrow().estimatedBytes());
+    }
+
+    @Test
+    void sessionKeepsItsMemoryAcrossLookups() {
+        registry.getOrCreate("a").memory().add(UserMessage.from("Moin"));
+
+        assertThat(registry.getOrCreate("a").memory().messages()).hasSize(1);
+        assertThat(registry.remove("a")).isTrue();
+        assertThat(registry.getOrCreate("a").memory().messages()).isEmpty();
+    }
+}
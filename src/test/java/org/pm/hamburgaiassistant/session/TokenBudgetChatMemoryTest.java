@@ -0,0 +1,153 @@
+package org.pm.hamburgaiassistant.session;
+
+import dev.langchain4j.agent.tool.ToolExecutionRequest;
+import dev.langchain4j.data.message.AiMessage;
+import dev.langchain4j.data.message.ChatMessage;
+import dev.langchain4j.data.message.SystemMessage;
+import dev.langchain4j.data.message.ToolExecutionResultMessage;
+import dev.langchain4j.data.message.UserMessage;
+import dev.langchain4j.model.openai.OpenAiTokenizer;
+import dev.langchain4j.model.output.Response;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.pm.hamburgaiassistant.service.LlmAdmissionController;
+
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class TokenBudgetChatMemoryTest {
+
+    private final OpenAiTokenizer tokenizer = new OpenAiTokenizer();
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    private static void addTurn(TokenBudgetChatMemory memory, int n) {
+        ToolExecutionRequest request = ToolExecutionRequest.builder()
+                .id("call_" + n).name("searchPlaces").arguments("{\"query\":\"cafes\"}").build();
+        memory.add(UserMessage.from("Question " + n + ": where can I get coffee near the Alster?"));
+        memory.add(AiMessage.from(request));
+        memory.add(ToolExecutionResultMessage.from(request, "Found 5 places: " + "Cafe Alster, Jungfernstieg. ".repeat(20)));
+        memory.add(AiMessage.from("Try Cafe Alster on the Jungfernstieg for turn " + n + "."));
+    }
+
+    @Test
+    void compactsOldTurnsIntoASummaryWithoutBlockingTheCaller() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        ConversationSummarizer summarizer = new ConversationSummarizer(messages -> {
+            try {
+                release.await(5, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return Response.from(AiMessage.from("The visitor wants coffee near the Alster."));
+        }, new LlmAdmissionController(meterRegistry, 4, 1, 8, 2.0, 10, 1000, 60, 10, 4), meterRegistry, 120, 1, 10);
+        TokenBudgetChatMemory memory = new TokenBudgetChatMemory("s1", tokenizer, 600, summarizer);
+
+        for (int n = 1; n <= 4; n++) {
+            addTurn(memory, n);
+        }
+
+        // Evicted turns are out of the window before the summary exists
+        List<ChatMessage> pending = memory.messages();
+        assertThat(pending.get(0)).isInstanceOf(UserMessage.class);
+        assertThat(memory.tokenCount()).isLessThanOrEqualTo(600);
+
+        release.countDown();
+        awaitSummary(memory);
+        List<ChatMessage> messages = memory.messages();
+        assertThat(((SystemMessage) messages.get(0)).text())
+                .isEqualTo(TokenBudgetChatMemory.SUMMARY_PREFIX + "The visitor wants coffee near the Alster.");
+        // Whole turns only: a tool call is never separated from its result
+        assertThat(messages.get(1)).isInstanceOf(UserMessage.class);
+        assertThat(((UserMessage) messages.get(messages.size() - 4)).singleText()).startsWith("Question 4");
+        assertThat(memory.tokenCount()).isLessThanOrEqualTo(600);
+    }
+
+    @Test
+    void fallsBackToAnExtractiveSummaryWhenTheModelFails() throws Exception {
+        ConversationSummarizer summarizer = new ConversationSummarizer(messages -> {
+            throw new IllegalStateException("upstream down");
+        }, new LlmAdmissionController(meterRegistry, 4, 1, 8, 2.0, 10, 1000, 60, 10, 4), meterRegistry, 120, 1, 10);
+        TokenBudgetChatMemory memory = new TokenBudgetChatMemory("s1", tokenizer, 600, summarizer);
+
+        for (int n = 1; n <= 4; n++) {
+            addTurn(memory, n);
+        }
+        awaitSummary(memory);
+
+        assertThat(((SystemMessage) memory.messages().get(0)).text())
+                .contains("Earlier the visitor asked:", "Question 1");
+    }
+
+    @Test
+    void staysWithinBudgetWhileASummaryIsStillRunning() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        ConversationSummarizer summarizer = new ConversationSummarizer(messages -> {
+            try {
+                release.await(10, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return Response.from(AiMessage.from(messages.toString().contains("Question 1:")
+                    ? "The visitor asked about coffee first." : "Then about coffee again."));
+        }, new LlmAdmissionController(meterRegistry, 4, 1, 8, 2.0, 10, 1000, 60, 10, 4), meterRegistry, 120, 1, 10);
+        TokenBudgetChatMemory memory = new TokenBudgetChatMemory("s1", tokenizer, 600, summarizer);
+
+        try {
+            for (int n = 1; n <= 12; n++) {
+                addTurn(memory, n);
+                assertThat(memory.tokenCount()).isLessThanOrEqualTo(600);
+            }
+        } finally {
+            release.countDown();
+        }
+
+        // Turns evicted meanwhile go into the next summary once the first one lands
+        for (int i = 0; i < 100 && !memory.messages().get(0).toString().contains("again"); i++) {
+            Thread.sleep(20);
+        }
+        assertThat(((SystemMessage) memory.messages().get(0)).text()).endsWith("Then about coffee again.");
+        assertThat(memory.tokenCount()).isLessThanOrEqualTo(600);
+    }
+
+    @Test
+    void dropsASummaryThatFinishesAfterClear() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        CountDownLatch summarized = new CountDownLatch(2);
+        ConversationSummarizer summarizer = new ConversationSummarizer(messages -> {
+            try {
+                release.await(5, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            summarized.countDown();
+            boolean beforeClear = messages.toString().contains("Question 1");
+            return Response.from(AiMessage.from(beforeClear ? "Before the clear." : "After the clear."));
+        }, new LlmAdmissionController(meterRegistry, 4, 1, 8, 2.0, 10, 1000, 60, 10, 4), meterRegistry, 120, 1, 10);
+        TokenBudgetChatMemory memory = new TokenBudgetChatMemory("s1", tokenizer, 600, summarizer);
+
+        for (int n = 1; n <= 4; n++) {
+            addTurn(memory, n);
+        }
+        memory.clear();
+        // The cleared memory compacts again instead of waiting for the old summary
+        for (int n = 5; n <= 8; n++) {
+            addTurn(memory, n);
+        }
+        release.countDown();
+        assertThat(summarized.await(5, TimeUnit.SECONDS)).isTrue();
+        awaitSummary(memory);
+
+        assertThat(((SystemMessage) memory.messages().get(0)).text())
+                .isEqualTo(TokenBudgetChatMemory.SUMMARY_PREFIX + "After the clear.");
+        assertThat(memory.tokenCount()).isLessThanOrEqualTo(600);
+    }
+
+    private static void awaitSummary(TokenBudgetChatMemory memory) throws InterruptedException {
+        for (int i = 0; i < 100 && !(memory.messages().get(0) instanceof SystemMessage); i++) {
+            Thread.sleep(20);
+        }
+    }
+}
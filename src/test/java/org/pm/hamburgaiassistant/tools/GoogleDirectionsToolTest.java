@@ -0,0 +1,96 @@
+package org.pm.hamburgaiassistant.tools;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import okhttp3.MediaType;
+import okhttp3.OkHttpClient;
+import okhttp3.Protocol;
+import okhttp3.Response;
+import okhttp3.ResponseBody;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.pm.hamburgaiassistant.http.UpstreamHttpClients;
+import org.springframework.mock.env.MockEnvironment;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class GoogleDirectionsToolTest {
+
+    private static final String ROUTE = """
+            {"status": "OK", "routes": [{"legs": [{"start_address": "Hauptbahnhof", "end_address": "Elbphilharmonie",
+              "distance": {"text": "2.5 km"}, "duration": {"text": "12 mins"},
+              "steps": [{"html_instructions": "Take the <b>U3</b>", "distance": {"text": "2.5 km"},
+                "duration": {"text": "12 mins"}}]}]}]}
+            """;
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final AtomicInteger upstreamCalls = new AtomicInteger();
+    private GoogleDirectionsTool tool;
+
+    @BeforeEach
+    void setUp() {
+        OkHttpClient googleStub = new OkHttpClient.Builder()
+                .addInterceptor(chain -> {
+                    upstreamCalls.incrementAndGet();
+                    return new Response.Builder()
+                            .request(chain.request())
+                            .protocol(Protocol.HTTP_1_1)
+                            .code(200)
+                            .message("OK")
+                            .body(ResponseBody.create(ROUTE, MediaType.get("application/json")))
+                            .build();
+                })
+                .build();
+        tool = new GoogleDirectionsTool(meterRegistry,
+                new UpstreamHttpClients(googleStub, new MockEnvironment(), meterRegistry));
+        ReflectionTestUtils.setField(tool, "apiKey", "test");
+        ReflectionTestUtils.setField(tool, "maxCacheEntries", 100L);
+        ReflectionTestUtils.setField(tool, "staticTtlHours", 24L);
+        ReflectionTestUtils.setField(tool, "transitBucketMinutes", 15L);
+        tool.initCache();
+    }
+
+    @Test
+    void normalizesTravelModes() {
+        assertThat(GoogleDirectionsTool.normalizeMode(null)).isEqualTo("transit");
+        assertThat(GoogleDirectionsTool.normalizeMode(" ")).isEqualTo("transit");
+        assertThat(GoogleDirectionsTool.normalizeMode("On Foot")).isEqualTo("walking");
+        assertThat(GoogleDirectionsTool.normalizeMode("taxi")).isEqualTo("driving");
+        assertThat(GoogleDirectionsTool.normalizeMode("bike")).isEqualTo("bicycling");
+        assertThat(GoogleDirectionsTool.normalizeMode("ferry")).isEqualTo("transit");
+    }
+
+    @Test
+    void transitRoutesExpireWithTheirDepartureWindow() {
+        tool.getDirections("Hbf", "Elbphilharmonie", "transit");
+        tool.getDirections("Hamburg Hauptbahnhof", "elphi", "U-Bahn");
+        tool.getDirections("Hbf", "Elbphilharmonie", "walking");
+
+        assertThat(upstreamCalls).hasValue(2);
+        long bucketSeconds = Duration.ofMinutes(15).toSeconds();
+        Instant windowEnd = Instant.ofEpochSecond((Instant.now().getEpochSecond() / bucketSeconds + 1) * bucketSeconds);
+        Cache<Object, Object> cache = cache();
+        for (Map.Entry<Object, Object> entry : cache.asMap().entrySet()) {
+            Duration expiresAfter = cache.policy().expireVariably().orElseThrow()
+                    .getExpiresAfter(entry.getKey()).orElseThrow();
+            if (entry.getKey().toString().contains("transit")) {
+                assertThat(expiresAfter).isLessThanOrEqualTo(Duration.ofMinutes(15));
+                assertThat(Duration.between(Instant.now(), windowEnd).minus(expiresAfter).abs())
+                        .isLessThan(Duration.ofSeconds(2));
+            } else {
+                assertThat(expiresAfter).isGreaterThan(Duration.ofHours(23));
+            }
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private Cache<Object, Object> cache() {
+        return (Cache<Object, Object>) ReflectionTestUtils.getField(tool, "cache");
+    }
+}
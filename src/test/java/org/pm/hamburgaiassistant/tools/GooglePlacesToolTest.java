@@ -0,0 +1,139 @@
+package org.pm.hamburgaiassistant.tools;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import okhttp3.OkHttpClient;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.pm.hamburgaiassistant.geo.PoiIndex;
+import org.pm.hamburgaiassistant.http.UpstreamHttpClients;
+import org.springframework.mock.env.MockEnvironment;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.nio.file.Path;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class GooglePlacesToolTest {
+
+    private static final String FISCHBROETCHEN = """
+            {"status":"OK","results":[
+              {"place_id":"p1","name":"Brücke 10","formatted_address":"St. Pauli Landungsbrücken 10, Hamburg",
+               "rating":4.6,"user_ratings_total":5321,"opening_hours":{"open_now":true},
+               "geometry":{"location":{"lat":53.5457,"lng":9.9700}}},
+              {"place_id":"p2","name":"Fischbrötchen Landungsbrücken","rating":4.2,"user_ratings_total":880}
+            ]}
+            """;
+
+    private static final String ALSTER_CAFES = """
+            {"status":"OK","results":[
+              {"place_id":"c1","name":"Alex im Alsterpavillon","formatted_address":"Jungfernstieg 54, Hamburg",
+               "rating":3.9,"user_ratings_total":7000,"geometry":{"location":{"lat":53.5526,"lng":9.9924}}},
+              {"place_id":"c2","name":"Café Paris","rating":4.4,"user_ratings_total":4100,
+               "geometry":{"location":{"lat":53.5503,"lng":9.9936}}},
+              {"place_id":"c3","name":"Balz und Balz","rating":4.5,"user_ratings_total":900,
+               "geometry":{"location":{"lat":53.5541,"lng":9.9895}}}
+            ]}
+            """;
+
+    @TempDir
+    Path tempDir;
+
+    private MockWebServer server;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        server = new MockWebServer();
+        server.start();
+    }
+
+    @AfterEach
+    void tearDown() throws Exception {
+        server.shutdown();
+    }
+
+    private GooglePlacesTool newTool() {
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        PoiIndex poiIndex = new PoiIndex(meterRegistry);
+        ReflectionTestUtils.setField(poiIndex, "enabled", true);
+        ReflectionTestUtils.setField(poiIndex, "landmarks", "geo/hamburg-landmarks.json");
+        ReflectionTestUtils.setField(poiIndex, "radiusMeters", 1000.0);
+        ReflectionTestUtils.setField(poiIndex, "minResults", 3);
+        ReflectionTestUtils.setField(poiIndex, "maxResults", 5);
+        ReflectionTestUtils.setField(poiIndex, "maxAgeHours", 168L);
+        ReflectionTestUtils.invokeMethod(poiIndex, "seed");
+        GooglePlacesTool tool = new GooglePlacesTool(meterRegistry,
+                new UpstreamHttpClients(new OkHttpClient(), new MockEnvironment(), meterRegistry), poiIndex);
+        ReflectionTestUtils.setField(tool, "apiKey", "test");
+        ReflectionTestUtils.setField(tool, "apiUrl", server.url("/place").toString());
+        ReflectionTestUtils.setField(tool, "maxCacheEntries", 100L);
+        ReflectionTestUtils.setField(tool, "cacheTtlHours", 24L);
+        ReflectionTestUtils.setField(tool, "snapshotFile", tempDir.resolve("places.json").toString());
+        tool.initCache();
+        return tool;
+    }
+
+    @Test
+    void repeatedQueriesAreServedFromCache() {
+        server.enqueue(new MockResponse().setBody(FISCHBROETCHEN));
+        GooglePlacesTool tool = newTool();
+
+        String first = tool.searchPlaces("Fischbrötchen near Landungsbrücken", "Hamburg");
+        String second = tool.searchPlaces("  fischbrötchen near  landungsbrücken ", "hamburg");
+
+        assertThat(first).contains("1. **Brücke 10**", "Rating: 4.6/5 (5321 reviews)", "Status: Open now");
+        assertThat(second).contains("1. **Brücke 10**", "2. **Fischbrötchen Landungsbrücken**");
+        assertThat(server.getRequestCount()).isEqualTo(1);
+    }
+
+    @Test
+    void snapshotSurvivesRestart() {
+        server.enqueue(new MockResponse().setBody(FISCHBROETCHEN));
+        GooglePlacesTool before = newTool();
+        before.searchPlaces("Fischbrötchen near Landungsbrücken", "Hamburg");
+        before.snapshotOnShutdown();
+
+        GooglePlacesTool after = newTool();
+        String result = after.searchPlaces("Fischbrötchen near Landungsbrücken", "Hamburg");
+
+        assertThat(result).contains("1. **Brücke 10**", "Address not available");
+        assertThat(server.getRequestCount()).isEqualTo(1);
+    }
+
+    @Test
+    void upstreamFailuresAreNotCached() {
+        server.enqueue(new MockResponse().setResponseCode(500));
+        server.enqueue(new MockResponse().setBody(FISCHBROETCHEN));
+        GooglePlacesTool tool = newTool();
+
+        assertThat(tool.searchPlaces("museums", "Hamburg")).isEqualTo("Sorry, I couldn't fetch places data.");
+        assertThat(tool.searchPlaces("museums", "Hamburg")).contains("Brücke 10");
+    }
+
+    @Test
+    void categoryNearLandmarkIsAnsweredFromGuideLandmarks() {
+        GooglePlacesTool tool = newTool();
+
+        String result = tool.searchPlaces("museums near the Speicherstadt", "Hamburg");
+
+        assertThat(result).contains("(nearest first)", "**Miniatur Wunderland**", "Kehrwieder 2-4", "Distance: ");
+        assertThat(server.getRequestCount()).isZero();
+    }
+
+    @Test
+    void searchedPlacesAnswerLaterQuestionsNearby() {
+        server.enqueue(new MockResponse().setBody(ALSTER_CAFES));
+        GooglePlacesTool tool = newTool();
+
+        // No cafes in the guide, so the first question goes to Google
+        assertThat(tool.searchPlaces("cafes", "Binnenalster")).contains("1. **Alex im Alsterpavillon**");
+        String nearby = tool.searchPlaces("coffee shops near Jungfernstieg", "Hamburg");
+
+        assertThat(nearby).contains("1. **Alex im Alsterpavillon**", "Café Paris", "Balz und Balz",
+                "Rating: 4.4/5 (4100 reviews)");
+        assertThat(server.getRequestCount()).isEqualTo(1);
+    }
+}
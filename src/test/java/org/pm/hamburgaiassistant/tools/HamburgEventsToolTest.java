@@ -0,0 +1,96 @@
+package org.pm.hamburgaiassistant.tools;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import okhttp3.OkHttpClient;
+import org.junit.jupiter.api.Test;
+import org.pm.hamburgaiassistant.events.Event;
+import org.pm.hamburgaiassistant.events.EventCatalog;
+import org.pm.hamburgaiassistant.events.EventSource;
+import org.pm.hamburgaiassistant.geo.PoiIndex;
+import org.pm.hamburgaiassistant.http.UpstreamHttpClients;
+import org.springframework.mock.env.MockEnvironment;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class HamburgEventsToolTest {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    @Test
+    void weekendStartsFridayEveningOnWeekdays() {
+        // Wednesday
+        HamburgEventsTool.DateRange range = HamburgEventsTool.parseWhen("this weekend",
+                LocalDateTime.of(2026, 10, 21, 10, 0));
+
+        assertThat(range.from()).isEqualTo(LocalDateTime.of(2026, 10, 23, 17, 0));
+        assertThat(range.to().toLocalDate()).isEqualTo("2026-10-25");
+    }
+
+    @Test
+    void weekendStartsNowOnSaturdayMorning() {
+        LocalDateTime saturdayMorning = LocalDateTime.of(2026, 10, 24, 9, 30);
+
+        HamburgEventsTool.DateRange range = HamburgEventsTool.parseWhen("this weekend", saturdayMorning);
+
+        assertThat(range.from()).isEqualTo(saturdayMorning);
+        assertThat(range.to().toLocalDate()).isEqualTo("2026-10-25");
+    }
+
+    @Test
+    void weekendOnSundayIsTheRestOfSunday() {
+        LocalDateTime sundayNoon = LocalDateTime.of(2026, 10, 25, 12, 0);
+
+        HamburgEventsTool.DateRange range = HamburgEventsTool.parseWhen("wochenende", sundayNoon);
+
+        assertThat(range.from()).isEqualTo(sundayNoon);
+        assertThat(range.to().toLocalDate()).isEqualTo("2026-10-25");
+    }
+
+    @Test
+    void nextWeekIsTheComingMondayToSunday() {
+        HamburgEventsTool.DateRange fromWednesday = HamburgEventsTool.parseWhen("next week",
+                LocalDateTime.of(2026, 10, 21, 10, 0));
+        HamburgEventsTool.DateRange fromSunday = HamburgEventsTool.parseWhen("nächste Woche",
+                LocalDateTime.of(2026, 10, 25, 12, 0));
+
+        assertThat(fromWednesday.from()).isEqualTo(LocalDateTime.of(2026, 10, 26, 0, 0));
+        assertThat(fromWednesday.to().toLocalDate()).isEqualTo("2026-11-01");
+        assertThat(fromSunday).isEqualTo(fromWednesday);
+    }
+
+    @Test
+    void fallsBackToVenueSearchWithoutEventListings() {
+        List<String> queries = new ArrayList<>();
+        UpstreamHttpClients httpClients = new UpstreamHttpClients(new OkHttpClient(), new MockEnvironment(), meterRegistry);
+        GooglePlacesTool placesTool = new GooglePlacesTool(meterRegistry, httpClients, new PoiIndex(meterRegistry)) {
+            @Override
+            public String searchPlaces(String query, String location) {
+                queries.add(query + " in " + location);
+                return "- Elbphilharmonie";
+            }
+        };
+        EventSource nothingConfigured = new EventSource() {
+            @Override
+            public String name() {
+                return "none";
+            }
+
+            @Override
+            public List<Event> fetch(LocalDate from, LocalDate to) {
+                return List.of();
+            }
+        };
+        EventCatalog catalog = new EventCatalog(nothingConfigured, meterRegistry, 30);
+        catalog.refresh();
+
+        String answer = new HamburgEventsTool(catalog, placesTool).findHamburgEvents("this weekend", "concerts", "");
+
+        assertThat(queries).containsExactly("concerts events venues in Hamburg");
+        assertThat(answer).contains("Elbphilharmonie", "Hafengeburtstag");
+    }
+}
@@ -0,0 +1,31 @@
+package org.pm.hamburgaiassistant.tools;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class LandmarkAliasesTest {
+
+    @Test
+    void spellingsOfOneLandmarkShareAKey() {
+        assertThat(LandmarkAliases.key("Hbf")).isEqualTo(LandmarkAliases.key("Hamburg Hauptbahnhof"))
+                .isEqualTo(LandmarkAliases.key("main station, Hamburg"));
+        assertThat(LandmarkAliases.key("Landungsbrücken")).isEqualTo(LandmarkAliases.key("landungsbruecken"));
+        assertThat(LandmarkAliases.resolve("elphi")).isEqualTo("Elbphilharmonie Hamburg");
+    }
+
+    @Test
+    void ambiguousWordsAreLeftAlone() {
+        assertThat(LandmarkAliases.resolve("ham")).isEqualTo("ham");
+        assertThat(LandmarkAliases.resolve("Alster")).isEqualTo("Alster");
+        assertThat(LandmarkAliases.resolve("zoo")).isEqualTo("zoo");
+        assertThat(LandmarkAliases.resolve("Hamburg Zoo")).isEqualTo("Hagenbeck Zoo, Hamburg");
+    }
+
+    @Test
+    void onlyWholeNamesMatch() {
+        assertThat(LandmarkAliases.resolve("Hotel near the airport")).isEqualTo("Hotel near the airport");
+        assertThat(LandmarkAliases.key("Reeperbahn 1")).isEqualTo("reeperbahn 1");
+        assertThat(LandmarkAliases.key("Reeperbahn, Hamburg, Germany")).isEqualTo(LandmarkAliases.key("reeperbahn"));
+    }
+}
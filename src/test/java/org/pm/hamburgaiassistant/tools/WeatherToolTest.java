@@ -0,0 +1,121 @@
+package org.pm.hamburgaiassistant.tools;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import okhttp3.OkHttpClient;
+import okhttp3.mockwebserver.Dispatcher;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.pm.hamburgaiassistant.http.UpstreamHttpClients;
+import org.springframework.mock.env.MockEnvironment;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class WeatherToolTest {
+
+    private static final String HAMBURG = """
+            {"name":"Hamburg","weather":[{"description":"light rain"}],
+             "main":{"temp":11.5,"feels_like":9.8,"humidity":87}}
+            """;
+
+    private MockWebServer server;
+    private WeatherTool weatherTool;
+    private final AtomicBoolean upstreamDown = new AtomicBoolean();
+
+    @BeforeEach
+    void setUp() throws Exception {
+        server = new MockWebServer();
+        server.setDispatcher(new Dispatcher() {
+            @Override
+            public MockResponse dispatch(RecordedRequest request) {
+                if (upstreamDown.get()) {
+                    return new MockResponse().setResponseCode(503);
+                }
+                return new MockResponse().setBody(HAMBURG).setBodyDelay(200, TimeUnit.MILLISECONDS);
+            }
+        });
+        server.start();
+
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        weatherTool = new WeatherTool(meterRegistry,
+                new UpstreamHttpClients(new OkHttpClient(), new MockEnvironment(), meterRegistry));
+        ReflectionTestUtils.setField(weatherTool, "apiKey", "test");
+        ReflectionTestUtils.setField(weatherTool, "apiUrl", server.url("/weather").toString());
+        ReflectionTestUtils.setField(weatherTool, "cacheTtlSeconds", 300L);
+        ReflectionTestUtils.setField(weatherTool, "maxCachedCities", 100L);
+        weatherTool.initCache();
+    }
+
+    @AfterEach
+    void tearDown() throws Exception {
+        server.shutdown();
+    }
+
+    @Test
+    void normalizesCitySpellingsOntoOneKey() {
+        assertThat(WeatherTool.normalizeCity("hamburg")).isEqualTo("hamburg");
+        assertThat(WeatherTool.normalizeCity("  Hamburg, DE ")).isEqualTo("hamburg");
+        assertThat(WeatherTool.normalizeCity("Hamburg, Germany")).isEqualTo("hamburg");
+        assertThat(WeatherTool.normalizeCity("Paris, FR")).isEqualTo("paris,fr");
+    }
+
+    @Test
+    void concurrentLookupsShareOneUpstreamCall() throws Exception {
+        ExecutorService pool = Executors.newFixedThreadPool(32);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<String>> results = new ArrayList<>();
+        for (int i = 0; i < 200; i++) {
+            String spelling = i % 2 == 0 ? "Hamburg" : "hamburg, DE";
+            results.add(pool.submit(() -> {
+                start.await();
+                return weatherTool.getCurrentWeather(spelling);
+            }));
+        }
+        start.countDown();
+        for (Future<String> result : results) {
+            assertThat(result.get()).startsWith("Weather in Hamburg: light rain");
+        }
+        pool.shutdown();
+
+        assertThat(server.getRequestCount()).isEqualTo(1);
+    }
+
+    @Test
+    void servesLastKnownObservationWhenUpstreamFails() {
+        // Expire entries immediately so the next lookup has to go upstream
+        ReflectionTestUtils.setField(weatherTool, "cacheTtlSeconds", 0L);
+        weatherTool.initCache();
+        ToolOutcome live = new ToolOutcome();
+        ToolOutcome.callWith(live, () -> weatherTool.getCurrentWeather("Hamburg"));
+
+        upstreamDown.set(true);
+        ToolOutcome fallback = new ToolOutcome();
+        String result = ToolOutcome.callWith(fallback, () -> weatherTool.getCurrentWeather("Hamburg"));
+
+        assertThat(result).startsWith("Weather in Hamburg: light rain")
+                .contains("live data temporarily unavailable");
+        assertThat(live.isDegraded()).isFalse();
+        assertThat(fallback.isDegraded()).isTrue();
+    }
+
+    @Test
+    void reportsFailureWhenNothingIsCached() {
+        upstreamDown.set(true);
+
+        assertThat(weatherTool.getCurrentWeather("Berlin"))
+                .isEqualTo("Sorry, I couldn't fetch the weather data for Berlin");
+    }
+}
@@ -0,0 +1,66 @@
+package org.pm.hamburgaiassistant.websocket;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonObject;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class TokenBatcherTest {
+
+    private final TokenBatcher batcher = new TokenBatcher(new SimpleMeterRegistry(), 30, 250, 16);
+    private final List<String> frames = new CopyOnWriteArrayList<>();
+
+    @AfterEach
+    void tearDown() {
+        batcher.shutdown();
+    }
+
+    @Test
+    void sendsTheFirstTokenAloneAndCoalescesTheRest() throws Exception {
+        TokenBatcher.Batch batch = batcher.open(null, frames::add);
+
+        batch.add("Moin");
+        batch.add(" from");
+        batch.add(" the");
+        Thread.sleep(200);
+        batch.add(" harbour");
+        batch.finish();
+
+        assertThat(frames).extracting(TokenBatcherTest::content).containsExactly("Moin", " from the", " harbour");
+    }
+
+    @Test
+    void flushesEarlyOnceABatchReachesTheByteLimit() {
+        TokenBatcher.Batch batch = batcher.open(250L, frames::add);
+
+        batch.add("a");
+        batch.add("0123456789");
+        batch.add("0123456789");
+        batch.add("tail");
+
+        assertThat(frames).extracting(TokenBatcherTest::content).containsExactly("a", "01234567890123456789");
+        batch.finish();
+        assertThat(frames).hasSize(3);
+    }
+
+    @Test
+    void zeroWindowSendsEveryTokenAndFramesAreValidJson() {
+        TokenBatcher.Batch batch = batcher.open(0L, frames::add);
+
+        batch.add("\"Quoted\"\n");
+        batch.add("back\\slash\u0001");
+
+        assertThat(frames).extracting(TokenBatcherTest::content).containsExactly("\"Quoted\"\n", "back\\slash\u0001");
+        assertThat(new Gson().fromJson(frames.get(0), JsonObject.class).get("type").getAsString()).isEqualTo("token");
+    }
+
+    private static String content(String frame) {
+        return new Gson().fromJson(frame, JsonObject.class).get("content").getAsString();
+    }
+}
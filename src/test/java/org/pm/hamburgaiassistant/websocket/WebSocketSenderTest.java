@@ -0,0 +1,143 @@
+package org.pm.hamburgaiassistant.websocket;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketSession;
+
+import java.lang.reflect.Proxy;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class WebSocketSenderTest {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final WebSocketSender sender = new WebSocketSender(meterRegistry, 1000, 10_000, 64, false);
+    private final List<String> delivered = new CopyOnWriteArrayList<>();
+    private final List<CloseStatus> closes = new CopyOnWriteArrayList<>();
+    private final CountDownLatch clientReads = new CountDownLatch(1);
+
+    @AfterEach
+    void tearDown() {
+        clientReads.countDown();
+        sender.shutdown();
+    }
+
+    @Test
+    void deliversInOrderOffTheCallingThread() throws Exception {
+        clientReads.countDown();
+        WebSocketSender.Outbox outbox = sender.outbox(session("a"));
+
+        for (int i = 0; i < 5; i++) {
+            assertThat(outbox.send("frame-" + i)).isTrue();
+        }
+
+        waitFor(() -> delivered.size() == 5);
+        assertThat(delivered).containsExactly("frame-0", "frame-1", "frame-2", "frame-3", "frame-4");
+    }
+
+    @Test
+    void slowClientBecomesCongestedThenIsDisconnected() throws Exception {
+        WebSocketSender.Outbox outbox = sender.outbox(session("slow"));
+
+        // The first frame blocks in the client's send; the rest pile up without blocking the caller
+        long start = System.nanoTime();
+        assertThat(outbox.send("x".repeat(100))).isTrue();
+        assertThat(outbox.send("x".repeat(150))).isTrue();
+        assertThat(outbox.send("x".repeat(150))).isTrue();
+        assertThat(outbox.congested()).isTrue();
+        assertThat(outbox.send("x".repeat(150))).isFalse();
+        assertThat(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start)).isLessThan(500);
+
+        waitFor(() -> !closes.isEmpty());
+        assertThat(closes).containsExactly(CloseStatus.SESSION_NOT_RELIABLE);
+        assertThat(outbox.send("late")).isFalse();
+        assertThat(meterRegistry.get("chat.ws.sessions.dropped").tag("reason", "buffer").counter().count())
+                .isEqualTo(1);
+    }
+
+    @Test
+    void blockedClientsDoNotDelayOthers() throws Exception {
+        // More stalled clients than a small fixed pool would have had threads
+        for (int i = 0; i < 8; i++) {
+            assertThat(sender.outbox(session("stuck-" + i)).send("stuck")).isTrue();
+        }
+        WebSocketSender.Outbox healthy = sender.outbox(session("healthy", new CountDownLatch(0)));
+
+        long start = System.nanoTime();
+        assertThat(healthy.send("hello")).isTrue();
+
+        waitFor(() -> delivered.contains("hello"));
+        assertThat(delivered).containsExactly("hello");
+        assertThat(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start)).isLessThan(1000);
+    }
+
+    @Test
+    void aClientNeedingASenderPastTheCapIsDropped() throws Exception {
+        WebSocketSender capped = new WebSocketSender(meterRegistry, 1000, 10_000, 2, false);
+        try {
+            assertThat(capped.outbox(session("stuck-1")).send("stuck")).isTrue();
+            assertThat(capped.outbox(session("stuck-2")).send("stuck")).isTrue();
+
+            assertThat(capped.outbox(session("third")).send("hello")).isFalse();
+
+            waitFor(() -> !closes.isEmpty());
+            assertThat(closes).containsExactly(CloseStatus.SESSION_NOT_RELIABLE);
+            assertThat(meterRegistry.get("chat.ws.sessions.dropped").tag("reason", "senders").counter().count())
+                    .isEqualTo(1);
+        } finally {
+            capped.shutdown();
+        }
+    }
+
+    @Test
+    void stalledSendIsDisconnectedWithoutFurtherFrames() throws Exception {
+        WebSocketSender strict = new WebSocketSender(meterRegistry, 1000, 200, 64, false);
+        try {
+            assertThat(strict.outbox(session("stalled")).send("only frame")).isTrue();
+
+            waitFor(() -> !closes.isEmpty());
+            assertThat(closes).containsExactly(CloseStatus.SESSION_NOT_RELIABLE);
+            assertThat(meterRegistry.get("chat.ws.sessions.dropped").tag("reason", "send-time").counter().count())
+                    .isEqualTo(1);
+        } finally {
+            strict.shutdown();
+        }
+    }
+
+    private WebSocketSession session(String id) {
+        return session(id, clientReads);
+    }
+
+    private WebSocketSession session(String id, CountDownLatch reads) {
+        return (WebSocketSession) Proxy.newProxyInstance(getClass().getClassLoader(),
+                new Class<?>[]{WebSocketSession.class}, (proxy, method, args) -> switch (method.getName()) {
+                    case "getId" -> id;
+                    case "sendMessage" -> {
+                        reads.await(5, TimeUnit.SECONDS);
+                        delivered.add(((TextMessage) args[0]).getPayload());
+                        yield null;
+                    }
+                    case "close" -> {
+                        closes.add((CloseStatus) args[0]);
+                        yield null;
+                    }
+                    case "isOpen" -> closes.isEmpty();
+                    default -> null;
+                });
+    }
+
+    private static void waitFor(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (!condition.getAsBoolean() && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+    }
+}